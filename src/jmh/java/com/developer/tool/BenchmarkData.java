@@ -0,0 +1,173 @@
+package com.developer.tool;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Deterministic snippet data for the benchmarks. Code bodies are stitched together
+ * from real-looking lines full of {@code <}, {@code >}, {@code &} and quotes, so
+ * escaping and FTS tokenizing see roughly what a real library contains.
+ *
+ * Generated databases are kept in {@code target/benchmark-data} (override with
+ * {@code -Dcodecache.bench.dir}) as a pristine copy per size; every trial runs
+ * against a fresh copy so write benchmarks never leak into the next run.
+ */
+final class BenchmarkData {
+
+	static final String USER_ID = "bench-user";
+
+	private static final int IMPORT_BATCH_SIZE = 1000;
+
+	static final String[] LANGUAGES = { "java", "javascript", "python", "sql", "go", "bash" };
+
+	static final String[] TAGS = { "collections", "streams", "concurrency", "http", "sql", "regex",
+			"io", "testing", "generics", "json", "retry", "cache" };
+
+	static final String[] SEARCH_TERMS = { "hashmap", "stream", "concurrent", "select", "retry",
+			"optional", "builder", "parse" };
+
+	private static final String[] CODE_LINES = {
+			"Map<String, List<Integer>> index = new HashMap<>();",
+			"if (count > 0 && count <= limit) { total += count; }",
+			"List<String> names = users.stream().map(User::getName).filter(n -> n != null).toList();",
+			"String json = \"{\\\"id\\\": \\\"\" + id + \"\\\", \\\"tags\\\": []}\";",
+			"// Retry with backoff when the server answers 503 & Retry-After",
+			"for (int i = 0; i < values.length; i++) { sum += values[i] * weight; }",
+			"Optional<Order> order = repository.findById(id).filter(o -> o.total() > 100);",
+			"SELECT id, name FROM users WHERE created_at >= ? AND status <> 'deleted' ORDER BY id;",
+			"ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<>();",
+			"return a < b ? -1 : a > b ? 1 : 0;",
+			"Pattern p = Pattern.compile(\"^<([a-z]+)>(.*?)</\\\\1>$\");",
+			"builder.append('<').append(tag).append(\" class='\").append(css).append(\"'>\");",
+			"try (var in = Files.newBufferedReader(path)) { return parse(in.lines()); }",
+			"const handler = (e) => { if (e.key === 'Enter' && !e.shiftKey) submit(); };",
+			"def retry(fn, attempts=3): return fn() if attempts <= 1 else fn() or retry(fn, attempts - 1)",
+			"echo \"$HOME\" | grep -q '/root' && export MODE=admin || true",
+	};
+
+	private static final String[] DESCRIPTIONS = {
+			"Group values into a HashMap by key", "Stream filter & map example", "Concurrent counter per key",
+			"Parameterized SELECT with date range", "Retry helper with backoff", "Optional chaining for lookups",
+			"Builder for HTML <tags>", "Parse lines from a file", "Compare two values", "Regex for matching tags",
+	};
+
+	private BenchmarkData() {
+	}
+
+	/**
+	 * Builds a snippet with roughly {@code codeChars} of code. Same seed, same snippet.
+	 */
+	static Snippet snippet(Random random, int codeChars) {
+		Snippet snippet = new Snippet();
+		snippet.setCode(code(random, codeChars));
+		snippet.setLanguage(LANGUAGES[random.nextInt(LANGUAGES.length)]);
+		snippet.setDescription(DESCRIPTIONS[random.nextInt(DESCRIPTIONS.length)]);
+		List<String> tags = new ArrayList<>();
+		for (int i = 0, n = 1 + random.nextInt(3); i < n; i++) {
+			String tag = TAGS[random.nextInt(TAGS.length)];
+			if (!tags.contains(tag)) {
+				tags.add(tag);
+			}
+		}
+		snippet.setTags(tags);
+		return snippet;
+	}
+
+	static String code(Random random, int chars) {
+		StringBuilder code = new StringBuilder(chars + 128);
+		int indent = 0;
+		while (code.length() < chars) {
+			code.append("    ".repeat(indent)).append(CODE_LINES[random.nextInt(CODE_LINES.length)]).append('\n');
+			indent = random.nextInt(3);
+		}
+		return code.toString();
+	}
+
+	/**
+	 * Points {@link DatabaseManager} at a fresh copy of the {@code size}-snippet dataset,
+	 * generating the pristine copy first if this is the first run. Must be called before
+	 * anything else touches {@link DatabaseManager}, since its pool is created once.
+	 */
+	static void openDataset(int size) throws IOException {
+		Path dir = Path.of(System.getProperty("codecache.bench.dir", "target/benchmark-data"));
+		Path pristine = dir.resolve("snippets-" + size + ".db");
+		Path working = dir.resolve("snippets-" + size + "-run.db");
+
+		Files.createDirectories(dir);
+		for (String suffix : new String[] { "", "-wal", "-shm" }) {
+			Files.deleteIfExists(Path.of(working + suffix));
+		}
+		boolean generate = !Files.exists(pristine);
+		if (!generate) {
+			Files.copy(pristine, working, StandardCopyOption.REPLACE_EXISTING);
+		}
+
+		System.setProperty("codecache.db.path", working.toString());
+		DatabaseManager.initializeDatabase();
+
+		if (generate) {
+			System.out.println("Generating benchmark dataset with " + size + " snippets...");
+			insertSnippets(size);
+			// Own connection: pooled ones keep cached statements open, which VACUUM refuses
+			try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + working);
+					Statement stmt = conn.createStatement()) {
+				// Statistics as a migrated database has them; the ANALYZE migration ran while the tables were empty
+				stmt.execute("ANALYZE");
+				stmt.execute("VACUUM INTO '" + pristine.toString().replace("'", "''") + "'");
+			} catch (SQLException e) {
+				throw new IOException("Failed to save benchmark dataset", e);
+			}
+		}
+	}
+
+	/**
+	 * Writes the snippets the way an import does, so each row gets its code blob, preview,
+	 * search index entry, tag rows and embedding, exactly as the app would have stored it.
+	 */
+	private static void insertSnippets(int size) throws IOException {
+		Random random = new Random(42);
+		LocalDateTime newest = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+		try {
+			DatabaseManager.inTransaction(conn -> {
+				try (PreparedStatement user = conn.prepareStatement(
+						"INSERT OR IGNORE INTO users (id, username, password) VALUES (?, ?, ?)")) {
+					user.setString(1, USER_ID);
+					user.setString(2, USER_ID);
+					user.setString(3, "not-a-real-hash");
+					user.executeUpdate();
+				}
+				return null;
+			});
+		} catch (SQLException e) {
+			throw new IOException("Failed to generate benchmark dataset", e);
+		}
+
+		SnippetDAO dao = new SnippetDAO();
+		List<Snippet> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+		for (int i = 0; i < size; i++) {
+			Snippet s = snippet(random, 200 + random.nextInt(1800));
+			s.setId(new UUID(random.nextLong(), random.nextLong()).toString());
+			s.setCreatedAt(newest.minusMinutes(i));
+			batch.add(s);
+			if (batch.size() == IMPORT_BATCH_SIZE || i == size - 1) {
+				if (dao.importBatch(USER_ID, batch) != batch.size()) {
+					throw new IOException("Benchmark dataset lost snippets on import");
+				}
+				batch.clear();
+			}
+		}
+	}
+}
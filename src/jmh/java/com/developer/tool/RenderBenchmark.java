@@ -0,0 +1,93 @@
+package com.developer.tool;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Rendering a page of snippet cards, and escaping a single code body, with no
+ * database or network involved. Output goes to a stream that counts and discards.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderBenchmark {
+
+	@Param({ "20", "200" })
+	int cards;
+
+	@Param({ "500", "5000" })
+	int codeChars;
+
+	private List<Snippet> snippets;
+	private CountingOutputStream sink;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		snippets = new ArrayList<>(cards);
+		for (int i = 0; i < cards; i++) {
+			Snippet snippet = BenchmarkData.snippet(random, codeChars);
+			snippet.setId("00000000-0000-0000-0000-" + String.format("%012d", i));
+			snippets.add(snippet);
+		}
+		sink = new CountingOutputStream();
+	}
+
+	@Benchmark
+	public long renderCards() throws IOException {
+		try (HtmlWriter out = new HtmlWriter(sink)) {
+			for (Snippet snippet : snippets) {
+				Main.renderSnippetHtml(out, snippet, false);
+			}
+		}
+		return sink.count;
+	}
+
+	@Benchmark
+	public long escapeStreaming() throws IOException {
+		try (HtmlWriter out = new HtmlWriter(sink)) {
+			out.escaped(snippets.get(0).getCode());
+		}
+		return sink.count;
+	}
+
+	@Benchmark
+	public void escapeHtml(Blackhole blackhole) {
+		blackhole.consume(Main.escapeHtml(snippets.get(0).getCode()));
+	}
+
+	private static final class CountingOutputStream extends OutputStream {
+
+		long count;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package com.developer.tool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The queries behind every page load, against a single user's library of
+ * {@code size} snippets. Uses the plain {@link SnippetDAO}, so reads always hit
+ * SQLite rather than the library cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnippetDAOBenchmark {
+
+	@Param({ "100", "10000", "100000" })
+	int size;
+
+	private SnippetDAO dao;
+	private Random random;
+	private List<Snippet> existing;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		BenchmarkData.openDataset(size);
+		dao = new SnippetDAO();
+		random = new Random(7);
+		existing = new ArrayList<>(dao.findPageByUserId(BenchmarkData.USER_ID, null, 100).snippets());
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		DatabaseManager.shutdown();
+	}
+
+	@Benchmark
+	public List<Snippet> findByUserId() {
+		return dao.findByUserId(BenchmarkData.USER_ID);
+	}
+
+	@Benchmark
+	public SnippetPage firstPage() {
+		return dao.findPageByUserId(BenchmarkData.USER_ID, null, 20);
+	}
+
+	@Benchmark
+	public List<Snippet> search() {
+		return dao.search(searchTerm(), BenchmarkData.USER_ID);
+	}
+
+	@Benchmark
+	public SnippetPage searchFirstPage() {
+		return dao.searchPage(searchTerm(), BenchmarkData.USER_ID, null, 20);
+	}
+
+	@Benchmark
+	public Snippet create() {
+		Snippet snippet = BenchmarkData.snippet(random, 1000);
+		dao.create(snippet, BenchmarkData.USER_ID);
+		return snippet;
+	}
+
+	@Benchmark
+	public Snippet update() {
+		Snippet snippet = existing.get(random.nextInt(existing.size()));
+		snippet.setCode(BenchmarkData.code(random, 1000));
+		dao.update(snippet, BenchmarkData.USER_ID);
+		return snippet;
+	}
+
+	private String searchTerm() {
+		return BenchmarkData.SEARCH_TERMS[random.nextInt(BenchmarkData.SEARCH_TERMS.length)];
+	}
+}
@@ -0,0 +1,212 @@
+package com.developer.tool;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admission control for the routes one client can make expensive for everyone: search,
+ * login/register (a BCrypt check each) and writes (the single SQLite writer). Each
+ * {@link RouteClass} has two independent limits:
+ *
+ * - a token bucket per client, keyed by session user or, before login, client IP. Over
+ *   budget is 429 with the time until the next token in Retry-After.
+ * - a cap on requests of that class in flight across all clients. Over it is 503 with
+ *   Retry-After: 1, straight away, rather than queueing for threads or the writer.
+ *
+ * Buckets are kept as GCRA (one "theoretical arrival time" per key, advanced with a CAS),
+ * so a check is a map lookup and a compare-and-set, with no locks and no refill thread.
+ * Keys whose bucket is full again carry no state and are swept when the map grows.
+ */
+public final class AdmissionControl {
+
+	public enum RouteClass {
+		SEARCH, AUTH, WRITE;
+
+		final String label = name().toLowerCase(Locale.ROOT);
+	}
+
+	// Sweep full buckets once a class tracks this many keys, at most once a second
+	private static final int SWEEP_KEYS = 10_000;
+	private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	private final Map<RouteClass, Limiter> limiters = new EnumMap<>(RouteClass.class);
+
+	/**
+	 * Limits from the environment: RATE_&lt;CLASS&gt;_PER_SECOND and RATE_&lt;CLASS&gt;_BURST
+	 * per client, CONCURRENCY_&lt;CLASS&gt; in total. A rate or concurrency of 0 turns that limit off.
+	 */
+	public static AdmissionControl fromEnvironment() {
+		AdmissionControl control = new AdmissionControl();
+		control.configure(RouteClass.SEARCH, 10, 20, 32);
+		control.configure(RouteClass.AUTH, 0.2, 10, 64);
+		control.configure(RouteClass.WRITE, 5, 30, 16);
+		return control;
+	}
+
+	private void configure(RouteClass routeClass, double perSecond, int burst, int concurrency) {
+		String name = routeClass.name();
+		limiters.put(routeClass, new Limiter(
+				Double.parseDouble(System.getenv().getOrDefault("RATE_" + name + "_PER_SECOND", String.valueOf(perSecond))),
+				Integer.parseInt(System.getenv().getOrDefault("RATE_" + name + "_BURST", String.valueOf(burst))),
+				Integer.parseInt(System.getenv().getOrDefault("CONCURRENCY_" + name, String.valueOf(concurrency)))));
+	}
+
+	/**
+	 * The class a request falls in, or null for the ones that aren't limited (pages,
+	 * reads, assets, metrics).
+	 */
+	public static RouteClass classify(String method, String path) {
+		if (path.equals("/snippets/search")) {
+			return RouteClass.SEARCH;
+		}
+		if (method.equals("GET") || method.equals("HEAD") || method.equals("OPTIONS")) {
+			return null;
+		}
+		if (path.equals("/login") || path.equals("/register")) {
+			return RouteClass.AUTH;
+		}
+		return path.startsWith("/snippets") ? RouteClass.WRITE : null;
+	}
+
+	/**
+	 * Admits one request of {@code routeClass} from {@code client}, or throws
+	 * {@link RejectedException}. An admitted request holds a slot until {@link #release}.
+	 */
+	public void acquire(RouteClass routeClass, String client) {
+		limiters.get(routeClass).acquire(client);
+	}
+
+	public void release(RouteClass routeClass) {
+		limiters.get(routeClass).inFlight.decrementAndGet();
+	}
+
+	public void collect(Metrics.Exposition out) {
+		out.family("codecache_admission_decisions_total", "counter", "Admission decisions by route class");
+		limiters.forEach((routeClass, limiter) -> {
+			String labels = "class=\"" + routeClass.label + "\",decision=";
+			out.sample("codecache_admission_decisions_total", labels + "\"admitted\"", limiter.admitted.sum());
+			out.sample("codecache_admission_decisions_total", labels + "\"rate_limited\"", limiter.rateLimited.sum());
+			out.sample("codecache_admission_decisions_total", labels + "\"shed\"", limiter.shed.sum());
+		});
+		out.family("codecache_admission_in_flight", "gauge", "Admitted requests still running by route class");
+		limiters.forEach((routeClass, limiter) ->
+				out.sample("codecache_admission_in_flight", "class=\"" + routeClass.label + "\"", limiter.inFlight.get()));
+		out.family("codecache_admission_tracked_clients", "gauge", "Clients with a partly spent rate budget by route class");
+		limiters.forEach((routeClass, limiter) ->
+				out.sample("codecache_admission_tracked_clients", "class=\"" + routeClass.label + "\"", limiter.buckets.size()));
+	}
+
+	private static final class Limiter {
+
+		private final long intervalNanos;
+		private final long toleranceNanos;
+		private final int maxInFlight;
+
+		private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+		private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+		private final AtomicInteger inFlight = new AtomicInteger();
+
+		private final LongAdder admitted = new LongAdder();
+		private final LongAdder rateLimited = new LongAdder();
+		private final LongAdder shed = new LongAdder();
+
+		Limiter(double perSecond, int burst, int maxInFlight) {
+			this.intervalNanos = perSecond > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / perSecond) : 0;
+			// A full bucket lets burst requests through back to back
+			this.toleranceNanos = intervalNanos * Math.max(burst, 1);
+			this.maxInFlight = maxInFlight;
+		}
+
+		void acquire(String client) {
+			if (intervalNanos > 0) {
+				long wait = take(client);
+				if (wait > 0) {
+					rateLimited.increment();
+					throw new RejectedException(429, seconds(wait), "Too many requests, try again shortly");
+				}
+			}
+			if (maxInFlight > 0) {
+				int current;
+				do {
+					current = inFlight.get();
+					if (current >= maxInFlight) {
+						shed.increment();
+						throw new RejectedException(503, 1, "Server is busy, try again shortly");
+					}
+				} while (!inFlight.compareAndSet(current, current + 1));
+			} else {
+				inFlight.incrementAndGet();
+			}
+			admitted.increment();
+		}
+
+		/**
+		 * Takes a token from {@code client}'s bucket. Returns 0 if there was one, otherwise
+		 * the nanoseconds until there will be.
+		 */
+		private long take(String client) {
+			long now = System.nanoTime();
+			AtomicLong arrival = buckets.get(client);
+			if (arrival == null) {
+				sweep(now);
+				arrival = buckets.computeIfAbsent(client, c -> new AtomicLong(now));
+			}
+			while (true) {
+				long theoretical = arrival.get();
+				long next = Math.max(theoretical, now) + intervalNanos;
+				long overdraft = next - now - toleranceNanos;
+				if (overdraft > 0) {
+					return overdraft;
+				}
+				if (arrival.compareAndSet(theoretical, next)) {
+					return 0;
+				}
+			}
+		}
+
+		private void sweep(long now) {
+			long last = lastSweep.get();
+			if (buckets.size() < SWEEP_KEYS || now - last < SWEEP_INTERVAL_NANOS || !lastSweep.compareAndSet(last, now)) {
+				return;
+			}
+			// A bucket whose arrival time has passed is full; dropping it changes nothing
+			buckets.values().removeIf(arrival -> arrival.get() <= now);
+		}
+
+		private static int seconds(long nanos) {
+			return (int) Math.max(1, (nanos + 999_999_999) / 1_000_000_000);
+		}
+	}
+
+	/**
+	 * A request turned away: 429 when the client is over its rate, 503 when its route
+	 * class is at its concurrency limit.
+	 */
+	public static class RejectedException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int status;
+		private final int retryAfterSeconds;
+
+		public RejectedException(int status, int retryAfterSeconds, String message) {
+			super(message, null, false, false);
+			this.status = status;
+			this.retryAfterSeconds = retryAfterSeconds;
+		}
+
+		public int status() {
+			return status;
+		}
+
+		public int retryAfterSeconds() {
+			return retryAfterSeconds;
+		}
+	}
+}
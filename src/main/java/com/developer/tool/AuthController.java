@@ -1,15 +1,15 @@
 package com.developer.tool;
 
-import org.mindrot.jbcrypt.BCrypt;
-
 import io.javalin.http.Context;
 
 public class AuthController {
 
 	private final UserDAO userDAO;
+	private final PasswordHasher passwordHasher;
 
-	public AuthController(UserDAO userDAO) {
+	public AuthController(UserDAO userDAO, PasswordHasher passwordHasher) {
 		this.userDAO = userDAO;
+		this.passwordHasher = passwordHasher;
 	}
 
 	public void showLogin(Context ctx) {
@@ -61,7 +61,7 @@ public class AuthController {
 			return;
 		}
 
-		boolean isLoggedIn = BCrypt.checkpw(password, user.password());
+		boolean isLoggedIn = passwordHasher.verify(password, user.password());
 
 		if (isLoggedIn) {
 			ctx.sessionAttribute("userId", user.id());
@@ -79,6 +79,8 @@ public class AuthController {
          try {
              userDAO.create(username, password);
              ctx.redirect("/login");
+         } catch (PasswordHasher.SaturatedException e) {
+             throw e;
          } catch (Exception e) {
              ctx.result("Username taken. <a href='/register'>Try again</a>");
          }
@@ -0,0 +1,197 @@
+package com.developer.tool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link SnippetDAO} with an in-process cache of each user's library in front of it.
+ *
+ * Libraries are cached as summaries (see {@link SnippetDAO#findSummariesByUserId}), the
+ * same shape paged reads return, so a cached library costs a preview per snippet rather
+ * than its whole code. Writes go to SQLite first and are then applied to the cached list directly,
+ * so a cached library never has to be re-read after the user edits it. A user's write and
+ * its patch happen under one lock, so concurrent writes to a library patch it in the order
+ * they committed and the last one to commit is the one cached. The patch is built outside
+ * the cache's lock and adjusts the library's weight by the snippet it changed, so a large
+ * library's write doesn't hold up other users' reads.
+ * Cached lists are unmodifiable and replaced wholesale on every write, and the
+ * library version is bumped again once they are, so a version read during the
+ * write is never paired with the cached list from before it.
+ */
+public class CachedSnippetDAO extends SnippetDAO {
+
+	// Rough per-snippet overhead for the object headers, id and tag list
+	private static final long SNIPPET_OVERHEAD_BYTES = 160;
+
+	private final WeightedLruCache<String, List<Snippet>> libraries;
+	private final int maxCachedLibrarySize;
+	// Striped by user; a ReentrantLock so a virtual thread waiting on the write doesn't pin its carrier
+	private final ReentrantLock[] writeLocks = new ReentrantLock[64];
+
+	/**
+	 * @param maxCachedLibrarySize libraries with more snippets than this are paged straight
+	 *                             from SQLite instead of being loaded whole on a page miss
+	 * @param maxTrigramIndexBytes see {@link SnippetDAO#SnippetDAO(long, long)}
+	 * @param maxVectorIndexBytes  see {@link SnippetDAO#SnippetDAO(long, long)}
+	 */
+	public CachedSnippetDAO(long maxCacheBytes, int maxCachedLibrarySize, long maxTrigramIndexBytes,
+			long maxVectorIndexBytes) {
+		super(maxTrigramIndexBytes, maxVectorIndexBytes);
+		this.libraries = new WeightedLruCache<>("snippet-libraries", maxCacheBytes, CachedSnippetDAO::weigh);
+		this.maxCachedLibrarySize = maxCachedLibrarySize;
+		for (int i = 0; i < writeLocks.length; i++) {
+			writeLocks[i] = new ReentrantLock();
+		}
+	}
+
+	@Override
+	public String forEachInPage(String userId, String cursor, int limit, SnippetConsumer consumer) throws IOException {
+		List<Snippet> library = libraries.get(userId);
+		if (library == null) {
+			if (countByUserId(userId) > maxCachedLibrarySize) {
+				return super.forEachInPage(userId, cursor, limit, consumer);
+			}
+			library = load(userId);
+		}
+
+		int start = 0;
+		if (cursor != null) {
+			int found = Collections.binarySearch(library, decodeListCursor(cursor), NEWEST_FIRST);
+			start = found >= 0 ? found + 1 : -(found + 1);
+		}
+		int end = Math.min(library.size(), start + limit);
+		for (int i = start; i < end; i++) {
+			consumer.accept(library.get(i));
+		}
+		return end < library.size() ? listCursor(library.get(end - 1)) : null;
+	}
+
+	private List<Snippet> load(String userId) {
+		long stamp = libraries.stamp();
+		List<Snippet> loaded = Collections.unmodifiableList(findSummariesByUserId(userId));
+		libraries.putIfUnchanged(userId, loaded, stamp);
+		return loaded;
+	}
+
+	@Override
+	public void create(Snippet snippet, String userId) {
+		ReentrantLock lock = writeLock(userId);
+		lock.lock();
+		try {
+			super.create(snippet, userId);
+			Snippet summary = summaryOf(snippet);
+			libraries.patch(userId, library -> {
+				// Keep the list in the same order SQLite returns it, so cursors stay valid
+				List<Snippet> updated = new ArrayList<>(library);
+				int found = Collections.binarySearch(updated, summary, NEWEST_FIRST);
+				updated.add(found >= 0 ? found : -(found + 1), summary);
+				return new WeightedLruCache.Patch<>(Collections.unmodifiableList(updated), weigh(summary));
+			});
+		} finally {
+			lock.unlock();
+		}
+		libraryChanged(userId);
+	}
+
+	@Override
+	public void update(Snippet snippet, String userId) {
+		ReentrantLock lock = writeLock(userId);
+		lock.lock();
+		try {
+			super.update(snippet, userId);
+			Snippet summary = summaryOf(snippet);
+			libraries.patch(userId, library -> {
+				int at = indexOf(library, snippet.getId());
+				if (at < 0) {
+					return new WeightedLruCache.Patch<>(library, 0);
+				}
+				List<Snippet> updated = new ArrayList<>(library);
+				Snippet previous = updated.set(at, summary);
+				return new WeightedLruCache.Patch<>(Collections.unmodifiableList(updated), weigh(summary) - weigh(previous));
+			});
+		} finally {
+			lock.unlock();
+		}
+		libraryChanged(userId);
+	}
+
+	@Override
+	public void delete(String id, String userId) {
+		ReentrantLock lock = writeLock(userId);
+		lock.lock();
+		try {
+			super.delete(id, userId);
+			libraries.patch(userId, library -> {
+				int at = indexOf(library, id);
+				if (at < 0) {
+					return new WeightedLruCache.Patch<>(library, 0);
+				}
+				List<Snippet> updated = new ArrayList<>(library);
+				Snippet removed = updated.remove(at);
+				return new WeightedLruCache.Patch<>(Collections.unmodifiableList(updated), -weigh(removed));
+			});
+		} finally {
+			lock.unlock();
+		}
+		libraryChanged(userId);
+	}
+
+	private static int indexOf(List<Snippet> library, String id) {
+		for (int i = 0; i < library.size(); i++) {
+			if (library.get(i).getId().equals(id)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private ReentrantLock writeLock(String userId) {
+		return writeLocks[Math.floorMod(userId.hashCode(), writeLocks.length)];
+	}
+
+	@Override
+	public int importBatch(String userId, List<Snippet> snippets) {
+		try {
+			return super.importBatch(userId, snippets);
+		} finally {
+			// Cheaper to reload once than to merge thousands of rows into the cached list
+			libraries.invalidate(userId);
+			libraryChanged(userId);
+		}
+	}
+
+	@Override
+	public List<WeightedLruCache.Stats> cacheStats() {
+		List<WeightedLruCache.Stats> stats = new ArrayList<>();
+		stats.add(libraries.stats());
+		stats.addAll(super.cacheStats());
+		return stats;
+	}
+
+	private static long weigh(List<Snippet> library) {
+		long bytes = 0;
+		for (Snippet s : library) {
+			bytes += weigh(s);
+		}
+		return bytes;
+	}
+
+	/** One summary's share of {@link #weigh(List)}, so writes adjust a library's weight without walking it. */
+	private static long weigh(Snippet s) {
+		long bytes = SNIPPET_OVERHEAD_BYTES + 2L * (length(s.getCodePreview()) + length(s.getCodePreviewHtml())
+				+ length(s.getDescription()) + length(s.getLanguage()));
+		if (s.getTags() != null) {
+			for (String tag : s.getTags()) {
+				bytes += 48 + 2L * tag.length();
+			}
+		}
+		return bytes;
+	}
+
+	private static int length(String value) {
+		return value == null ? 0 : value.length();
+	}
+}
@@ -0,0 +1,34 @@
+package com.developer.tool;
+
+/**
+ * {@link UserDAO} that remembers users by id. Users are never updated once created,
+ * so entries only leave the cache through LRU eviction.
+ */
+public class CachedUserDAO extends UserDAO {
+
+	private final WeightedLruCache<String, User> users;
+
+	public CachedUserDAO(PasswordHasher passwordHasher, int maxUsers) {
+		super(passwordHasher);
+		this.users = new WeightedLruCache<>("users", maxUsers, user -> 1);
+	}
+
+	@Override
+	public User findByUserId(String userId) {
+		User cached = users.get(userId);
+		if (cached != null) {
+			return cached;
+		}
+
+		long stamp = users.stamp();
+		User user = super.findByUserId(userId);
+		if (user != null) {
+			users.putIfUnchanged(userId, user, stamp);
+		}
+		return user;
+	}
+
+	public WeightedLruCache.Stats cacheStats() {
+		return users.stats();
+	}
+}
@@ -0,0 +1,327 @@
+package com.developer.tool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.sqlite.SQLiteConfig;
+
+/**
+ * Bounded SQLite connection pool with one writer connection and a fixed set of
+ * read-only connections. SQLite only ever allows a single writer, so handing out
+ * more than one write connection just moves the queueing into SQLITE_BUSY retries.
+ *
+ * Connections are handed out as proxies: {@code close()} returns the connection
+ * to the pool and {@code prepareStatement(sql)} is served from a small per-connection
+ * LRU cache, so the DAOs can keep their usual try-with-resources blocks.
+ */
+public final class ConnectionPool implements AutoCloseable {
+
+	private final String url;
+	private final BlockingQueue<PooledConnection> readers;
+	private final BlockingQueue<PooledConnection> writers;
+	private final List<PooledConnection> all = new ArrayList<>();
+	private final long acquireTimeoutMillis;
+	private final int statementCacheSize;
+
+	private final AtomicInteger activeReaders = new AtomicInteger();
+	private final AtomicInteger activeWriters = new AtomicInteger();
+	private final LongAdder acquisitions = new LongAdder();
+	private final LongAdder waitNanos = new LongAdder();
+	private final LongAdder timeouts = new LongAdder();
+	private final LongAdder statementHits = new LongAdder();
+	private final LongAdder statementMisses = new LongAdder();
+
+	public ConnectionPool(String url, int readerCount, int statementCacheSize, long acquireTimeoutMillis,
+			SQLiteConfig config) throws SQLException {
+		this.url = url;
+		this.statementCacheSize = statementCacheSize;
+		this.acquireTimeoutMillis = acquireTimeoutMillis;
+		this.readers = new ArrayBlockingQueue<>(readerCount);
+		this.writers = new ArrayBlockingQueue<>(1);
+
+		try {
+			// The writer is opened first so WAL mode is in place before any reader attaches
+			PooledConnection writer = new PooledConnection(config.createConnection(url), false);
+			writers.add(writer);
+			all.add(writer);
+
+			for (int i = 0; i < readerCount; i++) {
+				Connection conn = config.createConnection(url);
+				try (Statement stmt = conn.createStatement()) {
+					stmt.execute("PRAGMA query_only = 1");
+				}
+				PooledConnection reader = new PooledConnection(conn, true);
+				readers.add(reader);
+				all.add(reader);
+			}
+		} catch (SQLException e) {
+			close();
+			throw e;
+		}
+	}
+
+	public Connection reader() throws SQLException {
+		return acquire(readers, activeReaders);
+	}
+
+	public Connection writer() throws SQLException {
+		return acquire(writers, activeWriters);
+	}
+
+	private Connection acquire(BlockingQueue<PooledConnection> queue, AtomicInteger active) throws SQLException {
+		long start = System.nanoTime();
+		PooledConnection pooled;
+		try {
+			pooled = queue.poll(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a database connection", e);
+		}
+		waitNanos.add(System.nanoTime() - start);
+
+		if (pooled == null) {
+			timeouts.increment();
+			throw new SQLException("Timed out after " + acquireTimeoutMillis + "ms waiting for a database connection");
+		}
+		acquisitions.increment();
+		active.incrementAndGet();
+		return pooled.lease(queue, active);
+	}
+
+	public Stats stats() {
+		long count = acquisitions.sum();
+		long hits = statementHits.sum();
+		long lookups = hits + statementMisses.sum();
+		return new Stats(
+				activeReaders.get(),
+				readers.size(),
+				activeWriters.get(),
+				writers.size(),
+				count,
+				timeouts.sum(),
+				count == 0 ? 0 : waitNanos.sum() / 1_000_000.0 / count,
+				hits,
+				lookups - hits,
+				lookups == 0 ? 0 : (double) hits / lookups);
+	}
+
+	@Override
+	public void close() {
+		for (PooledConnection pooled : all) {
+			pooled.closePhysical();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ConnectionPool[" + url + ", " + stats() + "]";
+	}
+
+	public record Stats(int activeReaders, int idleReaders, int activeWriters, int idleWriters, long acquisitions,
+			long timeouts, double avgWaitMillis, long statementCacheHits, long statementCacheMisses,
+			double statementCacheHitRate) {
+	}
+
+	/**
+	 * One physical connection plus its statement cache. Each lease gets a fresh proxy
+	 * so a connection that has been handed back can't be used by a stale reference.
+	 */
+	private class PooledConnection {
+
+		private final Connection physical;
+		private final boolean readOnly;
+		private final Map<String, CachedStatement> statements;
+
+		PooledConnection(Connection physical, boolean readOnly) {
+			this.physical = physical;
+			this.readOnly = readOnly;
+			this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+					if (size() > statementCacheSize) {
+						eldest.getValue().closePhysical();
+						return true;
+					}
+					return false;
+				}
+			};
+		}
+
+		Connection lease(BlockingQueue<PooledConnection> home, AtomicInteger active) {
+			InvocationHandler handler = new InvocationHandler() {
+				private boolean closed;
+
+				@Override
+				public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+					switch (method.getName()) {
+						case "close":
+							if (!closed) {
+								closed = true;
+								release(home, active);
+							}
+							return null;
+						case "isClosed":
+							return closed || physical.isClosed();
+						case "prepareStatement":
+							if (!closed && args != null && args.length == 1) {
+								return prepare((String) args[0]);
+							}
+							break;
+						default:
+							break;
+					}
+					if (closed) {
+						throw new SQLException("Connection has been returned to the pool");
+					}
+					return invokeOn(physical, method, args);
+				}
+			};
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class<?>[] { Connection.class }, handler);
+		}
+
+		private PreparedStatement prepare(String sql) throws SQLException {
+			CachedStatement cached = statements.get(sql);
+			if (cached != null && !cached.inUse) {
+				statementHits.increment();
+				return cached.checkout();
+			}
+			statementMisses.increment();
+			if (cached != null) {
+				// Same statement is already open further up the stack, don't share it
+				return physical.prepareStatement(sql);
+			}
+			cached = new CachedStatement(physical.prepareStatement(sql));
+			statements.put(sql, cached);
+			return cached.checkout();
+		}
+
+		private void release(BlockingQueue<PooledConnection> home, AtomicInteger active) {
+			try {
+				for (CachedStatement cached : statements.values()) {
+					cached.reset();
+				}
+				if (!readOnly && !physical.getAutoCommit()) {
+					physical.rollback();
+					physical.setAutoCommit(true);
+				}
+			} catch (SQLException e) {
+				System.err.println("Failed to reset pooled connection: " + e.getMessage());
+			} finally {
+				active.decrementAndGet();
+				home.offer(this);
+			}
+		}
+
+		void closePhysical() {
+			Iterator<CachedStatement> it = statements.values().iterator();
+			while (it.hasNext()) {
+				it.next().closePhysical();
+				it.remove();
+			}
+			try {
+				physical.close();
+			} catch (SQLException e) {
+				System.err.println("Failed to close connection: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Prepared statement that survives {@code close()}. Closing it clears parameters
+	 * and any result set the caller left open, so the read transaction ends.
+	 */
+	private static class CachedStatement {
+
+		private final PreparedStatement physical;
+		private final PreparedStatement proxy;
+		private ResultSet lastResult;
+		private boolean inUse;
+
+		CachedStatement(PreparedStatement physical) {
+			this.physical = physical;
+			this.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+					new Class<?>[] { PreparedStatement.class }, (p, method, args) -> {
+						switch (method.getName()) {
+							case "close":
+								reset();
+								return null;
+							case "isClosed":
+								return !inUse;
+							case "executeQuery":
+								if (args == null) {
+									closeResult();
+									lastResult = physical.executeQuery();
+									return lastResult;
+								}
+								break;
+							default:
+								break;
+						}
+						return invokeOn(physical, method, args);
+					});
+		}
+
+		PreparedStatement checkout() {
+			inUse = true;
+			return proxy;
+		}
+
+		void reset() {
+			if (!inUse) {
+				return;
+			}
+			inUse = false;
+			closeResult();
+			try {
+				physical.clearParameters();
+			} catch (SQLException e) {
+				System.err.println("Failed to reset cached statement: " + e.getMessage());
+			}
+		}
+
+		private void closeResult() {
+			if (lastResult != null) {
+				try {
+					lastResult.close();
+				} catch (SQLException e) {
+					// Result set already finalized with the statement
+				}
+				lastResult = null;
+			}
+		}
+
+		void closePhysical() {
+			try {
+				physical.close();
+			} catch (SQLException e) {
+				System.err.println("Failed to close cached statement: " + e.getMessage());
+			}
+		}
+	}
+
+	private static Object invokeOn(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+}
@@ -2,21 +2,154 @@ package com.developer.tool;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import org.sqlite.SQLiteConfig;
 
 public class DatabaseManager {
 	
 	
-	private static final String DB_URL = "jdbc:sqlite:codecache.db";
+	// The system property lets benchmarks point a forked JVM at their own dataset
+	private static final String DB_URL = "jdbc:sqlite:"
+			+ System.getProperty("codecache.db.path", System.getenv().getOrDefault("DB_PATH", "codecache.db"));
+	
+	// Off by default: a lone writer then waits up to DB_GROUP_COMMIT_WAIT_MS for company
+	private static final boolean GROUP_COMMIT = Boolean.parseBoolean(System.getenv().getOrDefault("DB_GROUP_COMMIT", "false"));
 	
+	private static final ConnectionPool pool = createPool();
+	private static final GroupCommitter groupCommitter = GROUP_COMMIT
+			? new GroupCommitter(envInt("DB_GROUP_COMMIT_MAX_BATCH", 256), envInt("DB_GROUP_COMMIT_WAIT_MS", 2))
+			: null;
+	
+	/**
+	 * Read-only connection from the pool. Closing it hands it back.
+	 */
 	public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(DB_URL);
+        return pool.reader();
     }
+	
+	/**
+	 * The single writer connection. Callers hold it only for the duration of one write.
+	 */
+	public static Connection getWriteConnection() throws SQLException {
+		return pool.writer();
+	}
+	
+	/**
+	 * Runs {@code work} on the writer connection inside a single transaction.
+	 * Anything thrown rolls the whole unit back.
+	 */
+	public static <T> T inTransaction(SqlWork<T> work) throws SQLException {
+		try (Connection conn = getWriteConnection()) {
+			conn.setAutoCommit(false);
+			try {
+				T result = work.execute(conn);
+				conn.commit();
+				return result;
+			} catch (SQLException | RuntimeException e) {
+				conn.rollback();
+				throw e;
+			} finally {
+				conn.setAutoCommit(true);
+			}
+		}
+	}
+	
+	/**
+	 * Like {@link #inTransaction}, but in group-commit mode (DB_GROUP_COMMIT=true) the
+	 * transaction is shared with other writes queued at about the same time; see
+	 * {@link GroupCommitter}. Either way it returns only once {@code work} is committed,
+	 * and anything it throws rolls back just its own changes.
+	 */
+	public static <T> T inGroupTransaction(SqlWork<T> work) throws SQLException {
+		return groupCommitter != null ? groupCommitter.execute(work) : inTransaction(work);
+	}
+	
+	/** Null unless group commit is on. */
+	public static GroupCommitter.Stats groupCommitStats() {
+		return groupCommitter == null ? null : groupCommitter.stats();
+	}
+	
+	@FunctionalInterface
+	public interface SqlWork<T> {
+		T execute(Connection conn) throws SQLException;
+	}
+	
+	public static ConnectionPool.Stats poolStats() {
+		return pool.stats();
+	}
+	
+	public static void shutdown() {
+		if (groupCommitter != null) {
+			groupCommitter.close();
+			System.out.println("Group commit: " + groupCommitter.stats());
+		}
+		// Refreshes the planner statistics ANALYZE left for tables that have changed much
+		// since; the limit keeps it to sampling a few hundred rows per index
+		try (Connection conn = getWriteConnection(); Statement stmt = conn.createStatement()) {
+			stmt.execute("PRAGMA analysis_limit = 400");
+			stmt.execute("PRAGMA optimize");
+		} catch (SQLException e) {
+			System.err.println("Failed to optimize database: " + e.getMessage());
+		}
+		System.out.println("Closing database pool: " + pool.stats());
+		pool.close();
+	}
+	
+	private static ConnectionPool createPool() {
+		SQLiteConfig config = new SQLiteConfig();
+		config.setJournalMode(SQLiteConfig.JournalMode.WAL);
+		// NORMAL is durable across application crashes in WAL mode, only an OS crash can lose the last commit.
+		// Group commit shares each fsync across a batch, so it can afford FULL.
+		config.setSynchronous(GROUP_COMMIT ? SQLiteConfig.SynchronousMode.FULL : SQLiteConfig.SynchronousMode.NORMAL);
+		config.setTempStore(SQLiteConfig.TempStore.MEMORY);
+		config.setBusyTimeout(envInt("DB_BUSY_TIMEOUT_MS", 5000));
+		// Negative cache_size is in KiB rather than pages
+		config.setCacheSize(-envInt("DB_CACHE_SIZE_KB", 16 * 1024));
+		config.setPragma(SQLiteConfig.Pragma.MMAP_SIZE, String.valueOf(envInt("DB_MMAP_SIZE_MB", 128) * 1024L * 1024L));
+		
+		try {
+			return new ConnectionPool(DB_URL,
+					envInt("DB_READ_POOL_SIZE", 4),
+					envInt("DB_STATEMENT_CACHE_SIZE", 32),
+					envInt("DB_ACQUIRE_TIMEOUT_MS", 10_000),
+					config);
+		} catch (SQLException e) {
+			System.err.println("Failed to open database pool: " + e.getMessage());
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private static int envInt(String name, int defaultValue) {
+		return Integer.parseInt(System.getenv().getOrDefault(name, String.valueOf(defaultValue)));
+	}
     
+    /**
+     * Brings the schema up to date. Each migration newer than the version recorded in
+     * schema_version runs in its own transaction, together with the row recording it, so
+     * a failed step leaves the database at the previous version and is retried on the next
+     * start. A database that is already current costs one query.
+     *
+     * Databases from before schema_version existed start at version 0 and replay every
+     * step; each is written to leave alone what is already there. Released steps are never
+     * edited, later changes (including a new {@link SnippetEmbedder#VERSION}) get a new one.
+     */
     public static void initializeDatabase() {
     	
+    	String createSchemaVersionTable = """
+    			CREATE TABLE IF NOT EXISTS schema_version (
+    			    version INTEGER PRIMARY KEY,
+    			    description TEXT NOT NULL,
+    			    applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+    			)
+    			""";
+    	
+    	
     	String createUsersTable = """
     			CREATE TABLE IF NOT EXISTS users (
     			id text PRIMARY KEY,
@@ -43,27 +176,428 @@ public class DatabaseManager {
         		alter table snippets add  foreign key (user_id) references users(id);
         		""";
         
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement()) {
-        	stmt.execute(createUsersTable);
-            stmt.execute(createSnippetsTable);
-            
-            if (!columnExists("snippets", "user_id")) {
-            	stmt.execute(alterSnippetsTable);
-            }
-            System.out.println("Database initialized successfully");
+        // Code bodies by SHA-256, shared by every snippet with the same code, see SnippetBodies
+        String createSnippetBlobsTable = """
+        		CREATE TABLE IF NOT EXISTS snippet_blobs (
+        		    hash BLOB PRIMARY KEY,
+        		    encoding INTEGER NOT NULL,
+        		    size INTEGER NOT NULL,
+        		    body BLOB NOT NULL
+        		)
+        		""";
+        
+        String createSnippetsCodeHashIndex = "CREATE INDEX IF NOT EXISTS idx_snippets_code_hash ON snippets (code_hash)";
+        
+        // Standalone FTS table (it keeps its own copy of the text) whose rowid mirrors snippets.rowid.
+        // SnippetDAO keeps it in sync inside the same transaction as each write. owner holds
+        // SnippetDAO.searchOwner(user_id) and is indexed, so a search MATCHes within one user's rows.
+        String createSnippetsFtsTable = """
+        		CREATE VIRTUAL TABLE IF NOT EXISTS snippets_fts USING fts5(
+        		    owner,
+        		    code,
+        		    description,
+        		    language,
+        		    tags,
+        		    tokenize = "unicode61 remove_diacritics 2 tokenchars '_'",
+        		    prefix = '2 3'
+        		)
+        		""";
+        
+        // One row per (snippet, normalized tag); snippets.tags keeps the display form
+        String createSnippetTagsTable = """
+        		CREATE TABLE IF NOT EXISTS snippet_tags (
+        		    snippet_id TEXT NOT NULL,
+        		    user_id TEXT NOT NULL,
+        		    tag TEXT NOT NULL,
+        		    PRIMARY KEY (snippet_id, tag)
+        		) WITHOUT ROWID
+        		""";
+        
+        String createSnippetTagsIndex = "CREATE INDEX IF NOT EXISTS idx_snippet_tags_user_tag ON snippet_tags (user_id, tag, snippet_id)";
+        
+        // Semantic search vectors, see SnippetEmbedder; little-endian float32s
+        String createSnippetEmbeddingsTable = """
+        		CREATE TABLE IF NOT EXISTS snippet_embeddings (
+        		    snippet_id TEXT PRIMARY KEY,
+        		    user_id TEXT NOT NULL,
+        		    version INTEGER NOT NULL,
+        		    embedding BLOB NOT NULL
+        		)
+        		""";
+        
+        String createSnippetEmbeddingsIndex = "CREATE INDEX IF NOT EXISTS idx_snippet_embeddings_user ON snippet_embeddings (user_id, version)";
+        
+        // Jetty session data, see SqliteSessionDataStore
+        String createSessionsTable = """
+        		CREATE TABLE IF NOT EXISTS sessions (
+        		    id TEXT NOT NULL,
+        		    context_path TEXT NOT NULL,
+        		    vhost TEXT NOT NULL,
+        		    last_node TEXT,
+        		    created INTEGER NOT NULL,
+        		    accessed INTEGER NOT NULL,
+        		    last_accessed INTEGER NOT NULL,
+        		    cookie_set INTEGER NOT NULL,
+        		    expiry INTEGER NOT NULL,
+        		    max_inactive_ms INTEGER NOT NULL,
+        		    last_saved INTEGER NOT NULL,
+        		    attributes BLOB,
+        		    PRIMARY KEY (id, context_path, vhost)
+        		)
+        		""";
+        
+        String createSessionsExpiryIndex = "CREATE INDEX IF NOT EXISTS idx_sessions_expiry ON sessions (expiry)";
+        
+        // The snippets listing, search pages and library counts all filter by owner, newest first
+        String createSnippetsUserCreatedIndex = "CREATE INDEX IF NOT EXISTS idx_snippets_user_created ON snippets (user_id, created_at DESC, id DESC)";
+        
+        List<Migration> migrations = List.of(
+        		new Migration(1, "users and snippets", conn -> {
+        			execute(conn, createUsersTable, createSnippetsTable);
+        			if (!columnExists(conn, "snippets", "user_id")) {
+        				execute(conn, alterSnippetsTable);
+        			}
+        		}),
+        		new Migration(2, "content-addressed code storage", conn -> {
+        			execute(conn, createSnippetBlobsTable);
+        			if (!columnExists(conn, "snippets", "code_hash")) {
+        				execute(conn, "ALTER TABLE snippets ADD COLUMN code_hash BLOB");
+        			}
+        			execute(conn, createSnippetsCodeHashIndex);
+        			migrateCodeToBlobs(conn);
+        		}),
+        		new Migration(3, "code previews", conn -> {
+        			if (!columnExists(conn, "snippets", "code_preview")) {
+        				execute(conn, "ALTER TABLE snippets ADD COLUMN code_preview TEXT",
+        						"ALTER TABLE snippets ADD COLUMN code_length INTEGER NOT NULL DEFAULT 0");
+        			}
+        			backfillCodePreviews(conn);
+        		}),
+        		new Migration(4, "full-text search index", conn -> {
+        			execute(conn, createSnippetsFtsTable);
+        			backfillSearchIndex(conn);
+        		}),
+        		new Migration(5, "normalized tags", conn -> {
+        			boolean migrateTags = !tableExists(conn, "snippet_tags");
+        			execute(conn, createSnippetTagsTable, createSnippetTagsIndex);
+        			if (migrateTags) {
+        				migrateTags(conn);
+        			}
+        		}),
+        		new Migration(6, "semantic search embeddings", conn -> {
+        			execute(conn, createSnippetEmbeddingsTable, createSnippetEmbeddingsIndex);
+        			backfillEmbeddings(conn);
+        		}),
+        		new Migration(7, "web sessions", conn -> execute(conn, createSessionsTable, createSessionsExpiryIndex)),
+        		new Migration(8, "snippet listing index", conn -> {
+        			execute(conn, createSnippetsUserCreatedIndex);
+        			// Row counts per index, so the planner knows user_id narrows far better than code_hash
+        			execute(conn, "ANALYZE");
+        		}),
+        		new Migration(9, "highlighted code previews", conn -> {
+        			if (!columnExists(conn, "snippets", "code_preview_html")) {
+        				execute(conn, "ALTER TABLE snippets ADD COLUMN code_preview_html TEXT");
+        			}
+        			backfillPreviewHtml(conn);
+        		}),
+        		new Migration(10, "per-user search index", conn -> {
+        			// The owner used to be an UNINDEXED user_id, so every search matched and ranked all users' rows
+        			execute(conn, "DROP TABLE IF EXISTS snippets_fts", createSnippetsFtsTable);
+        			backfillSearchIndex(conn);
+        		}));
+        
+        try {
+        	int current = inTransaction(conn -> {
+        		execute(conn, createSchemaVersionTable);
+        		return schemaVersion(conn);
+        	});
+        	int latest = migrations.get(migrations.size() - 1).version();
+        	if (current >= latest) {
+        		if (current > latest) {
+        			System.err.println("Database schema version " + current + " is newer than this build knows (" + latest + ")");
+        		}
+        		System.out.println("Database schema is current (version " + current + ")");
+        		return;
+        	}
+        	
+        	for (Migration migration : migrations) {
+        		if (migration.version() <= current) {
+        			continue;
+        		}
+        		long started = System.nanoTime();
+        		inTransaction(conn -> {
+        			migration.step().apply(conn);
+        			try (PreparedStatement pstmt = conn.prepareStatement("INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+        				pstmt.setInt(1, migration.version());
+        				pstmt.setString(2, migration.description());
+        				pstmt.executeUpdate();
+        			}
+        			return null;
+        		});
+        		System.out.printf("Applied schema migration %d (%s) in %d ms%n",
+        				migration.version(), migration.description(), (System.nanoTime() - started) / 1_000_000);
+        	}
+        	vacuumIfMostlyFree();
+        	System.out.println("Database initialized successfully");
         } catch (SQLException e) {
             System.err.println("Failed to initialize database: " + e.getMessage());
             throw new RuntimeException(e);
         }
     }
     
+    /**
+     * One step of {@link #initializeDatabase}, run inside the transaction that records it.
+     */
+    private record Migration(int version, String description, Step step) {
+    }
+    
+    @FunctionalInterface
+    private interface Step {
+    	void apply(Connection conn) throws SQLException;
+    }
+    
+    private static int schemaVersion(Connection conn) throws SQLException {
+    	try (Statement stmt = conn.createStatement();
+    		 ResultSet rs = stmt.executeQuery("SELECT coalesce(max(version), 0) FROM schema_version")) {
+    		return rs.next() ? rs.getInt(1) : 0;
+    	}
+    }
+    
+    private static void execute(Connection conn, String... statements) throws SQLException {
+    	try (Statement stmt = conn.createStatement()) {
+    		for (String sql : statements) {
+    			stmt.execute(sql);
+    		}
+    	}
+    }
+    
+    /**
+     * Vacuums when migrations have left more than a quarter of the file unused, as moving
+     * code into the blob store does, so the space goes back to the file system.
+     */
+    private static void vacuumIfMostlyFree() throws SQLException {
+    	long free;
+    	long total;
+    	try (Connection conn = getWriteConnection(); Statement stmt = conn.createStatement()) {
+    		try (ResultSet rs = stmt.executeQuery("PRAGMA freelist_count")) {
+    			free = rs.next() ? rs.getLong(1) : 0;
+    		}
+    		try (ResultSet rs = stmt.executeQuery("PRAGMA page_count")) {
+    			total = rs.next() ? rs.getLong(1) : 0;
+    		}
+    	}
+    	if (free * 4 <= total) {
+    		return;
+    	}
+    	System.out.println("Vacuuming " + free + " free pages of " + total + "...");
+    	// Own connection: pooled ones keep cached statements open, which VACUUM refuses
+    	try (Connection vacuum = DriverManager.getConnection(DB_URL);
+    		 Statement stmt = vacuum.createStatement()) {
+    		stmt.execute("VACUUM");
+    		// In WAL mode the rewritten file goes through the log first; fold it back in now
+    		stmt.execute("PRAGMA wal_checkpoint(TRUNCATE)");
+    	}
+    }
+    
+    /**
+     * Rebuilds the full-text index when it is out of step with the snippets table,
+     * e.g. on the first start after the index was introduced.
+     */
+    private static void backfillSearchIndex(Connection conn) throws SQLException {
+    	try (Statement stmt = conn.createStatement();
+    		 ResultSet rs = stmt.executeQuery("SELECT (SELECT count(*) FROM snippets), (SELECT count(*) FROM snippets_fts)")) {
+    		rs.next();
+    		if (rs.getLong(1) == rs.getLong(2)) {
+    			return;
+    		}
+    	}
+    	
+    	try (Statement stmt = conn.createStatement();
+    		 PreparedStatement insert = conn.prepareStatement("""
+    				INSERT INTO snippets_fts (rowid, owner, code, description, language, tags) VALUES (?, ?, ?, ?, ?, ?)
+    				""")) {
+    		stmt.execute("DELETE FROM snippets_fts");
+    		int rows = 0;
+    		// The code may be compressed, so it goes through Java rather than INSERT ... SELECT
+    		try (ResultSet rs = stmt.executeQuery("SELECT s.rowid AS doc_id, " + SnippetBodies.COLUMNS
+    				+ " FROM snippets s " + SnippetBodies.JOIN)) {
+    			while (rs.next()) {
+    				insert.setLong(1, rs.getLong("doc_id"));
+    				insert.setString(2, SnippetDAO.searchOwner(rs.getString("user_id")));
+    				insert.setString(3, SnippetBodies.code(rs));
+    				insert.setString(4, rs.getString("description"));
+    				insert.setString(5, rs.getString("language"));
+    				insert.setString(6, rs.getString("tags"));
+    				insert.addBatch();
+    				if (++rows % 1000 == 0) {
+    					insert.executeBatch();
+    				}
+    			}
+    		}
+    		insert.executeBatch();
+    		System.out.println("Search index rebuilt for " + rows + " snippets");
+    	}
+    }
+    
+    /**
+     * Moves the code of rows written before the blob store existed into snippet_blobs.
+     * The space it held is given back by {@link #vacuumIfMostlyFree} afterwards.
+     */
+    private static void migrateCodeToBlobs(Connection conn) throws SQLException {
+    	int rows = 0;
+    	try (Statement stmt = conn.createStatement();
+    		 ResultSet rs = stmt.executeQuery("SELECT rowid, code FROM snippets WHERE code_hash IS NULL");
+    		 PreparedStatement store = conn.prepareStatement(SnippetBodies.STORE_SQL);
+    		 PreparedStatement update = conn.prepareStatement("UPDATE snippets SET code = '', code_hash = ? WHERE rowid = ?")) {
+    		while (rs.next()) {
+    			SnippetBodies.Body body = SnippetBodies.encode(rs.getString("code"), null);
+    			SnippetBodies.addToBatch(store, body);
+    			update.setBytes(1, body.hash());
+    			update.setLong(2, rs.getLong("rowid"));
+    			update.addBatch();
+    			if (++rows % 1000 == 0) {
+    				store.executeBatch();
+    				update.executeBatch();
+    			}
+    		}
+    		store.executeBatch();
+    		update.executeBatch();
+    	}
+    	if (rows > 0) {
+    		System.out.println("Moved code of " + rows + " snippets into the blob store");
+    	}
+    }
+    
+    /**
+     * Fills in the code preview list and search results show, for rows written before it existed.
+     */
+    private static void backfillCodePreviews(Connection conn) throws SQLException {
+    	String missing = "SELECT s.rowid AS doc_id, " + SnippetBodies.COLUMNS + " FROM snippets s "
+    			+ SnippetBodies.JOIN + " WHERE s.code_preview IS NULL";
+    	int rows = 0;
+    	try (Statement stmt = conn.createStatement();
+    		 ResultSet rs = stmt.executeQuery(missing);
+    		 PreparedStatement update = conn.prepareStatement("UPDATE snippets SET code_preview = ?, code_length = ? WHERE rowid = ?")) {
+    		while (rs.next()) {
+    			String code = SnippetBodies.code(rs);
+    			update.setString(1, SnippetBodies.preview(code));
+    			update.setInt(2, code.length());
+    			update.setLong(3, rs.getLong("doc_id"));
+    			update.addBatch();
+    			if (++rows % 1000 == 0) {
+    				update.executeBatch();
+    			}
+    		}
+    		update.executeBatch();
+    	}
+    	if (rows > 0) {
+    		System.out.println("Computed code previews for " + rows + " snippets");
+    	}
+    }
+    
+    /**
+     * Highlights the stored previews of rows written before previews were highlighted,
+     * see {@link SyntaxHighlighter}. The preview is all it needs, not the code.
+     */
+    private static void backfillPreviewHtml(Connection conn) throws SQLException {
+    	int rows = 0;
+    	try (Statement stmt = conn.createStatement();
+    		 ResultSet rs = stmt.executeQuery("SELECT rowid, code_preview, language FROM snippets WHERE code_preview_html IS NULL");
+    		 PreparedStatement update = conn.prepareStatement("UPDATE snippets SET code_preview_html = ? WHERE rowid = ?")) {
+    		while (rs.next()) {
+    			update.setString(1, SyntaxHighlighter.highlight(rs.getString("code_preview"), rs.getString("language")));
+    			update.setLong(2, rs.getLong("rowid"));
+    			update.addBatch();
+    			if (++rows % 1000 == 0) {
+    				update.executeBatch();
+    			}
+    		}
+    		update.executeBatch();
+    	}
+    	if (rows > 0) {
+    		System.out.println("Highlighted code previews of " + rows + " snippets");
+    	}
+    }
+    
+    /**
+     * Copies the comma-joined snippets.tags of existing rows into snippet_tags.
+     */
+    private static void migrateTags(Connection conn) throws SQLException {
+    	try (Statement stmt = conn.createStatement();
+    		 ResultSet rs = stmt.executeQuery("SELECT id, user_id, tags FROM snippets WHERE tags IS NOT NULL AND tags <> ''");
+    		 PreparedStatement insert = conn.prepareStatement("INSERT OR IGNORE INTO snippet_tags (snippet_id, user_id, tag) VALUES (?, ?, ?)")) {
+    		int rows = 0;
+    		while (rs.next()) {
+    			for (String tag : rs.getString("tags").split(",")) {
+    				String normalized = SnippetDAO.normalizeTag(tag);
+    				if (normalized.isEmpty()) {
+    					continue;
+    				}
+    				insert.setString(1, rs.getString("id"));
+    				insert.setString(2, rs.getString("user_id"));
+    				insert.setString(3, normalized);
+    				insert.addBatch();
+    			}
+    			rows++;
+    		}
+    		insert.executeBatch();
+    		System.out.println("Migrated tags for " + rows + " snippets");
+    	}
+    }
+    
+    /**
+     * Embeds snippets that have no vector yet, or one from an older {@link SnippetEmbedder#VERSION}.
+     */
+    private static void backfillEmbeddings(Connection conn) throws SQLException {
+    	String missing = """
+    			SELECT %s FROM snippets s
+    			%s
+    			LEFT JOIN snippet_embeddings e ON e.snippet_id = s.id
+    			WHERE e.snippet_id IS NULL OR e.version <> ?
+    			""".formatted(SnippetBodies.COLUMNS, SnippetBodies.JOIN);
+    	try (PreparedStatement select = conn.prepareStatement(missing);
+    		 PreparedStatement insert = conn.prepareStatement(SnippetDAO.EMBEDDING_SQL)) {
+    		select.setInt(1, SnippetEmbedder.VERSION);
+    		int rows = 0;
+    		try (ResultSet rs = select.executeQuery()) {
+    			while (rs.next()) {
+    				Snippet snippet = new Snippet();
+    				snippet.setCode(SnippetBodies.code(rs));
+    				snippet.setLanguage(rs.getString("language"));
+    				snippet.setDescription(rs.getString("description"));
+    				String tags = rs.getString("tags");
+    				snippet.setTags(tags == null || tags.isEmpty() ? List.of() : Arrays.asList(tags.split(",")));
+    				
+    				insert.setString(1, rs.getString("id"));
+    				insert.setString(2, rs.getString("user_id"));
+    				insert.setInt(3, SnippetEmbedder.VERSION);
+    				insert.setBytes(4, SnippetEmbedder.toBytes(SnippetEmbedder.embed(snippet)));
+    				insert.addBatch();
+    				if (++rows % 1000 == 0) {
+    					insert.executeBatch();
+    				}
+    			}
+    		}
+    		insert.executeBatch();
+    		if (rows > 0) {
+    			System.out.println("Computed embeddings for " + rows + " snippets");
+    		}
+    	}
+    }
+    
+    private static boolean tableExists(Connection conn, String tableName) throws SQLException {
+    	try (PreparedStatement pstmt = conn.prepareStatement("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?")) {
+    		pstmt.setString(1, tableName);
+    		try (ResultSet rs = pstmt.executeQuery()) {
+    			return rs.next();
+    		}
+    	}
+    }
     
-    private static boolean columnExists(String tableName, String columnName) {
+    private static boolean columnExists(Connection conn, String tableName, String columnName) {
         String sql = "PRAGMA table_info(" + tableName + ")";
         
-        try (Connection conn = getConnection();
-             Statement stmt = conn.createStatement();
+        try (Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
             while (rs.next()) {
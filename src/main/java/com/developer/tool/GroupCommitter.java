@@ -0,0 +1,215 @@
+package com.developer.tool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Queues writes for one thread that runs them on the writer connection in shared
+ * transactions, so concurrent writers pay for one commit (and its fsync) per batch
+ * instead of one each, and never contend for the write lock among themselves.
+ *
+ * A batch closes when it holds {@code maxBatch} writes or {@code maxWaitMillis} after
+ * its first write arrived, whichever comes first. Each write runs inside its own
+ * savepoint, so one that fails is rolled back alone and the rest still commit. A
+ * write's future completes only after its batch has committed.
+ *
+ * Whatever a write or a commit throws, Errors included, fails only the futures it
+ * concerns: the thread is the only way writes reach the database, so it must not die
+ * with callers waiting on it. Writes still queued when it stops are failed.
+ */
+public class GroupCommitter implements AutoCloseable {
+
+	private final LinkedBlockingQueue<Write<?>> queue = new LinkedBlockingQueue<>();
+	private final int maxBatch;
+	private final long maxWaitNanos;
+	private final Thread thread;
+	private volatile boolean closed;
+
+	private final LongAdder batches = new LongAdder();
+	private final LongAdder writes = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+	private final LongAdder commitNanos = new LongAdder();
+
+	public GroupCommitter(int maxBatch, long maxWaitMillis) {
+		this.maxBatch = maxBatch;
+		this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+		this.thread = new Thread(this::run, "group-commit");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Queues {@code work}. The future completes with its result once it is committed, or
+	 * exceptionally with what it threw (or what the commit threw).
+	 */
+	public <T> CompletableFuture<T> submit(DatabaseManager.SqlWork<T> work) {
+		Write<T> write = new Write<>(work, new CompletableFuture<>());
+		if (closed) {
+			return refused(write);
+		}
+		queue.add(write);
+		// close() may have run since the check, and the thread may be gone; if the write is
+		// still queued, take it back, otherwise the thread or its final drain has it
+		if (closed && queue.remove(write)) {
+			return refused(write);
+		}
+		return write.future;
+	}
+
+	private static <T> CompletableFuture<T> refused(Write<T> write) {
+		write.future.completeExceptionally(new SQLException("Database is shutting down"));
+		return write.future;
+	}
+
+	/**
+	 * {@link #submit} and wait, rethrowing the write's own exception.
+	 */
+	public <T> T execute(DatabaseManager.SqlWork<T> work) throws SQLException {
+		try {
+			return submit(work).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof SQLException sqlException) {
+				throw sqlException;
+			}
+			if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			if (e.getCause() instanceof Error error) {
+				throw error;
+			}
+			throw e;
+		}
+	}
+
+	private void run() {
+		try {
+			runBatches();
+		} finally {
+			List<Write<?>> left = new ArrayList<>();
+			queue.drainTo(left);
+			left.forEach(write -> write.future.completeExceptionally(new SQLException("Database is shutting down")));
+		}
+	}
+
+	private void runBatches() {
+		List<Write<?>> batch = new ArrayList<>(maxBatch);
+		while (!closed || !queue.isEmpty()) {
+			try {
+				Write<?> first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				long deadline = System.nanoTime() + maxWaitNanos;
+				while (batch.size() < maxBatch) {
+					queue.drainTo(batch, maxBatch - batch.size());
+					long left = deadline - System.nanoTime();
+					if (batch.size() >= maxBatch || left <= 0) {
+						break;
+					}
+					Write<?> next = queue.poll(left, TimeUnit.NANOSECONDS);
+					if (next == null) {
+						break;
+					}
+					batch.add(next);
+				}
+				commit(batch);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				// Interrupted while the batch was still filling: none of it ran
+				batch.forEach(write -> write.future.completeExceptionally(new SQLException("Database is shutting down")));
+				return;
+			} catch (Throwable e) {
+				// commit() fails its own batch; this is for whatever escaped it, e.g. an Error while completing
+				batch.forEach(write -> write.future.completeExceptionally(e));
+			} finally {
+				batch.clear();
+			}
+		}
+	}
+
+	private void commit(List<Write<?>> batch) {
+		long started = System.nanoTime();
+		List<Object> results = new ArrayList<>(batch.size());
+		try (Connection conn = DatabaseManager.getWriteConnection(); Statement stmt = conn.createStatement()) {
+			conn.setAutoCommit(false);
+			try {
+				for (Write<?> write : batch) {
+					stmt.execute("SAVEPOINT write");
+					try {
+						results.add(write.work.execute(conn));
+						stmt.execute("RELEASE write");
+					} catch (Throwable e) {
+						stmt.execute("ROLLBACK TO write");
+						stmt.execute("RELEASE write");
+						results.add(new Failed(e));
+					}
+				}
+				conn.commit();
+			} catch (Throwable e) {
+				conn.rollback();
+				throw e;
+			} finally {
+				conn.setAutoCommit(true);
+			}
+		} catch (Throwable e) {
+			failures.add(batch.size());
+			batch.forEach(write -> write.future.completeExceptionally(e));
+			return;
+		} finally {
+			commitNanos.add(System.nanoTime() - started);
+			batches.increment();
+			writes.add(batch.size());
+		}
+
+		for (int i = 0; i < batch.size(); i++) {
+			Object result = results.get(i);
+			if (result instanceof Failed failed) {
+				failures.increment();
+				batch.get(i).future.completeExceptionally(failed.cause);
+			} else {
+				batch.get(i).complete(result);
+			}
+		}
+	}
+
+	public Stats stats() {
+		long batchCount = batches.sum();
+		return new Stats(queue.size(), batchCount, writes.sum(), failures.sum(),
+				batchCount == 0 ? 0 : commitNanos.sum() / 1_000_000.0 / batchCount);
+	}
+
+	/**
+	 * Commits whatever is queued, then stops the thread. Later writes are refused.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		try {
+			thread.join(TimeUnit.SECONDS.toMillis(10));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public record Stats(int queued, long batches, long writes, long failures, double avgBatchMillis) {
+	}
+
+	private record Write<T>(DatabaseManager.SqlWork<T> work, CompletableFuture<T> future) {
+		@SuppressWarnings("unchecked")
+		void complete(Object result) {
+			future.complete((T) result);
+		}
+	}
+
+	private record Failed(Throwable cause) {
+	}
+}
@@ -0,0 +1,154 @@
+package com.developer.tool;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * HTML template compiled once into alternating literal and slot segments. Literals are
+ * encoded to UTF-8 up front and copied into the {@link HtmlWriter} buffer as-is; slots
+ * write their model's values straight into the same buffer, escaped unless bound with
+ * {@link Builder#raw}. Rendering therefore allocates nothing the slots don't.
+ *
+ * Slots are written {@code {{name}}}. Every slot in the source must be bound, and every
+ * binding must be used, or {@link Builder#build()} fails at startup.
+ */
+public final class HtmlTemplate<T> {
+
+	private final byte[][] literals;
+	private final Slot<T>[] slots;
+
+	private HtmlTemplate(byte[][] literals, Slot<T>[] slots) {
+		this.literals = literals;
+		this.slots = slots;
+	}
+
+	public static <T> Builder<T> builder(String source) {
+		return new Builder<>(source);
+	}
+
+	/**
+	 * Template with no slots, e.g. a static fragment shared by several responses.
+	 */
+	public static HtmlTemplate<Void> constant(String source) {
+		return HtmlTemplate.<Void>builder(source).build();
+	}
+
+	public void render(HtmlWriter out, T model) throws IOException {
+		out.raw(literals[0]);
+		for (int i = 0; i < slots.length; i++) {
+			slots[i].write(out, model);
+			out.raw(literals[i + 1]);
+		}
+	}
+
+	@FunctionalInterface
+	public interface Slot<T> {
+		void write(HtmlWriter out, T model) throws IOException;
+	}
+
+	public static final class Builder<T> {
+
+		private final String source;
+		private final Map<String, Object> bindings = new HashMap<>();
+
+		private Builder(String source) {
+			this.source = source;
+		}
+
+		/**
+		 * Binds a slot to a value that is HTML-escaped as it's written. Null writes nothing.
+		 */
+		public Builder<T> escaped(String name, Function<T, ? extends CharSequence> value) {
+			return slot(name, (out, model) -> out.escaped(value.apply(model)));
+		}
+
+		/**
+		 * Binds a slot to a value that is already markup, or known to be safe (e.g. generated ids).
+		 */
+		public Builder<T> raw(String name, Function<T, ? extends CharSequence> value) {
+			return slot(name, (out, model) -> {
+				CharSequence text = value.apply(model);
+				if (text != null) {
+					out.raw(text);
+				}
+			});
+		}
+
+		public Builder<T> slot(String name, Slot<T> writer) {
+			return bind(name, writer);
+		}
+
+		/**
+		 * Binds a slot to fixed markup, folded into the neighbouring literals at build time.
+		 */
+		public Builder<T> constant(String name, String markup) {
+			return bind(name, markup);
+		}
+
+		/**
+		 * Binds a slot to another template's output, folded in like {@link #constant}.
+		 * Only templates without slots can be inlined.
+		 */
+		public Builder<T> constant(String name, HtmlTemplate<Void> template) {
+			if (template.slots.length > 0) {
+				throw new IllegalArgumentException("Only templates without slots can be inlined: " + name);
+			}
+			return bind(name, new String(template.literals[0], StandardCharsets.UTF_8));
+		}
+
+		private Builder<T> bind(String name, Object binding) {
+			if (bindings.put(name, binding) != null) {
+				throw new IllegalArgumentException("Slot bound twice: " + name);
+			}
+			return this;
+		}
+
+		@SuppressWarnings("unchecked")
+		public HtmlTemplate<T> build() {
+			List<byte[]> literals = new ArrayList<>();
+			List<Slot<T>> slots = new ArrayList<>();
+			StringBuilder literal = new StringBuilder();
+			Map<String, Object> unused = new HashMap<>(bindings);
+
+			int position = 0;
+			while (true) {
+				int open = source.indexOf("{{", position);
+				if (open < 0) {
+					literal.append(source, position, source.length());
+					break;
+				}
+				int close = source.indexOf("}}", open + 2);
+				if (close < 0) {
+					throw new IllegalArgumentException("Unclosed slot at offset " + open);
+				}
+				literal.append(source, position, open);
+				String name = source.substring(open + 2, close).strip();
+				Object binding = bindings.get(name);
+				if (binding == null) {
+					throw new IllegalArgumentException("No binding for slot: " + name);
+				}
+				unused.remove(name);
+
+				if (binding instanceof String markup) {
+					literal.append(markup);
+				} else {
+					literals.add(literal.toString().getBytes(StandardCharsets.UTF_8));
+					literal.setLength(0);
+					slots.add((Slot<T>) binding);
+				}
+				position = close + 2;
+			}
+			literals.add(literal.toString().getBytes(StandardCharsets.UTF_8));
+
+			if (!unused.isEmpty()) {
+				throw new IllegalArgumentException("Bound slots missing from template: " + unused.keySet());
+			}
+			return new HtmlTemplate<>(literals.toArray(byte[][]::new), slots.toArray(Slot[]::new));
+		}
+	}
+}
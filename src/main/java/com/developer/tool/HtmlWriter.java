@@ -0,0 +1,184 @@
+package com.developer.tool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Buffered UTF-8 writer for HTML responses. Text is encoded straight into a pooled
+ * byte buffer, and escaping happens in the same pass, so rendering a snippet never
+ * builds intermediate strings. A full buffer is written to the underlying stream,
+ * which the servlet container sends as a chunk.
+ *
+ * Not thread-safe; one instance per response. {@link #close()} flushes and returns
+ * the buffer to the pool but leaves the underlying stream open.
+ */
+public final class HtmlWriter implements Closeable {
+
+	private static final int BUFFER_SIZE = 16 * 1024;
+	private static final int MAX_POOLED_BUFFERS = 64;
+	private static final ConcurrentLinkedQueue<byte[]> BUFFERS = new ConcurrentLinkedQueue<>();
+	private static final AtomicInteger pooledBuffers = new AtomicInteger();
+
+	private final OutputStream out;
+	private byte[] buffer;
+	private int position;
+
+	public HtmlWriter(OutputStream out) {
+		this.out = out;
+		byte[] pooled = BUFFERS.poll();
+		if (pooled != null) {
+			pooledBuffers.decrementAndGet();
+		}
+		this.buffer = pooled != null ? pooled : new byte[BUFFER_SIZE];
+	}
+
+	// Worst case per char: a six-byte entity, or four UTF-8 bytes for a surrogate pair
+	private static final int MAX_BYTES_PER_CHAR = 6;
+
+	private static final byte[][] ENTITIES = new byte[128][];
+
+	static {
+		ENTITIES['&'] = "&amp;".getBytes(StandardCharsets.US_ASCII);
+		ENTITIES['<'] = "&lt;".getBytes(StandardCharsets.US_ASCII);
+		ENTITIES['>'] = "&gt;".getBytes(StandardCharsets.US_ASCII);
+		ENTITIES['"'] = "&quot;".getBytes(StandardCharsets.US_ASCII);
+		ENTITIES['\''] = "&#x27;".getBytes(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Writes markup as-is.
+	 */
+	public HtmlWriter raw(CharSequence text) throws IOException {
+		for (int i = 0, n = text.length(); i < n; i++) {
+			i = encode(text, i);
+		}
+		return this;
+	}
+
+	public HtmlWriter raw(byte[] bytes) throws IOException {
+		if (bytes.length > buffer.length - position) {
+			flushBuffer();
+			if (bytes.length > buffer.length) {
+				out.write(bytes);
+				return this;
+			}
+		}
+		System.arraycopy(bytes, 0, buffer, position, bytes.length);
+		position += bytes.length;
+		return this;
+	}
+
+	/**
+	 * Writes text with the HTML special characters escaped. Null writes nothing.
+	 */
+	public HtmlWriter escaped(CharSequence text) throws IOException {
+		return text == null ? this : escaped(text, 0, text.length());
+	}
+
+	/**
+	 * Escapes {@code text[start, end)} without copying it out first.
+	 */
+	public HtmlWriter escaped(CharSequence text, int start, int end) throws IOException {
+		int i = start;
+		while (i < end) {
+			ensure(MAX_BYTES_PER_CHAR);
+			// Escape as many chars as are guaranteed to fit without checking the buffer per char
+			int limit = Math.min(end, i + (buffer.length - position) / MAX_BYTES_PER_CHAR);
+			for (; i < limit; i++) {
+				char c = text.charAt(i);
+				if (c >= 0x80) {
+					i = encode(text, i);
+					continue;
+				}
+				byte[] entity = ENTITIES[c];
+				if (entity == null) {
+					buffer[position++] = (byte) c;
+				} else {
+					System.arraycopy(entity, 0, buffer, position, entity.length);
+					position += entity.length;
+				}
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Sends everything buffered so far to the client, e.g. after the first row
+	 * so the browser can start parsing before the rest is rendered.
+	 */
+	public void flush() throws IOException {
+		flushBuffer();
+		out.flush();
+	}
+
+	/**
+	 * Bytes written since the last flush.
+	 */
+	public int buffered() {
+		return position;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (buffer == null) {
+			return;
+		}
+		try {
+			flushBuffer();
+		} finally {
+			if (pooledBuffers.incrementAndGet() <= MAX_POOLED_BUFFERS) {
+				BUFFERS.offer(buffer);
+			} else {
+				pooledBuffers.decrementAndGet();
+			}
+			buffer = null;
+		}
+	}
+
+	/**
+	 * Encodes the char at {@code i} (plus its low surrogate, if any) and returns
+	 * the index of the last char consumed.
+	 */
+	private int encode(CharSequence text, int i) throws IOException {
+		ensure(4);
+		char c = text.charAt(i);
+		if (c < 0x80) {
+			buffer[position++] = (byte) c;
+		} else if (c < 0x800) {
+			buffer[position++] = (byte) (0xC0 | (c >> 6));
+			buffer[position++] = (byte) (0x80 | (c & 0x3F));
+		} else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+				&& Character.isLowSurrogate(text.charAt(i + 1))) {
+			int cp = Character.toCodePoint(c, text.charAt(++i));
+			buffer[position++] = (byte) (0xF0 | (cp >> 18));
+			buffer[position++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+			buffer[position++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+			buffer[position++] = (byte) (0x80 | (cp & 0x3F));
+		} else if (Character.isSurrogate(c)) {
+			// Unpaired surrogate, same replacement String.getBytes would use
+			buffer[position++] = '?';
+		} else {
+			buffer[position++] = (byte) (0xE0 | (c >> 12));
+			buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+			buffer[position++] = (byte) (0x80 | (c & 0x3F));
+		}
+		return i;
+	}
+
+	private void ensure(int bytes) throws IOException {
+		if (buffer.length - position < bytes) {
+			flushBuffer();
+		}
+	}
+
+	private void flushBuffer() throws IOException {
+		if (position > 0) {
+			out.write(buffer, 0, position);
+			position = 0;
+		}
+	}
+}
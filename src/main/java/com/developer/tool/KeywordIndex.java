@@ -0,0 +1,227 @@
+package com.developer.tool;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+/**
+ * In-memory inverted index over one user's library, for {@link MemorySnippetStore}'s
+ * keyword search. It matches the way the FTS5 index does: text is folded like
+ * {@link SearchSessions#fold}, split into tokens of letters, digits and underscores, and a
+ * query term matches every token it is a prefix of. The vocabulary is sorted, so the
+ * tokens a term matches are one range of it.
+ *
+ * A posting is a snippet ordinal with a mask of the fields the token occurs in. Per term,
+ * a snippet scores the weight of the best field it matched in (description 4, tags 3,
+ * language 2, code 1, as in SnippetDAO's bm25 call), and it must match every term. Each
+ * ordinal's creation time is kept alongside, so ranking ties in list order needs no
+ * lookups of the snippets themselves.
+ *
+ * Removing a snippet only clears its bit in {@link #live}, as in {@link TrigramIndex}, and
+ * {@link #needsRebuild()} asks for a rebuild once most of the index is dead. Thread-safe.
+ */
+final class KeywordIndex {
+
+	private static final int DESCRIPTION = 1;
+	private static final int TAGS = 2;
+	private static final int LANGUAGE = 4;
+	private static final int CODE = 8;
+	private static final int FIELD_BITS = 4;
+
+	// Longer tokens are base64, hashes and the like, which nobody types a prefix of
+	private static final int MAX_TOKEN_LENGTH = 64;
+
+	private final TreeMap<String, IntList> tokens = new TreeMap<>();
+	private final Map<String, Integer> docIds = new HashMap<>();
+	private final List<String> docSnippetIds = new ArrayList<>();
+	// Created-at as epoch nanoseconds, by ordinal
+	private long[] docTimes = new long[16];
+	private final BitSet live = new BitSet();
+	private int liveCount;
+
+	private long bytes;
+
+	/**
+	 * Indexes {@code snippet}, replacing whatever was indexed under its id before.
+	 */
+	public synchronized void add(Snippet snippet) {
+		remove(snippet.getId());
+
+		int doc = docSnippetIds.size();
+		docSnippetIds.add(snippet.getId());
+		docIds.put(snippet.getId(), doc);
+		if (doc == docTimes.length) {
+			docTimes = Arrays.copyOf(docTimes, doc * 2);
+		}
+		docTimes[doc] = timeOf(snippet.getCreatedAt());
+		live.set(doc);
+		liveCount++;
+		bytes += 168 + snippet.getId().length();
+
+		Map<String, Integer> fields = new HashMap<>();
+		collectTokens(snippet.getDescription(), DESCRIPTION, fields);
+		if (snippet.getTags() != null) {
+			collectTokens(String.join(" ", snippet.getTags()), TAGS, fields);
+		}
+		collectTokens(snippet.getLanguage(), LANGUAGE, fields);
+		collectTokens(snippet.getCode(), CODE, fields);
+		fields.forEach((token, mask) -> {
+			IntList postings = tokens.get(token);
+			if (postings == null) {
+				postings = new IntList();
+				tokens.put(token, postings);
+				bytes += 80 + 2L * token.length();
+			}
+			bytes -= postings.bytes();
+			postings.add(doc << FIELD_BITS | mask);
+			bytes += postings.bytes();
+		});
+	}
+
+	public synchronized void remove(String snippetId) {
+		Integer doc = docIds.remove(snippetId);
+		if (doc != null) {
+			live.clear(doc);
+			liveCount--;
+		}
+	}
+
+	/**
+	 * True once more of the index is removed snippets than live ones.
+	 */
+	public synchronized boolean needsRebuild() {
+		int dead = docSnippetIds.size() - liveCount;
+		return dead > 1024 && dead > liveCount;
+	}
+
+	/** Rough heap footprint, for sizing the cache that holds indexes. */
+	public synchronized long bytes() {
+		return bytes;
+	}
+
+	/**
+	 * Ids of the best {@code top} snippets matching every one of {@code terms} (from
+	 * {@link SearchSessions#terms}), best first with ties in list order, or null if more
+	 * than {@code max} match.
+	 */
+	public synchronized List<String> search(String[] terms, int max, int top) {
+		int docs = docSnippetIds.size();
+		int[] scores = new int[docs];
+		byte[] best = new byte[docs];
+		for (int t = 0; t < terms.length; t++) {
+			Arrays.fill(best, (byte) 0);
+			String term = terms[t];
+			for (IntList postings : tokens.subMap(term, true, term + Character.MAX_VALUE, false).values()) {
+				for (int i = 0; i < postings.size; i++) {
+					int posting = postings.values[i];
+					int doc = posting >>> FIELD_BITS;
+					byte weight = weight(posting & ((1 << FIELD_BITS) - 1));
+					if (weight > best[doc]) {
+						best[doc] = weight;
+					}
+				}
+			}
+			for (int doc = 0; doc < docs; doc++) {
+				// A snippet that missed an earlier term stays at 0
+				scores[doc] = best[doc] == 0 || (t > 0 && scores[doc] == 0) ? 0 : scores[doc] + best[doc];
+			}
+		}
+
+		Comparator<Integer> bestFirst = (a, b) -> scores[a] != scores[b] ? Integer.compare(scores[b], scores[a])
+				: docTimes[a] != docTimes[b] ? Long.compare(docTimes[b], docTimes[a])
+				: docSnippetIds.get(b).compareTo(docSnippetIds.get(a));
+		// Worst first, so a full queue drops its head for anything better
+		PriorityQueue<Integer> kept = new PriorityQueue<>(bestFirst.reversed());
+		int matched = 0;
+		for (int doc = live.nextSetBit(0); doc >= 0; doc = live.nextSetBit(doc + 1)) {
+			if (scores[doc] == 0) {
+				continue;
+			}
+			if (++matched > max) {
+				return null;
+			}
+			if (kept.size() < top) {
+				kept.add(doc);
+			} else if (bestFirst.compare(doc, kept.peek()) < 0) {
+				kept.poll();
+				kept.add(doc);
+			}
+		}
+		List<Integer> ranked = new ArrayList<>(kept);
+		ranked.sort(bestFirst);
+		List<String> ids = new ArrayList<>(ranked.size());
+		for (int doc : ranked) {
+			ids.add(docSnippetIds.get(doc));
+		}
+		return ids;
+	}
+
+	/** Orders like {@link SnippetDAO#NEWEST_FIRST} when compared in reverse, nulls last. */
+	private static long timeOf(LocalDateTime createdAt) {
+		if (createdAt == null) {
+			return Long.MIN_VALUE;
+		}
+		return createdAt.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + createdAt.getNano();
+	}
+
+	private static byte weight(int mask) {
+		if ((mask & DESCRIPTION) != 0) {
+			return 4;
+		}
+		if ((mask & TAGS) != 0) {
+			return 3;
+		}
+		return (mask & LANGUAGE) != 0 ? (byte) 2 : (byte) 1;
+	}
+
+	private static void collectTokens(String text, int field, Map<String, Integer> into) {
+		if (text == null || text.isEmpty()) {
+			return;
+		}
+		String folded = SearchSessions.fold(text);
+		int length = folded.length();
+		int i = 0;
+		while (i < length) {
+			if (!isTokenChar(folded.charAt(i))) {
+				i++;
+				continue;
+			}
+			int start = i;
+			while (i < length && isTokenChar(folded.charAt(i))) {
+				i++;
+			}
+			if (i - start <= MAX_TOKEN_LENGTH) {
+				into.merge(folded.substring(start, i), field, (a, b) -> a | b);
+			}
+		}
+	}
+
+	private static boolean isTokenChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '_';
+	}
+
+	/** Growable int array; postings are appended in ordinal order, so they stay sorted. */
+	private static final class IntList {
+		int[] values = new int[2];
+		int size;
+
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size + (size >> 1) + 1);
+			}
+			values[size++] = value;
+		}
+
+		long bytes() {
+			return 32 + 4L * values.length;
+		}
+	}
+}
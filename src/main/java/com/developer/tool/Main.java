@@ -1,42 +1,131 @@
 package com.developer.tool;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Locale;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.jetty.server.session.AbstractSessionDataStore;
+import org.eclipse.jetty.server.session.DefaultSessionCache;
+import org.eclipse.jetty.server.session.NullSessionDataStore;
+import org.eclipse.jetty.server.session.SessionHandler;
 
 import io.javalin.Javalin;
+import io.javalin.compression.Brotli;
+import io.javalin.compression.CompressionStrategy;
+import io.javalin.compression.Gzip;
+import io.javalin.http.Context;
+import io.javalin.http.UploadedFile;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 public class Main {
-    private static final SnippetDAO snippetDAO = new SnippetDAO();
-    private static final UserDAO userDAO = new UserDAO();
+    private static final SnippetStore snippetStore = createSnippetStore();
+    private static final SearchSessions searchSessions = new SearchSessions(
+            Long.parseLong(System.getenv().getOrDefault("SEARCH_SESSION_MB", "32")) * 1024 * 1024,
+            Integer.parseInt(System.getenv().getOrDefault("SEARCH_SESSION_MAX_MATCHES", "500")));
+    private static final int PAGE_SIZE = Integer.parseInt(System.getenv().getOrDefault("SNIPPET_PAGE_SIZE", "20"));
+    private static final int IMPORT_BATCH_SIZE = Integer.parseInt(System.getenv().getOrDefault("SNIPPET_IMPORT_BATCH_SIZE", "5000"));
+    private static final PasswordHasher passwordHasher = new PasswordHasher(
+            Integer.parseInt(System.getenv().getOrDefault("BCRYPT_THREADS", String.valueOf(Runtime.getRuntime().availableProcessors()))),
+            Integer.parseInt(System.getenv().getOrDefault("BCRYPT_QUEUE_SIZE", "64")),
+            Integer.parseInt(System.getenv().getOrDefault("BCRYPT_COST", "10")));
+    private static final CachedUserDAO userDAO = new CachedUserDAO(passwordHasher,
+            Integer.parseInt(System.getenv().getOrDefault("USER_CACHE_SIZE", "10000")));
+    // When set, /metrics requires "Authorization: Bearer <token>"
+    private static final String METRICS_TOKEN = System.getenv("METRICS_TOKEN");
+    private static final int COMPRESSION_MIN_BYTES = Integer.parseInt(System.getenv().getOrDefault("COMPRESSION_MIN_BYTES", "1500"));
+    // Part of every ETag, so tags handed out before a restart (or a deploy that changed the markup) never match
+    private static final String BOOT_ID = Long.toString(System.currentTimeMillis(), 36);
+    private static final StaticAssets ASSETS = new StaticAssets("app.css", "app.js", "vendor/htmx.min.js");
+    private static final AdmissionControl admission = AdmissionControl.fromEnvironment();
+    // Set behind a reverse proxy, e.g. X-Forwarded-For: the last address in it (the one the proxy saw) is the client
+    private static final String CLIENT_IP_HEADER = System.getenv("CLIENT_IP_HEADER");
   
     
 
     public static void main(String[] args) {
         // Initialize database
         DatabaseManager.initializeDatabase();
+        if (snippetStore instanceof MemorySnippetStore memoryStore) {
+            // First start on the memory engine takes over what SQLite holds
+            memoryStore.seedIfEmpty(() -> new SnippetDAO().findAll());
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(DatabaseManager::shutdown));
+        Runtime.getRuntime().addShutdownHook(new Thread(snippetStore::close));
+        Metrics.register(Main::collectMetrics);
+        System.out.println("Semantic search scoring: " + VectorIndex.scorerName());
         
         
-        AuthController authController = new AuthController(userDAO);
+        AuthController authController = new AuthController(userDAO, passwordHasher);
        
         
         int port = Integer.parseInt(System.getenv().getOrDefault("PORT", "7000"));
         Javalin app = Javalin.create(
         		config -> {
+        			// Handlers mostly wait on SQLite or the BCrypt pool, so run them on virtual threads rather than Jetty's platform pool
+        			config.useVirtualThreads = true;
+        			// Runs after every request, including streamed ones once the last byte is written
+        			config.requestLogger.http((ctx, executionTimeMs) -> Metrics.recordRequest(
+        					ctx.method().name(), routeOf(ctx), ctx.statusCode(), (long) (executionTimeMs * 1_000_000)));
+        			// Brotli where the client takes it and brotli4j's native library loads, gzip otherwise
+        			CompressionStrategy compression = new CompressionStrategy(new Brotli(), new Gzip());
+        			compression.setDefaultMinSizeForCompression(COMPRESSION_MIN_BYTES);
+        			config.http.customCompression(compression);
         			 config.jetty.modifyServletContextHandler(handler -> {
-        		            handler.setSessionHandler(new org.eclipse.jetty.server.session.SessionHandler());
+        		            handler.setSessionHandler(createSessionHandler());
         		        });
         		})
         		.start(port);
 
         app.before(ctx -> ctx.contentType("text/html"));
+        
+        // Messages can quote the request (an import's bad field, a parser's offending token), so never as HTML
+        app.exception(IllegalArgumentException.class, (e, ctx) ->
+                ctx.status(400).contentType("text/plain; charset=utf-8").result(e.getMessage()));
+        app.exception(PasswordHasher.SaturatedException.class, (e, ctx) -> {
+            ctx.header("Retry-After", "1");
+            ctx.status(503).result(e.getMessage());
+        });
+        // A newer search by the same user replaced this one; htmx leaves the page alone on 204
+        app.exception(CancellationException.class, (e, ctx) -> ctx.status(204));
+        app.exception(AdmissionControl.RejectedException.class, (e, ctx) -> {
+            ctx.header("Retry-After", String.valueOf(e.retryAfterSeconds()));
+            ctx.status(e.status()).result(e.getMessage());
+        });
+
+        // Rate and concurrency limits for search, login/register and writes. The slot is
+        // held until the response is done; after-handlers run even when the handler threw
+        app.before(ctx -> {
+            AdmissionControl.RouteClass routeClass = AdmissionControl.classify(ctx.method().name(), ctx.path());
+            if (routeClass != null) {
+                admission.acquire(routeClass, clientKey(ctx));
+                ctx.attribute("admitted", routeClass);
+            }
+        });
+        app.after(ctx -> {
+            AdmissionControl.RouteClass routeClass = ctx.attribute("admitted");
+            if (routeClass != null) {
+                ctx.attribute("admitted", null);
+                admission.release(routeClass);
+            }
+        });
 
        
         
@@ -48,6 +137,16 @@ public class Main {
             }
         });
         
+        app.get("/metrics", ctx -> {
+            if (METRICS_TOKEN != null && !MessageDigest.isEqual(
+                    ("Bearer " + METRICS_TOKEN).getBytes(StandardCharsets.UTF_8),
+                    String.valueOf(ctx.header("Authorization")).getBytes(StandardCharsets.UTF_8))) {
+                ctx.status(401).result("Unauthorized");
+                return;
+            }
+            ctx.contentType("text/plain; version=0.004; charset=utf-8").result(Metrics.scrape());
+        });
+
         // Serve main page
         app.get("/login", authController::showLogin);
         app.post("/login", authController::login); // Login handler
@@ -67,13 +166,19 @@ public class Main {
                 return;
             }
             User user = userDAO.findByUserId(userId);
-            ctx.result(getHtmlPage(user.username()));
+            render(ctx, PAGE, user.username());
         });
-        // Get all snippets (for initial load)
+        // Get one page of snippets (initial load, then each infinite-scroll page)
         app.get("/snippets", ctx -> {
         	String userId = ctx.sessionAttribute("userId");
-        	List<Snippet> snippets = snippetDAO.findByUserId(userId);
-        	ctx.result(renderSnippetsHtml(snippets));	
+        	String cursor = ctx.queryParam("cursor");
+        	if (notModified(ctx, userId)) {
+        		return;
+        	}
+        	try (HtmlWriter out = new HtmlWriter(ctx.outputStream())) {
+        		renderSnippetPage(out, cursor == null, "/snippets?",
+        				consumer -> snippetStore.forEachInPage(userId, cursor, PAGE_SIZE, consumer));
+        	}
         });
         
         // Create snippet
@@ -92,10 +197,10 @@ public class Main {
                 snippet.setTags(new ArrayList<>());
             }
             
-            snippetDAO.create(snippet,userId);
+            snippetStore.create(snippet,userId);
             
-            // Return updated list + reset form using hx-swap-oob
-            ctx.result(renderSnippetsWithFormReset(snippetDAO.findByUserId(userId)));
+            // Prepend just the new card + reset form using hx-swap-oob
+            renderCardWithFormReset(ctx, snippet, true);
         });
 
        
@@ -103,36 +208,131 @@ public class Main {
         app.get("/snippets/search", ctx -> {
         	String userId = ctx.sessionAttribute("userId");
             String query = ctx.queryParam("search");
-            if (query == null || query.isEmpty()) {
-                ctx.result(renderSnippetsHtml());
-            } else {
-                ctx.result(renderSnippetsHtml(snippetDAO.search(query,userId)));
+            String cursor = ctx.queryParam("cursor");
+            if (notModified(ctx, userId)) {
+                return;
+            }
+            try (HtmlWriter out = new HtmlWriter(ctx.outputStream())) {
+                if (query == null || query.isEmpty()) {
+                    renderSnippetPage(out, true, "/snippets?",
+                            consumer -> snippetStore.forEachInPage(userId, null, PAGE_SIZE, consumer));
+                } else if ("semantic".equals(ctx.queryParam("mode"))) {
+                    String nextUrl = "/snippets/search?mode=semantic&search=" + URLEncoder.encode(query, StandardCharsets.UTF_8) + "&";
+                    renderSnippetPage(out, cursor == null, nextUrl,
+                            consumer -> snippetStore.forEachSemanticResult(query, userId, cursor, PAGE_SIZE, consumer));
+                } else {
+                    String nextUrl = "/snippets/search?search=" + URLEncoder.encode(query, StandardCharsets.UTF_8) + "&";
+                    renderSnippetPage(out, cursor == null, nextUrl,
+                            consumer -> forEachKeywordResult(userId, query, cursor, consumer));
+                }
             }
         });
 
+        // Filter by tags, e.g. /snippets/tags?tag=java&tag=sql&match=any (default is all)
+        app.get("/snippets/tags", ctx -> {
+            String userId = ctx.sessionAttribute("userId");
+            List<String> tags = ctx.queryParams("tag");
+            boolean matchAll = !"any".equals(ctx.queryParam("match"));
+            String cursor = ctx.queryParam("cursor");
+            if (notModified(ctx, userId)) {
+                return;
+            }
+
+            StringBuilder nextUrl = new StringBuilder("/snippets/tags?match=").append(matchAll ? "all" : "any");
+            for (String tag : tags) {
+                nextUrl.append("&tag=").append(URLEncoder.encode(tag, StandardCharsets.UTF_8));
+            }
+            nextUrl.append('&');
+
+            try (HtmlWriter out = new HtmlWriter(ctx.outputStream())) {
+                renderSnippetPage(out, cursor == null, nextUrl.toString(),
+                        consumer -> snippetStore.forEachByTags(userId, tags, matchAll, cursor, PAGE_SIZE, consumer));
+            }
+        });
+
+        // Download the whole library, e.g. /snippets/export?format=ndjson&gzip=true
+        app.get("/snippets/export", ctx -> {
+            String userId = ctx.sessionAttribute("userId");
+            SnippetJson.Format format = SnippetJson.Format.parse(ctx.queryParam("format"));
+            boolean gzip = "true".equals(ctx.queryParam("gzip"));
+            String filename = "codecache-export" + (format == SnippetJson.Format.NDJSON ? ".ndjson" : ".json") + (gzip ? ".gz" : "");
+
+            ctx.contentType(gzip ? "application/gzip"
+                    : format == SnippetJson.Format.NDJSON ? "application/x-ndjson" : "application/json");
+            ctx.header("Content-Disposition", "attachment; filename=\"" + filename + "\"");
+            OutputStream out = gzip ? new GZIPOutputStream(ctx.outputStream(), 64 * 1024) : ctx.outputStream();
+            try {
+                SnippetJson.export(snippetStore, userId, format, out);
+            } finally {
+                out.close();
+            }
+        });
+
+        // Body is an export file (JSON array or NDJSON, optionally gzipped), raw or as a multipart "file" field
+        app.post("/snippets/import", ctx -> {
+            String userId = ctx.sessionAttribute("userId");
+            UploadedFile upload = ctx.isMultipartFormData() ? ctx.uploadedFile("file") : null;
+            SnippetJson.ImportResult result;
+            try (InputStream in = upload != null ? upload.content() : ctx.bodyInputStream()) {
+                result = SnippetJson.importInto(snippetStore, userId, in, IMPORT_BATCH_SIZE);
+            }
+            ctx.result("Imported " + result.imported() + " snippets"
+                    + (result.read() > result.imported() ? " (" + (result.read() - result.imported()) + " already in your library)" : ""));
+        });
+
+        // Versioned static assets, cached for a year
+        app.get(StaticAssets.PATH + "{name}", ASSETS::serve);
+
         // Cancel edit (return default form)
-        app.get("/cancel", ctx -> ctx.result(getDefaultFormHtml()));
+        app.get("/cancel", ctx -> render(ctx, SNIPPET_FORM, null));
 
         // Get single snippet for editing
         app.get("/snippets/{id}", ctx -> {
+        	String userId = ctx.sessionAttribute("userId");
             String id = ctx.pathParam("id");
-            Snippet snippet = snippetDAO.findById(id);
+            if (notModified(ctx, userId)) {
+                return;
+            }
+            Snippet snippet = snippetStore.findById(id);
             
-            if (snippet == null) {
+            if (snippet == null || !snippet.getUserId().equals(userId)) {
                 ctx.status(404).result("Snippet not found");
                 return;
             }
             
-            ctx.result(renderEditForm(snippet));
+            render(ctx, EDIT_FORM, snippet);
+        });
+
+        // Full code of a snippet whose card shows a preview: the code block's content, or plain text with ?raw
+        app.get("/snippets/{id}/code", ctx -> {
+            String userId = ctx.sessionAttribute("userId");
+            String id = ctx.pathParam("id");
+            if (notModified(ctx, userId)) {
+                return;
+            }
+            Snippet snippet = snippetStore.findById(id);
+
+            if (snippet == null || !snippet.getUserId().equals(userId)) {
+                ctx.status(404).result("Snippet not found");
+                return;
+            }
+
+            if (ctx.queryParam("raw") != null) {
+                ctx.contentType("text/plain; charset=utf-8").result(snippet.getCode());
+                return;
+            }
+            try (HtmlWriter out = new HtmlWriter(ctx.outputStream())) {
+                writeCodeBlock(out, snippet, SyntaxHighlighter.highlight(snippet.getCode(), snippet.getLanguage()), false);
+            }
         });
 
         // Update snippet
         app.put("/snippets/{id}", ctx -> {
         	String userId = ctx.sessionAttribute("userId");
             String id = ctx.pathParam("id");
-            Snippet snippet = snippetDAO.findById(id);
+            Snippet snippet = snippetStore.findById(id);
             
-            if (snippet == null) {
+            if (snippet == null || !snippet.getUserId().equals(userId)) {
                 ctx.status(404).result("Snippet not found");
                 return;
             }
@@ -148,17 +348,17 @@ public class Main {
                 snippet.setTags(new ArrayList<>());
             }
             
-            snippetDAO.update(snippet,userId);
+            snippetStore.update(snippet,userId);
             
-            // Return updated list + reset form using hx-swap-oob
-            ctx.result(renderSnippetsWithFormReset(snippetDAO.findByUserId(userId)));
+            // Replace just the edited card + reset form using hx-swap-oob
+            renderCardWithFormReset(ctx, snippet, false);
         });
 
         // Delete snippet
         app.delete("/snippets/{id}", ctx -> {
         	String userId = ctx.sessionAttribute("userId");
             String id = ctx.pathParam("id");
-            snippetDAO.delete(id,userId);
+            snippetStore.delete(id,userId);
             ctx.status(200).result("");
         });
 
@@ -166,42 +366,232 @@ public class Main {
        
     }
 
-    private static String getHtmlPage(String username) {
-        return """
+    /**
+     * Tags a read of the user's library with its current version and answers 304 if the
+     * client already holds that rendering, before anything is queried. The tag is read
+     * before rendering, so if a write lands meanwhile the page is newer than its tag and
+     * the next request simply misses; it can never be older. Returns true if handled.
+     *
+     * Every URL gets its own cache entry, so the tag needn't encode the query; it does
+     * encode which content coding the client accepts, since the bytes differ by it. It
+     * also encodes the user: versions count from 0 for everyone, and a browser that
+     * changes hands between accounts keeps its cache.
+     */
+    private static boolean notModified(Context ctx, String userId) {
+        String etag = "\"" + BOOT_ID + "-" + userTag(userId) + "-" + snippetStore.libraryVersion(userId)
+                + contentCoding(ctx) + "\"";
+        ctx.header("ETag", etag);
+        ctx.header("Cache-Control", "private, no-cache");
+        ctx.header("Vary", "Accept-Encoding");
+
+        String ifNoneMatch = ctx.header("If-None-Match");
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.strip();
+            if (candidate.startsWith("W/")) {
+                // If-None-Match compares weakly
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals(etag) || candidate.equals("*")) {
+                ctx.status(304);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Short digest of the user id, so the id itself stays out of tags. */
+    private static String userTag(String userId) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(
+                    (BOOT_ID + ":" + userId).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String contentCoding(Context ctx) {
+        String accepted = String.valueOf(ctx.header("Accept-Encoding")).toLowerCase(Locale.ROOT);
+        return accepted.contains("br") ? "-br" : accepted.contains("gzip") ? "-gzip" : "";
+    }
+
+    /**
+     * Path pattern of the matched endpoint, e.g. /snippets/{id}, so each route is one series
+     * however many ids it's called with. Requests that never reached an endpoint (redirected
+     * by a before-handler, or 404) fall back to the pattern of the last handler that ran.
+     */
+    private static String routeOf(Context ctx) {
+        String route;
+        try {
+            route = ctx.endpointHandlerPath();
+        } catch (IllegalStateException e) {
+            route = ctx.matchedPath();
+        }
+        return route == null || route.isEmpty() ? "unmatched" : route;
+    }
+
+    /**
+     * Who a request is rate limited as: the signed-in user, else the client address.
+     */
+    private static String clientKey(Context ctx) {
+        String userId = ctx.sessionAttribute("userId");
+        if (userId != null) {
+            return "u:" + userId;
+        }
+        String forwarded = CLIENT_IP_HEADER == null ? null : ctx.header(CLIENT_IP_HEADER);
+        if (forwarded != null && !forwarded.isBlank()) {
+            return "ip:" + forwarded.substring(forwarded.lastIndexOf(',') + 1).strip();
+        }
+        return "ip:" + ctx.ip();
+    }
+
+    private static void collectMetrics(Metrics.Exposition out) {
+        ConnectionPool.Stats pool = DatabaseManager.poolStats();
+        out.family("codecache_db_pool_connections", "gauge", "Pooled SQLite connections by role and state");
+        out.sample("codecache_db_pool_connections", "role=\"reader\",state=\"active\"", pool.activeReaders());
+        out.sample("codecache_db_pool_connections", "role=\"reader\",state=\"idle\"", pool.idleReaders());
+        out.sample("codecache_db_pool_connections", "role=\"writer\",state=\"active\"", pool.activeWriters());
+        out.sample("codecache_db_pool_connections", "role=\"writer\",state=\"idle\"", pool.idleWriters());
+        out.family("codecache_db_pool_acquisitions_total", "counter", "Connections handed out by the pool");
+        out.sample("codecache_db_pool_acquisitions_total", "", pool.acquisitions());
+        out.family("codecache_db_pool_timeouts_total", "counter", "Acquisitions that timed out waiting for a connection");
+        out.sample("codecache_db_pool_timeouts_total", "", pool.timeouts());
+        out.family("codecache_db_pool_wait_seconds_avg", "gauge", "Average wait for a pooled connection");
+        out.sample("codecache_db_pool_wait_seconds_avg", "", pool.avgWaitMillis() / 1000);
+        out.family("codecache_db_statement_cache_total", "counter", "Prepared statement cache lookups by result");
+        out.sample("codecache_db_statement_cache_total", "result=\"hit\"", pool.statementCacheHits());
+        out.sample("codecache_db_statement_cache_total", "result=\"miss\"", pool.statementCacheMisses());
+        GroupCommitter.Stats groupCommit = DatabaseManager.groupCommitStats();
+        if (groupCommit != null) {
+            out.family("codecache_db_group_commit_queued", "gauge", "Writes waiting for the group-commit thread");
+            out.sample("codecache_db_group_commit_queued", "", groupCommit.queued());
+            out.family("codecache_db_group_commit_batches_total", "counter", "Transactions committed by the group-commit thread");
+            out.sample("codecache_db_group_commit_batches_total", "", groupCommit.batches());
+            out.family("codecache_db_group_commit_writes_total", "counter", "Writes run by the group-commit thread, failed ones included");
+            out.sample("codecache_db_group_commit_writes_total", "", groupCommit.writes());
+            out.family("codecache_db_group_commit_failures_total", "counter", "Writes rolled back, alone or with their batch");
+            out.sample("codecache_db_group_commit_failures_total", "", groupCommit.failures());
+            out.family("codecache_db_group_commit_batch_seconds_avg", "gauge", "Average time to run and commit one batch");
+            out.sample("codecache_db_group_commit_batch_seconds_avg", "", groupCommit.avgBatchMillis() / 1000);
+        }
+
+        // Samples of one family have to be contiguous, hence one pass per family
+        List<WeightedLruCache.Stats> caches = new ArrayList<>(snippetStore.cacheStats());
+        caches.add(searchSessions.cacheStats());
+        caches.add(userDAO.cacheStats());
+        out.family("codecache_cache_entries", "gauge", "Entries per in-process cache");
+        caches.forEach(c -> out.sample("codecache_cache_entries", "cache=\"" + c.name() + "\"", c.entries()));
+        out.family("codecache_cache_weight", "gauge", "Weight per in-process cache (bytes for snippet libraries, entries for users)");
+        caches.forEach(c -> out.sample("codecache_cache_weight", "cache=\"" + c.name() + "\"", c.weight()));
+        out.family("codecache_cache_requests_total", "counter", "Cache lookups by result");
+        caches.forEach(c -> out
+                .sample("codecache_cache_requests_total", "cache=\"" + c.name() + "\",result=\"hit\"", c.hits())
+                .sample("codecache_cache_requests_total", "cache=\"" + c.name() + "\",result=\"miss\"", c.misses()));
+        out.family("codecache_cache_evictions_total", "counter", "Entries evicted to stay under the weight limit");
+        caches.forEach(c -> out.sample("codecache_cache_evictions_total", "cache=\"" + c.name() + "\"", c.evictions()));
+
+        SearchSessions.Stats search = searchSessions.stats();
+        out.family("codecache_search_sessions_total", "counter", "Keyword searches by how they were answered");
+        out.sample("codecache_search_sessions_total", "result=\"queried\"", search.queried());
+        out.sample("codecache_search_sessions_total", "result=\"prefix_reuse\"", search.reused());
+        out.sample("codecache_search_sessions_total", "result=\"too_broad\"", search.tooBroad());
+        out.sample("codecache_search_sessions_total", "result=\"superseded\"", search.superseded());
+
+        PasswordHasher.Stats hasher = passwordHasher.stats();
+        out.family("codecache_bcrypt_active", "gauge", "BCrypt operations running");
+        out.sample("codecache_bcrypt_active", "", hasher.active());
+        out.family("codecache_bcrypt_queued", "gauge", "BCrypt operations waiting for a thread");
+        out.sample("codecache_bcrypt_queued", "", hasher.queued());
+        out.family("codecache_bcrypt_operations_total", "counter", "BCrypt operations by type");
+        out.sample("codecache_bcrypt_operations_total", "op=\"hash\"", hasher.hashes());
+        out.sample("codecache_bcrypt_operations_total", "op=\"verify\"", hasher.verifications());
+        out.family("codecache_bcrypt_rejections_total", "counter", "BCrypt operations rejected because the queue was full");
+        out.sample("codecache_bcrypt_rejections_total", "", hasher.rejections());
+        out.family("codecache_bcrypt_queue_wait_seconds_avg", "gauge", "Average time queued before hashing");
+        out.sample("codecache_bcrypt_queue_wait_seconds_avg", "", hasher.avgQueueWaitMillis() / 1000);
+        admission.collect(out);
+    }
+
+    /**
+     * SNIPPET_STORE=sqlite (the default) keeps snippets in SQLite behind a cache of each
+     * user's library; "memory" holds them all in the heap, made durable by an operation log
+     * and snapshots under SNIPPET_DATA_DIR.
+     */
+    private static SnippetStore createSnippetStore() {
+        long trigramIndexBytes = Long.parseLong(System.getenv().getOrDefault("TRIGRAM_INDEX_MB", "64")) * 1024 * 1024;
+        long vectorIndexBytes = Long.parseLong(System.getenv().getOrDefault("VECTOR_INDEX_MB", "96")) * 1024 * 1024;
+        if ("memory".equals(System.getenv().getOrDefault("SNIPPET_STORE", "sqlite"))) {
+            return new MemorySnippetStore(
+                    Path.of(System.getenv().getOrDefault("SNIPPET_DATA_DIR", "snippet-data")),
+                    Integer.parseInt(System.getenv().getOrDefault("SNIPPET_LOG_SEGMENT_MB", "64")) * 1024 * 1024,
+                    Boolean.parseBoolean(System.getenv().getOrDefault("SNIPPET_LOG_FORCE", "true")),
+                    Long.parseLong(System.getenv().getOrDefault("SNIPPET_SNAPSHOT_INTERVAL_SECONDS", "600")),
+                    Long.parseLong(System.getenv().getOrDefault("KEYWORD_INDEX_MB", "128")) * 1024 * 1024,
+                    trigramIndexBytes, vectorIndexBytes);
+        }
+        return new CachedSnippetDAO(
+                Long.parseLong(System.getenv().getOrDefault("SNIPPET_CACHE_MB", "64")) * 1024 * 1024,
+                Integer.parseInt(System.getenv().getOrDefault("SNIPPET_CACHE_MAX_LIBRARY", "5000")),
+                trigramIndexBytes, vectorIndexBytes);
+    }
+
+    /**
+     * Sessions live in a Jetty cache backed by a pluggable data store. SESSION_STORE=sqlite
+     * (the default) persists them, so restarts don't log anyone out; "memory" keeps them in-process only.
+     */
+    private static SessionHandler createSessionHandler() {
+        SessionHandler sessionHandler = new SessionHandler();
+        sessionHandler.setMaxInactiveInterval(
+                Integer.parseInt(System.getenv().getOrDefault("SESSION_MAX_IDLE_SECONDS", String.valueOf(30 * 24 * 3600))));
+
+        DefaultSessionCache sessionCache = new DefaultSessionCache(sessionHandler);
+        AbstractSessionDataStore store = "memory".equals(System.getenv().getOrDefault("SESSION_STORE", "sqlite"))
+                ? new NullSessionDataStore()
+                : new SqliteSessionDataStore();
+        // Unchanged sessions are only re-saved (to refresh their expiry) once per save period
+        store.setSavePeriodSec(Integer.parseInt(System.getenv().getOrDefault("SESSION_SAVE_PERIOD_SECONDS", "300")));
+        sessionCache.setSessionDataStore(store);
+        sessionHandler.setSessionCache(sessionCache);
+        return sessionHandler;
+    }
+
+    // Templates are compiled once at class load; see HtmlTemplate
+
+    private static final HtmlTemplate<Void> SNIPPET_FORM = HtmlTemplate.constant("""
+            <form hx-post="/snippets" hx-swap="none">
+                <textarea name="code" placeholder="Code" required></textarea><br />
+                <input name="language" placeholder="Language (e.g. java)" required /><br />
+                <input name="description" placeholder="Description" /><br />
+                <input name="tags" placeholder="Tags (comma separated)" /><br />
+                <button type="submit">Add Snippet</button>
+                <button type="button" hx-get="/cancel" hx-target="#snippet-form" hx-swap="innerHTML">Cancel</button>
+            </form>
+        """);
+
+    private static final HtmlTemplate<String> PAGE = HtmlTemplate.<String>builder("""
             <!DOCTYPE html>
             <html lang="en">
             <head>
                 <meta charset="UTF-8" />
                 <title>CodeCache</title>
-                <script src="https://unpkg.com/htmx.org@2.0.8"></script>
-                <link href="https://cdn.jsdelivr.net/npm/prismjs@1.29.0/themes/prism-okaidia.css" rel="stylesheet" />
-                <script src="https://cdn.jsdelivr.net/npm/prismjs@1.29.0/prism.min.js"></script>
-                <script src="https://cdn.jsdelivr.net/npm/prismjs@1.29.0/components/prism-java.min.js"></script>
-                <style>
-                    body{font-family:Arial,sans-serif;margin:30px}
-                    textarea{width:400px;height:100px}
-                    input,textarea{margin-bottom:10px;padding:5px}
-                    button{margin-right:10px;padding:5px 10px;cursor:pointer}
-                    .snippet{background:#fff;border:1px solid #ddd;border-radius:8px;padding:15px;margin-bottom:20px;box-shadow:0 2px 5px rgba(0,0,0,.05);color:#222;max-width:720px;width:100%%;}
-                    .code-block{position:relative;margin-top:10px;display:inline-block;max-width:720px;width:100%%;overflow:visible}
-                    pre{background:#1e1e1e;color:#f8f8f2;border-radius:6px;padding:12px 14px;overflow-x:auto;max-width:720px;min-width:400px;margin:0;white-space:pre;font-family:"Fira Code","Courier New",monospace}
-                    .copy-btn{position:absolute;top:8px;right:8px;background:rgba(60,60,60,.9);color:#fff;border:0;padding:4px 8px;border-radius:4px;font-size:12px;cursor:pointer;box-shadow:0 1px 3px rgba(0,0,0,.4);opacity:.95;z-index:20;transition:background .2s}
-                    .copy-btn:hover{background:rgba(0,122,204,.95)}
-                    .button-group{margin-top:10px;padding:5px 0}
-                </style>
+                <link href="{{appCss}}" rel="stylesheet" />
+                <script src="{{htmx}}"></script>
             </head>
             <body>
-               
+
                 <div style="display: flex; justify-content: space-between; align-items: center; margin-bottom: 20px;">
                  <h1>CodeCache - Snippet Manager</h1>
 		            <div>
-		                <span style="margin-right: 15px;">Hi, %s</span>
+		                <span style="margin-right: 15px;">Hi, {{username}}</span>
 		                <a href="/logout" style="padding: 8px 16px; background: #dc3545; color: white; text-decoration: none; border-radius: 4px;">Logout</a>
 		            </div>
 		        </div>
-                
+
                 <div id="snippet-form">
-                    %s
+                    {{form}}
                 </div>
 
                 <h2>Search Snippets</h2>
@@ -210,131 +600,288 @@ public class Main {
 					       hx-get="/snippets/search"
 					       hx-trigger="keyup changed delay:300ms"
 					       hx-target="#snippets"
+					       hx-include="[name='mode']"
+					       hx-sync="this:replace"
         				   hx-indicator="#loading"
 					       placeholder="Search snippets..." />
+				     	<label><input type="checkbox" name="mode" value="semantic"
+					       hx-get="/snippets/search"
+					       hx-trigger="change"
+					       hx-target="#snippets"
+					       hx-include="[name='search']" /> Semantic</label>
 				     </div>
-                      
+
                  <span id="loading" class="htmx-indicator">Searching...</span>
                  <h2>Snippets List</h2>
                 <div id="snippets" hx-get="/snippets" hx-trigger="load"></div>
 
-                <script>
-                    function copyCode(button){
-                        const code = button.nextElementSibling.innerText;
-                        navigator.clipboard.writeText(code);
-                        button.textContent = "Copied!";
-                        setTimeout(()=>button.textContent="Copy",1500);
-                    }
-                    document.body.addEventListener('htmx:afterSwap', (e) => {
-                        if (e.target.id === 'snippets' || e.target.closest('.snippet')) {
-                            Prism.highlightAll();
-                        }
-                    });
-                </script>
+                <script src="{{appJs}}"></script>
             </body>
             </html>
-        """.formatted(username,getDefaultFormHtml());
-    }
+        """)
+            .escaped("username", username -> username)
+            .constant("form", SNIPPET_FORM)
+            .constant("appCss", ASSETS.url("app.css"))
+            .constant("appJs", ASSETS.url("app.js"))
+            .constant("htmx", ASSETS.url("vendor/htmx.min.js"))
+            .build();
 
-    private static String getDefaultFormHtml() {
-        return """
-            <form hx-post="/snippets" hx-target="#snippets" hx-swap="innerHTML">
-                <textarea name="code" placeholder="Code" required></textarea><br />
-                <input name="language" placeholder="Language (e.g. java)" required /><br />
-                <input name="description" placeholder="Description" /><br />
-                <input name="tags" placeholder="Tags (comma separated)" /><br />
-                <button type="submit">Add Snippet</button>
+    private static final HtmlTemplate<Snippet> EDIT_FORM = HtmlTemplate.<Snippet>builder("""
+            <form hx-put="/snippets/{{id}}" hx-swap="none">
+                <textarea name="code" required>{{code}}</textarea><br />
+                <input name="language" value="{{language}}" required /><br />
+                <input name="description" value="{{description}}" /><br />
+                <input name="tags" value="{{tags}}" /><br />
+                <button type="submit">Update Snippet</button>
                 <button type="button" hx-get="/cancel" hx-target="#snippet-form" hx-swap="innerHTML">Cancel</button>
             </form>
-        """;
+        """)
+            .escaped("id", Snippet::getId)
+            .escaped("code", Snippet::getCode)
+            .escaped("language", Snippet::getLanguage)
+            .escaped("description", Snippet::getDescription)
+            .escaped("tags", s -> s.getTags() != null ? String.join(", ", s.getTags()) : null)
+            .build();
+
+    private static final String SNIPPET_CARD_SOURCE = """
+            <div class='snippet' id='snippet-{{id}}'{{oob}}>\
+            <div><strong>Description:</strong> {{description}}</div>\
+            <div><strong>Language:</strong> {{language}}</div>\
+            <div><strong>Tags:</strong> {{tags}}</div>\
+            {{match}}\
+            <div class='code-block'>{{code}}</div>\
+            <div class='button-group'>\
+            <button hx-get='/snippets/{{id}}' hx-target='#snippet-form' hx-swap='innerHTML'>Edit</button>\
+            <button hx-delete='/snippets/{{id}}' hx-target='closest .snippet' hx-swap='outerHTML'>Delete</button>\
+            </div>\
+            </div>""";
+
+    private static final HtmlTemplate<Snippet> SNIPPET_CARD = snippetCard("");
+
+    // Replaces the card with the same id in place, for update responses
+    private static final HtmlTemplate<Snippet> SNIPPET_CARD_SWAP = snippetCard(" hx-swap-oob='true'");
+
+    private static final HtmlTemplate<Snippet> CREATED_RESPONSE = HtmlTemplate.<Snippet>builder("""
+            <div hx-swap-oob="afterbegin:#snippets">{{card}}</div>\
+            <div id="snippet-form" hx-swap-oob="true">{{form}}</div>""")
+            .slot("card", SNIPPET_CARD::render)
+            .constant("form", SNIPPET_FORM)
+            .build();
+
+    private static final HtmlTemplate<Snippet> UPDATED_RESPONSE = HtmlTemplate.<Snippet>builder("""
+            {{card}}<div id="snippet-form" hx-swap-oob="true">{{form}}</div>""")
+            .slot("card", SNIPPET_CARD_SWAP::render)
+            .constant("form", SNIPPET_FORM)
+            .build();
+
+    private static final HtmlTemplate<Void> EMPTY_STATE = HtmlTemplate.constant(
+            "<p class='empty-state'>No snippets yet. Add your first one above!</p>");
+
+    private static HtmlTemplate<Snippet> snippetCard(String oob) {
+        return HtmlTemplate.<Snippet>builder(SNIPPET_CARD_SOURCE)
+                .constant("oob", oob)
+                .escaped("id", Snippet::getId)
+                .escaped("description", Snippet::getDescription)
+                .escaped("language", Main::language)
+                .slot("tags", Main::writeTags)
+                .slot("match", Main::writeMatch)
+                .slot("code", Main::writeCodePreview)
+                .build();
     }
 
-    private static String renderEditForm(Snippet snippet) {
-        return """
-            <form hx-put="/snippets/%s" hx-target="#snippets" hx-swap="innerHTML">
-                <textarea name="code" required>%s</textarea><br />
-                <input name="language" value="%s" required /><br />
-                <input name="description" value="%s" /><br />
-                <input name="tags" value="%s" /><br />
-                <button type="submit">Update Snippet</button>
-                <button type="button" hx-get="/cancel" hx-target="#snippet-form" hx-swap="innerHTML">Cancel</button>
-            </form>
-        """.formatted(
-            snippet.getId(),
-            escapeHtml(snippet.getCode()),
-            escapeHtml(snippet.getLanguage()),
-            escapeHtml(snippet.getDescription() != null ? snippet.getDescription() : ""),
-            String.join(", ", snippet.getTags())
-        );
+    private static String language(Snippet s) {
+        return s.getLanguage() != null ? s.getLanguage() : "text";
+    }
+
+    private static <T> void render(Context ctx, HtmlTemplate<T> template, T model) throws IOException {
+        try (HtmlWriter out = new HtmlWriter(ctx.outputStream())) {
+            template.render(out, model);
+        }
     }
 
-    private static String renderSnippetsWithFormReset(List<Snippet> snippets) {
-        // Use hx-swap-oob to update both snippets list AND reset form
-        return """
-            <div id="snippets">
-                %s
-            </div>
-            <div id="snippet-form" hx-swap-oob="true">
-                %s
-            </div>
-        """.formatted(renderSnippetsHtml(snippets), getDefaultFormHtml());
+    /**
+     * Response to a create or update: only the affected card plus a fresh form, both
+     * swapped out-of-band. A new card is prepended to the list; an edited card replaces
+     * the element with its id.
+     */
+    private static void renderCardWithFormReset(Context ctx, Snippet snippet, boolean created) throws IOException {
+        render(ctx, created ? CREATED_RESPONSE : UPDATED_RESPONSE, snippet);
     }
 
-    private static String renderSnippetsHtml() {
-        return renderSnippetsHtml(snippetDAO.findAll());
+    /**
+     * Streams a page of cards as the rows come back, followed, if there are more, by a
+     * sentinel that fetches the next page when scrolled into view and replaces itself with it.
+     */
+    private static void renderSnippetPage(HtmlWriter out, boolean firstPage, String nextUrlPrefix, PageSource source)
+            throws IOException {
+        int[] rendered = {0};
+        boolean[] flushed = {false};
+        String nextCursor = source.render(snippet -> {
+            renderSnippetHtml(out, snippet, false);
+            rendered[0]++;
+            // Get the first cards to the browser before the rest of the page is read, but
+            // not before there's enough for the compressor, which decides on the first write
+            if (!flushed[0] && out.buffered() >= COMPRESSION_MIN_BYTES) {
+                out.flush();
+                flushed[0] = true;
+            }
+        });
+
+        if (rendered[0] == 0 && firstPage) {
+            EMPTY_STATE.render(out, null);
+        }
+        if (nextCursor != null) {
+            out.raw("<div class='page-sentinel' hx-get='").raw(nextUrlPrefix).raw("cursor=").raw(nextCursor)
+               .raw("' hx-trigger='revealed' hx-swap='outerHTML'>Loading more...</div>");
+        }
     }
 
-    private static String renderSnippetsHtml(List<Snippet> snippets) {
-        if (snippets.isEmpty()) {
-            return "<p>No snippets yet. Add your first one above!</p>";
+    /**
+     * Keyword search through the user's {@link SearchSessions}: superseded searches stop
+     * between cards, and a query that narrows a kept match set is answered from it. Broad
+     * queries page through SQLite as before; pages of a kept set use an offset cursor.
+     */
+    private static String forEachKeywordResult(String userId, String query, String cursor,
+            SnippetStore.SnippetConsumer consumer) throws IOException {
+        SearchSessions.Ticket ticket = searchSessions.begin(userId, query);
+        SnippetStore.SnippetConsumer current = snippet -> {
+            ticket.checkCurrent();
+            consumer.accept(snippet);
+        };
+        int offset = 0;
+        if (cursor != null) {
+            String[] after = SnippetDAO.decodeCursor(cursor, 2);
+            if (!SearchSessions.CURSOR.equals(after[0])) {
+                return snippetStore.forEachSearchResult(query, userId, cursor, PAGE_SIZE, current);
+            }
+            try {
+                offset = Integer.parseInt(after[1]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor", e);
+            }
+            if (offset < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
         }
-        
-        StringBuilder html = new StringBuilder();
-        for (Snippet s : snippets) {
-            String languageRaw = s.getLanguage() != null ? s.getLanguage() : "text";
-            String language = escapeHtml(languageRaw.toLowerCase());
-            
-            List<String> tags = s.getTags() != null ? s.getTags() : Collections.emptyList();
-            String tagsJoined = String.join(", ", tags);
-            
-            html.append("<div class='snippet'>")
-                .append("<div><strong>Description:</strong> ")
-                .append(escapeHtml(s.getDescription() != null ? s.getDescription() : ""))
-                .append("</div>")
-                .append("<div><strong>Language:</strong> ")
-                .append(escapeHtml(languageRaw))
-                .append("</div>")
-                .append("<div><strong>Tags:</strong> ")
-                .append(escapeHtml(tagsJoined))
-                .append("</div>")
-                .append("<div class='code-block'>")
-                .append("<button class='copy-btn' onclick='copyCode(this)'>Copy</button>")
-                .append("<pre><code class='language-")
-                .append(language)
-                .append("'>")
-                .append(escapeHtml(s.getCode() != null ? s.getCode() : ""))
-                .append("</code></pre>")
-                .append("</div>")
-                .append("<div class='button-group'>")
-                .append("<button hx-get='/snippets/")
-                .append(s.getId())
-                .append("' hx-target='#snippet-form' hx-swap='innerHTML'>Edit</button>")
-                .append("<button hx-delete='/snippets/")
-                .append(s.getId())
-                .append("' hx-target='closest .snippet' hx-swap='outerHTML'>Delete</button>")
-                .append("</div>")
-                .append("</div>");
+
+        List<Snippet> matches = searchSessions.matches(ticket, snippetStore.libraryVersion(userId),
+                max -> snippetStore.findSearchMatches(query, userId, max, ticket::checkCurrent));
+        if (matches == null) {
+            // Too many to keep; a later page means the library grew past that since the first
+            return cursor == null ? snippetStore.forEachSearchResult(query, userId, null, PAGE_SIZE, current) : null;
+        }
+        if (matches.isEmpty() && cursor == null) {
+            return snippetStore.forEachFuzzyResult(query, userId, 0, PAGE_SIZE, current);
+        }
+        int end = Math.min(matches.size(), offset + PAGE_SIZE);
+        for (int i = offset; i < end; i++) {
+            current.accept(ticket.withMatchFragment(matches.get(i)));
         }
-        return html.toString();
+        return end < matches.size() ? SnippetDAO.encodeCursor(SearchSessions.CURSOR, Integer.toString(end)) : null;
     }
 
-    private static String escapeHtml(String text) {
+    @FunctionalInterface
+    private interface PageSource {
+        String render(SnippetStore.SnippetConsumer consumer) throws IOException;
+    }
+
+    static void renderSnippetHtml(HtmlWriter out, Snippet s, boolean swapOob) throws IOException {
+        (swapOob ? SNIPPET_CARD_SWAP : SNIPPET_CARD).render(out, s);
+    }
+
+    /**
+     * The card's code block: only the preview for long snippets, with a button that swaps
+     * in the full code from /snippets/{id}/code, and a copy button that fetches it. The
+     * preview's HTML was highlighted when the snippet was written and is copied as is.
+     */
+    private static void writeCodePreview(HtmlWriter out, Snippet s) throws IOException {
+        if (s.getCodePreviewHtml() == null) {
+            s = SnippetDAO.summaryOf(s);
+        }
+        int length = s.getCodeLength();
+        boolean truncated = s.getCodePreview() != null && s.getCodePreview().length() < length;
+        writeCodeBlock(out, s, s.getCodePreviewHtml(), truncated);
+        if (truncated) {
+            out.raw("<button class='expand-btn' hx-get='/snippets/").escaped(s.getId())
+               .raw("/code' hx-target='closest .code-block'>Show all (")
+               .raw(String.valueOf(Math.max(1, (length + 512) / 1024))).raw(" KB)</button>");
+        }
+    }
+
+    /**
+     * @param codeHtml code already escaped and highlighted by {@link SyntaxHighlighter}
+     */
+    private static void writeCodeBlock(HtmlWriter out, Snippet s, String codeHtml, boolean truncated) throws IOException {
+        out.raw("<button class='copy-btn'");
+        if (truncated) {
+            out.raw(" data-code-url='/snippets/").escaped(s.getId()).raw("/code?raw'");
+        }
+        out.raw(" onclick='copyCode(this)'>Copy</button><pre><code>")
+           .raw(codeHtml)
+           .raw("</code></pre>");
+    }
+
+    private static void writeTags(HtmlWriter out, Snippet s) throws IOException {
+        List<String> tags = s.getTags() != null ? s.getTags() : Collections.emptyList();
+        for (int i = 0; i < tags.size(); i++) {
+            if (i > 0) {
+                out.raw(", ");
+            }
+            out.raw("<a class='tag' href='#' hx-get='/snippets/tags?tag=")
+               .escaped(URLEncoder.encode(tags.get(i).strip(), StandardCharsets.UTF_8))
+               .raw("' hx-target='#snippets'>")
+               .escaped(tags.get(i))
+               .raw("</a>");
+        }
+    }
+
+    private static void writeMatch(HtmlWriter out, Snippet s) throws IOException {
+        if (s.getMatchFragment() != null) {
+            out.raw("<div class='match'>");
+            writeHighlightedMatches(out, s.getMatchFragment());
+            out.raw("</div>");
+        }
+    }
+
+    private static void writeHighlightedMatches(HtmlWriter out, String fragment) throws IOException {
+        int start = 0;
+        for (int i = 0; i < fragment.length(); i++) {
+            char c = fragment.charAt(i);
+            if (c == SnippetDAO.MATCH_START || c == SnippetDAO.MATCH_END) {
+                out.escaped(fragment, start, i).raw(c == SnippetDAO.MATCH_START ? "<mark>" : "</mark>");
+                start = i + 1;
+            }
+        }
+        out.escaped(fragment, start, fragment.length());
+    }
+
+    /**
+     * Escapes in a single pass, and returns {@code text} itself when there's nothing to escape.
+     * Responses should write through {@link HtmlWriter#escaped} instead; this is for callers
+     * that need a String.
+     */
+    static String escapeHtml(String text) {
         if (text == null) return "";
-        return text.replace("&", "&amp;")
-                   .replace("<", "&lt;")
-                   .replace(">", "&gt;")
-                   .replace("\"", "&quot;")
-                   .replace("'", "&#x27;");
+        StringBuilder escaped = null;
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            String entity = switch (text.charAt(i)) {
+                case '&' -> "&amp;";
+                case '<' -> "&lt;";
+                case '>' -> "&gt;";
+                case '"' -> "&quot;";
+                case '\'' -> "&#x27;";
+                default -> null;
+            };
+            if (entity != null) {
+                if (escaped == null) {
+                    escaped = new StringBuilder(text.length() + 16);
+                }
+                escaped.append(text, start, i).append(entity);
+                start = i + 1;
+            }
+        }
+        return escaped == null ? text : escaped.append(text, start, text.length()).toString();
     }
 }
 
@@ -352,5 +899,12 @@ class Snippet {
 	private String description;
 	private List<String> tags;
 	private LocalDateTime createdAt;
+	// Only set on search results
+	private String matchFragment;
+	// List and search results carry these instead of the code, see SnippetBodies#preview
+	private String codePreview;
+	// Highlighted HTML of the preview, see SyntaxHighlighter
+	private String codePreviewHtml;
+	private int codeLength;
 
 }
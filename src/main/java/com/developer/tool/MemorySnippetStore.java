@@ -0,0 +1,864 @@
+package com.developer.tool;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * {@link SnippetStore} that holds every snippet in the heap: by id in one map, and per
+ * user in a skip list in {@link SnippetDAO#NEWEST_FIRST} order, so a page is a seek and a
+ * walk and a lookup by id is a hash probe. Reads take no locks and never touch disk.
+ *
+ * Writes are serialized by one lock, under which each is appended to the {@link SnippetLog};
+ * the caller then waits for the log to be forced, together with whatever other writes
+ * arrived meanwhile, and only then are the writes it covers applied to the maps, in log
+ * order. So nothing is visible before it is durable, and a failed force applies nothing.
+ * A snapshot is written in the background once a
+ * log file fills up, every {@code snapshotIntervalSeconds} if anything was written, and on
+ * {@link #close}, so a restart reads one snapshot and a short tail of log.
+ *
+ * Keyword search uses a {@link KeywordIndex} per user in place of FTS5, ranking matches by
+ * the fields the terms occur in. It and the {@link TrigramIndex} and {@link VectorIndex}
+ * that fuzzy and semantic search share with {@link SnippetDAO} are built from memory on a
+ * user's first search of that kind, and kept current by writes while they stay cached.
+ */
+public class MemorySnippetStore implements SnippetStore {
+
+	private static final Metrics.Query CREATE = Metrics.query("memory", "create");
+	private static final Metrics.Query UPDATE = Metrics.query("memory", "update");
+	private static final Metrics.Query DELETE = Metrics.query("memory", "delete");
+	private static final Metrics.Query IMPORT_BATCH = Metrics.query("memory", "importBatch");
+	private static final Metrics.Query LIST_PAGE = Metrics.query("memory", "forEachInPage");
+	private static final Metrics.Query SEARCH_PAGE = Metrics.query("memory", "forEachSearchResult");
+	private static final Metrics.Query SEARCH_MATCHES = Metrics.query("memory", "findSearchMatches");
+	private static final Metrics.Query BUILD_KEYWORDS = Metrics.query("memory", "buildKeywordIndex");
+	private static final Metrics.Query BUILD_TRIGRAMS = Metrics.query("memory", "buildTrigramIndex");
+	private static final Metrics.Query LOAD_VECTORS = Metrics.query("memory", "loadVectorIndex");
+
+	private static final String RANKED_CURSOR = "ranked";
+	private static final String FUZZY_CURSOR = "fuzzy";
+	private static final String SEMANTIC_CURSOR = "semantic";
+
+	private final ConcurrentHashMap<String, Entry> byId = new ConcurrentHashMap<>();
+	private final ConcurrentHashMap<String, Library> libraries = new ConcurrentHashMap<>();
+	private final ReentrantLock writeLock = new ReentrantLock();
+	// Writes logged but not yet durable, in log order, and the latest of them per snippet id. Under writeLock
+	private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+	private final Map<String, Pending> pendingById = new HashMap<>();
+	private final SnippetLog log;
+	private final Path dir;
+
+	private final ScheduledExecutorService snapshotter;
+	private final AtomicBoolean snapshotQueued = new AtomicBoolean();
+
+	private final WeightedLruCache<String, KeywordIndex> keywordIndexes;
+	private final WeightedLruCache<String, TrigramIndex> trigramIndexes;
+	private final WeightedLruCache<String, VectorIndex> vectorIndexes;
+
+	/**
+	 * Loads the snippets kept in {@code dir}, creating it if need be.
+	 *
+	 * @param segmentBytes         size of each log file; a snapshot follows when one fills up
+	 * @param force                whether writes wait for the log to reach the disk, rather than the page cache
+	 * @param maxKeywordIndexBytes heap to spend on {@link KeywordIndex}es, least recently searched users evicted first
+	 * @param maxTrigramIndexBytes see {@link SnippetDAO#SnippetDAO(long, long)}
+	 * @param maxVectorIndexBytes  see {@link SnippetDAO#SnippetDAO(long, long)}
+	 */
+	public MemorySnippetStore(Path dir, int segmentBytes, boolean force, long snapshotIntervalSeconds,
+			long maxKeywordIndexBytes, long maxTrigramIndexBytes, long maxVectorIndexBytes) {
+		this.dir = dir;
+		this.keywordIndexes = new WeightedLruCache<>("memory-keyword-indexes", maxKeywordIndexBytes, KeywordIndex::bytes);
+		this.trigramIndexes = new WeightedLruCache<>("memory-trigram-indexes", maxTrigramIndexBytes, TrigramIndex::bytes);
+		this.vectorIndexes = new WeightedLruCache<>("memory-vector-indexes", maxVectorIndexBytes, VectorIndex::bytes);
+
+		long started = System.nanoTime();
+		try {
+			this.log = SnippetLog.open(dir, segmentBytes, force, new SnippetLog.Replay() {
+				@Override
+				public void put(Snippet snippet) {
+					apply(snippet);
+				}
+
+				@Override
+				public void delete(String id, String userId) {
+					remove(id, userId);
+				}
+			});
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to open snippet log in " + dir, e);
+		}
+		System.out.println("Loaded " + byId.size() + " snippets from " + dir + " in "
+				+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) + " ms");
+
+		this.snapshotter = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "snippet-snapshot");
+			t.setDaemon(true);
+			return t;
+		});
+		snapshotter.scheduleWithFixedDelay(this::snapshotQuietly, snapshotIntervalSeconds, snapshotIntervalSeconds,
+				TimeUnit.SECONDS);
+		// Logs replayed just now are folded in straight away, so the next start doesn't replay them again
+		if (log.needsSnapshot()) {
+			requestSnapshot();
+		}
+		Metrics.register(this::collectMetrics);
+	}
+
+	/**
+	 * Fills a store that was opened on an empty directory with {@code source}'s snippets,
+	 * e.g. everything in SQLite when switching engines, and snapshots them. Does nothing
+	 * if the directory held data.
+	 */
+	public void seedIfEmpty(Supplier<List<Snippet>> source) {
+		if (!log.fresh() || !byId.isEmpty()) {
+			return;
+		}
+		List<Snippet> snippets = source.get();
+		if (snippets.isEmpty()) {
+			return;
+		}
+		writeLock.lock();
+		try {
+			for (Snippet snippet : snippets) {
+				// summaryOf fills in the preview of rows written before previews were stored
+				apply(stored(SnippetDAO.summaryOf(snippet), snippet.getCode(), snippet.getUserId(), snippet.getCreatedAt()));
+			}
+		} finally {
+			writeLock.unlock();
+		}
+		// Seeded snippets never went through the log, so this snapshot is all that holds them
+		snapshot(true);
+		System.out.println("Seeded " + snippets.size() + " snippets into " + dir);
+	}
+
+	@Override
+	public long libraryVersion(String userId) {
+		Library library = libraries.get(userId);
+		return library != null ? library.version.get() : 0;
+	}
+
+	private void libraryChanged(String userId) {
+		libraries.computeIfAbsent(userId, id -> new Library()).version.incrementAndGet();
+	}
+
+	@Override
+	public void create(Snippet snippet, String userId) {
+		snippet.setUserId(userId);
+		if (snippet.getCreatedAt() == null) {
+			snippet.setCreatedAt(LocalDateTime.now(ZoneOffset.UTC).withNano(0));
+		}
+		float[] embedding = SnippetEmbedder.embed(snippet);
+		withPreview(snippet);
+		Snippet stored = stored(snippet, snippet.getCode(), userId, snippet.getCreatedAt());
+		byte[] record = SnippetLog.put(stored);
+
+		long started = System.nanoTime();
+		try {
+			long ticket;
+			writeLock.lock();
+			try {
+				ticket = log.append(record);
+				logged(ticket, stored.getId(), userId, stored, embedding);
+			} finally {
+				writeLock.unlock();
+			}
+			log.sync(ticket);
+			applyDurable();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to create snippet", e);
+		} finally {
+			CREATE.record(started, 1);
+			libraryChanged(userId);
+			snapshotIfLogFull();
+		}
+	}
+
+	@Override
+	public void update(Snippet snippet, String userId) {
+		float[] embedding = SnippetEmbedder.embed(snippet);
+		withPreview(snippet);
+
+		long started = System.nanoTime();
+		int rows = 0;
+		try {
+			long ticket;
+			Snippet stored;
+			writeLock.lock();
+			try {
+				Snippet current = latest(snippet.getId());
+				if (current == null || !current.getUserId().equals(userId)) {
+					return;
+				}
+				stored = stored(snippet, snippet.getCode(), userId, current.getCreatedAt());
+				ticket = log.append(SnippetLog.put(stored));
+				logged(ticket, stored.getId(), userId, stored, embedding);
+				rows = 1;
+			} finally {
+				writeLock.unlock();
+			}
+			log.sync(ticket);
+			applyDurable();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to update snippet", e);
+		} finally {
+			UPDATE.record(started, rows);
+			libraryChanged(userId);
+			snapshotIfLogFull();
+		}
+	}
+
+	@Override
+	public void delete(String id, String userId) {
+		long started = System.nanoTime();
+		int rows = 0;
+		try {
+			long ticket;
+			writeLock.lock();
+			try {
+				Snippet current = latest(id);
+				if (current == null || !current.getUserId().equals(userId)) {
+					return;
+				}
+				ticket = log.append(SnippetLog.delete(id, userId));
+				logged(ticket, id, userId, null, null);
+				rows = 1;
+			} finally {
+				writeLock.unlock();
+			}
+			log.sync(ticket);
+			applyDurable();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to delete snippet", e);
+		} finally {
+			DELETE.record(started, rows);
+			libraryChanged(userId);
+			snapshotIfLogFull();
+		}
+	}
+
+	/**
+	 * Same id rules as {@link SnippetDAO#importBatch}. The batch is logged and applied under
+	 * one hold of the write lock and forced once.
+	 */
+	@Override
+	public int importBatch(String userId, List<Snippet> snippets) {
+		LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC).withNano(0);
+		for (Snippet snippet : snippets) {
+			withPreview(snippet);
+		}
+
+		long started = System.nanoTime();
+		int inserted = 0;
+		try {
+			long ticket = 0;
+			writeLock.lock();
+			try {
+				Set<String> batchIds = new HashSet<>();
+				for (Snippet snippet : snippets) {
+					String id = SnippetDAO.importedId(snippet.getId());
+					if (id != null) {
+						Snippet existing = latest(id);
+						if (existing != null) {
+							if (userId.equals(existing.getUserId())) {
+								continue;
+							}
+							id = null;
+						}
+					}
+					if (id == null || !batchIds.add(id)) {
+						id = UUID.randomUUID().toString();
+						batchIds.add(id);
+					}
+					snippet.setId(id);
+					snippet.setUserId(userId);
+					if (snippet.getCreatedAt() == null) {
+						snippet.setCreatedAt(now);
+					}
+					if (snippet.getTags() == null) {
+						snippet.setTags(new ArrayList<>());
+					}
+					Snippet stored = stored(snippet, snippet.getCode(), userId, snippet.getCreatedAt());
+					ticket = log.append(SnippetLog.put(stored));
+					// No embedding: the indexes are rebuilt on the next search rather than fed thousands of snippets here
+					logged(ticket, id, userId, stored, null);
+					inserted++;
+				}
+			} finally {
+				writeLock.unlock();
+			}
+			log.sync(ticket);
+			applyDurable();
+			return inserted;
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to import snippets", e);
+		} finally {
+			IMPORT_BATCH.record(started, inserted);
+			libraryChanged(userId);
+			snapshotIfLogFull();
+		}
+	}
+
+	@Override
+	public Snippet findById(String id) {
+		Entry entry = byId.get(id);
+		if (entry == null) {
+			return null;
+		}
+		Snippet s = entry.snippet;
+		return new Snippet(s.getId(), s.getUserId(), s.getTitle(), s.getCode(), s.getLanguage(), s.getDescription(),
+				new ArrayList<>(s.getTags()), s.getCreatedAt(), null, s.getCodePreview(), s.getCodePreviewHtml(),
+				s.getCodeLength());
+	}
+
+	@Override
+	public int countByUserId(String userId) {
+		Library library = libraries.get(userId);
+		return library != null ? library.entries.size() : 0;
+	}
+
+	@Override
+	public String forEachInPage(String userId, String cursor, int limit, SnippetConsumer consumer) throws IOException {
+		long started = System.nanoTime();
+		long[] consumerNanos = {0};
+		int[] count = {0};
+		try {
+			return keysetPage(userId, cursor, limit, entry -> true, consumerNanos, count, consumer);
+		} finally {
+			LIST_PAGE.record(started, consumerNanos[0], count[0]);
+		}
+	}
+
+	@Override
+	public int forEachByUserId(String userId, SnippetConsumer consumer) throws IOException {
+		Library library = libraries.get(userId);
+		if (library == null) {
+			return 0;
+		}
+		int count = 0;
+		for (Entry entry : library.entries.values()) {
+			consumer.accept(entry.snippet);
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public String forEachByTags(String userId, List<String> tags, boolean matchAll, String cursor, int limit,
+			SnippetConsumer consumer) throws IOException {
+		List<String> normalized = tags.stream().map(SnippetDAO::normalizeTag).filter(t -> !t.isEmpty()).distinct().toList();
+		if (normalized.isEmpty()) {
+			return null;
+		}
+		Predicate<Entry> carries = matchAll
+				? entry -> entry.tags.containsAll(normalized)
+				: entry -> normalized.stream().anyMatch(entry.tags::contains);
+		return keysetPage(userId, cursor, limit, carries, new long[1], new int[1], consumer);
+	}
+
+	/**
+	 * Ranked in memory, see the class comment; the cursor is an offset into the ranking.
+	 */
+	@Override
+	public String forEachSearchResult(String query, String userId, String cursor, int limit, SnippetConsumer consumer)
+			throws IOException {
+		String[] terms = SearchSessions.terms(query);
+		if (terms.length == 0) {
+			return null;
+		}
+		int offset = 0;
+		if (cursor != null) {
+			String[] after = SnippetDAO.decodeCursor(cursor, 2);
+			try {
+				offset = Integer.parseInt(after[1]);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid cursor", e);
+			}
+			if (offset < 0) {
+				throw new IllegalArgumentException("Invalid cursor");
+			}
+			if (FUZZY_CURSOR.equals(after[0])) {
+				return forEachFuzzyResult(query, userId, offset, limit, consumer);
+			}
+			if (!RANKED_CURSOR.equals(after[0])) {
+				throw new IllegalArgumentException("Invalid cursor");
+			}
+		}
+
+		long started = System.nanoTime();
+		long consumerNanos = 0;
+		int count = 0;
+		List<Entry> ranked;
+		try {
+			// One more than the page, to tell whether there is a next one
+			int top = (int) Math.min(Integer.MAX_VALUE, offset + limit + 1L);
+			ranked = keywordMatches(userId, terms, Integer.MAX_VALUE, top, () -> {
+			});
+			int end = Math.min(ranked.size(), offset + limit);
+			for (int i = offset; i < end; i++) {
+				Snippet result = SearchSessions.withMatchFragment(ranked.get(i).snippet, terms);
+				result.setCode(null);
+				long accepting = System.nanoTime();
+				consumer.accept(result);
+				consumerNanos += System.nanoTime() - accepting;
+				count++;
+			}
+			if (end < ranked.size()) {
+				return SnippetDAO.encodeCursor(RANKED_CURSOR, Integer.toString(end));
+			}
+		} finally {
+			SEARCH_PAGE.record(started, consumerNanos, count);
+		}
+		// Nothing even starts with the query's words, so it may be misspelt
+		return cursor == null && ranked.isEmpty() ? forEachFuzzyResult(query, userId, 0, limit, consumer) : null;
+	}
+
+	@Override
+	public List<Snippet> findSearchMatches(String query, String userId, int max, Runnable checkpoint) {
+		String[] terms = SearchSessions.terms(query);
+		List<Snippet> snippets = new ArrayList<>();
+		if (terms.length == 0) {
+			return snippets;
+		}
+		long started = System.nanoTime();
+		try {
+			List<Entry> ranked = keywordMatches(userId, terms, max, max, checkpoint);
+			if (ranked == null) {
+				return null;
+			}
+			for (Entry entry : ranked) {
+				snippets.add(entry.snippet);
+			}
+			return snippets;
+		} finally {
+			SEARCH_MATCHES.record(started, snippets.size());
+		}
+	}
+
+	@Override
+	public String forEachFuzzyResult(String query, String userId, int offset, int limit, SnippetConsumer consumer)
+			throws IOException {
+		List<String> ranked = trigramIndex(userId).search(query, offset, limit + 1);
+		forEachById(userId, ranked.subList(0, Math.min(limit, ranked.size())), consumer);
+		return ranked.size() > limit ? SnippetDAO.encodeCursor(FUZZY_CURSOR, Integer.toString(offset + limit)) : null;
+	}
+
+	@Override
+	public String forEachSemanticResult(String query, String userId, String cursor, int limit, SnippetConsumer consumer)
+			throws IOException {
+		float[] embedding = SnippetEmbedder.embedQuery(query);
+		if (embedding == null) {
+			return null;
+		}
+		int offset = 0;
+		if (cursor != null) {
+			String[] after = SnippetDAO.decodeCursor(cursor, 2);
+			try {
+				offset = Integer.parseInt(after[1]);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid cursor", e);
+			}
+			if (!SEMANTIC_CURSOR.equals(after[0]) || offset < 0) {
+				throw new IllegalArgumentException("Invalid cursor");
+			}
+		}
+		List<String> ranked = vectorIndex(userId).nearest(embedding, offset, limit + 1);
+		forEachById(userId, ranked.subList(0, Math.min(limit, ranked.size())), consumer);
+		return ranked.size() > limit ? SnippetDAO.encodeCursor(SEMANTIC_CURSOR, Integer.toString(offset + limit)) : null;
+	}
+
+	@Override
+	public List<WeightedLruCache.Stats> cacheStats() {
+		return List.of(keywordIndexes.stats(), trigramIndexes.stats(), vectorIndexes.stats());
+	}
+
+	/**
+	 * Stops the background snapshots and writes a final one, so the next start has no log to replay.
+	 */
+	@Override
+	public void close() {
+		snapshotter.shutdown();
+		try {
+			snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		snapshotQuietly();
+		log.close();
+	}
+
+	/**
+	 * Up to {@code limit} of the user's entries matching {@code filter}, after the one
+	 * {@code cursor} points at, in list order. Returns the cursor for the next page, or null.
+	 */
+	private String keysetPage(String userId, String cursor, int limit, Predicate<Entry> filter, long[] consumerNanos,
+			int[] count, SnippetConsumer consumer) throws IOException {
+		Library library = libraries.get(userId);
+		if (library == null) {
+			return null;
+		}
+		NavigableMap<Snippet, Entry> entries = library.entries;
+		if (cursor != null) {
+			entries = entries.tailMap(SnippetDAO.decodeListCursor(cursor), false);
+		}
+		Snippet last = null;
+		for (Entry entry : entries.values()) {
+			if (!filter.test(entry)) {
+				continue;
+			}
+			if (count[0] == limit) {
+				return SnippetDAO.listCursor(last);
+			}
+			last = entry.summary;
+			long accepting = System.nanoTime();
+			consumer.accept(last);
+			consumerNanos[0] += System.nanoTime() - accepting;
+			count[0]++;
+		}
+		return null;
+	}
+
+	/**
+	 * The best {@code top} of the user's snippets containing every term, best first, or
+	 * null if more than {@code max} contain them. Ties keep list order.
+	 */
+	private List<Entry> keywordMatches(String userId, String[] terms, int max, int top, Runnable checkpoint) {
+		List<String> ids = keywordIndex(userId).search(terms, max, top);
+		if (ids == null) {
+			return null;
+		}
+		List<Entry> ranked = new ArrayList<>(ids.size());
+		for (String id : ids) {
+			checkpoint.run();
+			Entry entry = byId.get(id);
+			if (entry != null && entry.snippet.getUserId().equals(userId)) {
+				ranked.add(entry);
+			}
+		}
+		return ranked;
+	}
+
+	private void forEachById(String userId, List<String> ids, SnippetConsumer consumer) throws IOException {
+		for (String id : ids) {
+			Entry entry = byId.get(id);
+			// Deleted, or changed hands, since it was indexed
+			if (entry != null && entry.snippet.getUserId().equals(userId)) {
+				consumer.accept(entry.summary);
+			}
+		}
+	}
+
+	private KeywordIndex keywordIndex(String userId) {
+		KeywordIndex index = keywordIndexes.get(userId);
+		if (index != null && !index.needsRebuild()) {
+			return index;
+		}
+		long stamp = keywordIndexes.stamp();
+		index = new KeywordIndex();
+		long started = System.nanoTime();
+		int rows = 0;
+		try {
+			Library library = libraries.get(userId);
+			if (library != null) {
+				for (Entry entry : library.entries.values()) {
+					index.add(entry.snippet);
+					rows++;
+				}
+			}
+		} finally {
+			BUILD_KEYWORDS.record(started, rows);
+		}
+		keywordIndexes.putIfUnchanged(userId, index, stamp);
+		return index;
+	}
+
+	private TrigramIndex trigramIndex(String userId) {
+		TrigramIndex index = trigramIndexes.get(userId);
+		if (index != null && !index.needsRebuild()) {
+			return index;
+		}
+		long stamp = trigramIndexes.stamp();
+		index = new TrigramIndex();
+		long started = System.nanoTime();
+		int rows = 0;
+		try {
+			Library library = libraries.get(userId);
+			if (library != null) {
+				for (Entry entry : library.entries.values()) {
+					index.add(entry.snippet);
+					rows++;
+				}
+			}
+		} finally {
+			BUILD_TRIGRAMS.record(started, rows);
+		}
+		trigramIndexes.putIfUnchanged(userId, index, stamp);
+		return index;
+	}
+
+	/**
+	 * Embeddings aren't kept with the snippets, so a user's first semantic search computes
+	 * them for the whole library; after that the index is kept current by writes.
+	 */
+	private VectorIndex vectorIndex(String userId) {
+		VectorIndex index = vectorIndexes.get(userId);
+		if (index != null) {
+			return index;
+		}
+		long stamp = vectorIndexes.stamp();
+		index = new VectorIndex();
+		long started = System.nanoTime();
+		try {
+			Library library = libraries.get(userId);
+			if (library != null) {
+				for (Entry entry : library.entries.values()) {
+					index.put(entry.snippet.getId(), SnippetEmbedder.embed(entry.snippet));
+				}
+			}
+		} finally {
+			LOAD_VECTORS.record(started, index.size());
+		}
+		index.trimToSize();
+		vectorIndexes.putIfUnchanged(userId, index, stamp);
+		return index;
+	}
+
+	/** Brings the user's cached indexes up to date with a write {@link #applyDurable} just applied. */
+	private void indexed(Pending write) {
+		String userId = write.userId();
+		Snippet snippet = write.put();
+		if (snippet != null && write.embedding() == null) {
+			keywordIndexes.invalidate(userId);
+			trigramIndexes.invalidate(userId);
+			vectorIndexes.invalidate(userId);
+			return;
+		}
+		keywordIndexes.update(userId, index -> {
+			if (snippet != null) {
+				index.add(snippet);
+			} else {
+				index.remove(write.id());
+			}
+			return index;
+		});
+		trigramIndexes.update(userId, index -> {
+			if (snippet != null) {
+				index.add(snippet);
+			} else {
+				index.remove(write.id());
+			}
+			return index;
+		});
+		vectorIndexes.update(userId, index -> {
+			if (snippet != null) {
+				index.put(snippet.getId(), write.embedding());
+			} else {
+				index.remove(write.id());
+			}
+			return index;
+		});
+	}
+
+	/**
+	 * Sets the preview of {@code snippet}'s code, as {@link SnippetBodies#encode} does for
+	 * SQLite; there is no blob to hash or compress here.
+	 */
+	private static void withPreview(Snippet snippet) {
+		String code = snippet.getCode() == null ? "" : snippet.getCode();
+		snippet.setCodePreview(SnippetBodies.preview(code));
+		snippet.setCodePreviewHtml(SyntaxHighlighter.highlight(snippet.getCodePreview(), snippet.getLanguage()));
+		snippet.setCodeLength(code.length());
+	}
+
+	/**
+	 * The copy that is kept and logged: the caller's snippet may be changed after the call.
+	 */
+	private static Snippet stored(Snippet snippet, String code, String userId, LocalDateTime createdAt) {
+		return new Snippet(snippet.getId(), userId, snippet.getTitle(), code, snippet.getLanguage(),
+				snippet.getDescription(), snippet.getTags() != null ? List.copyOf(snippet.getTags()) : List.of(),
+				createdAt, null, snippet.getCodePreview(), snippet.getCodePreviewHtml(), snippet.getCodeLength());
+	}
+
+	/** Puts {@code snippet} in both maps, replacing any earlier version. Under the write lock or during recovery. */
+	private void apply(Snippet snippet) {
+		Entry entry = new Entry(snippet);
+		Entry previous = byId.put(snippet.getId(), entry);
+		Library library = libraries.computeIfAbsent(snippet.getUserId(), id -> new Library());
+		if (previous != null && (!previous.snippet.getUserId().equals(snippet.getUserId())
+				|| SnippetDAO.NEWEST_FIRST.compare(previous.summary, entry.summary) != 0)) {
+			libraries.get(previous.snippet.getUserId()).entries.remove(previous.summary);
+		}
+		// Same key as the previous version, so the value is swapped in place and no reader misses it
+		library.entries.put(entry.summary, entry);
+	}
+
+	/** The snippet as the writes logged so far leave it, durable or not. Under the write lock. */
+	private Snippet latest(String id) {
+		Pending write = pendingById.get(id);
+		if (write != null) {
+			return write.put();
+		}
+		Entry entry = byId.get(id);
+		return entry != null ? entry.snippet : null;
+	}
+
+	/**
+	 * Queues a write appended at {@code ticket}: a put of {@code put}, or a delete if it is
+	 * null. A put without an {@code embedding} drops the user's indexes instead of updating
+	 * them. Under the write lock.
+	 */
+	private void logged(long ticket, String id, String userId, Snippet put, float[] embedding) {
+		Pending write = new Pending(ticket, id, userId, put, embedding);
+		pending.add(write);
+		pendingById.put(id, write);
+	}
+
+	/**
+	 * Applies, in log order, the pending writes the log has made durable, to the maps and
+	 * the cached indexes alike, so an index never sees two writes to one id out of order.
+	 * Whoever calls it after its own sync applies its own write, if a later sync hasn't already.
+	 */
+	private void applyDurable() {
+		writeLock.lock();
+		try {
+			long durable = log.durable();
+			Pending write;
+			while ((write = pending.peek()) != null && write.ticket() <= durable) {
+				pending.poll();
+				if (write.put() != null) {
+					apply(write.put());
+				} else {
+					remove(write.id(), write.userId());
+				}
+				indexed(write);
+				pendingById.remove(write.id(), write);
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	private record Pending(long ticket, String id, String userId, Snippet put, float[] embedding) {
+	}
+
+	private void remove(String id, String userId) {
+		Entry entry = byId.get(id);
+		if (entry == null || !entry.snippet.getUserId().equals(userId)) {
+			return;
+		}
+		byId.remove(id);
+		libraries.get(userId).entries.remove(entry.summary);
+	}
+
+	private void snapshotIfLogFull() {
+		if (log.needsSnapshot()) {
+			requestSnapshot();
+		}
+	}
+
+	private void requestSnapshot() {
+		if (snapshotQueued.compareAndSet(false, true)) {
+			snapshotter.execute(this::snapshotQuietly);
+		}
+	}
+
+	private void snapshotQuietly() {
+		try {
+			snapshot(false);
+		} catch (RuntimeException e) {
+			// The logs it would have replaced are kept, so nothing is lost; the next attempt catches up
+			System.err.println("Snippet snapshot failed: " + e);
+		}
+	}
+
+	/**
+	 * Rotates the log and copies the state under the write lock, then writes the copy out
+	 * while writes carry on into the new log. Skipped if nothing was written since the
+	 * last one, unless {@code always}.
+	 */
+	private void snapshot(boolean always) {
+		snapshotQueued.set(false);
+		long generation;
+		List<Snippet> state;
+		writeLock.lock();
+		try {
+			if (!always && !log.hasWritesSinceSnapshot()) {
+				return;
+			}
+			generation = log.rotate();
+			// Rotating forced the old log, so every pending write is durable and belongs in this snapshot
+			applyDurable();
+			state = new ArrayList<>(byId.size());
+			for (Entry entry : byId.values()) {
+				state.add(entry.snippet);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to rotate snippet log", e);
+		} finally {
+			writeLock.unlock();
+		}
+		try {
+			log.writeSnapshot(generation, state);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to write snippet snapshot", e);
+		}
+	}
+
+	private void collectMetrics(Metrics.Exposition out) {
+		SnippetLog.Stats stats = log.stats();
+		out.family("codecache_memory_store_snippets", "gauge", "Snippets held by the in-memory store");
+		out.sample("codecache_memory_store_snippets", "", byId.size());
+		out.family("codecache_memory_store_log_bytes_total", "counter", "Bytes appended to the snippet log");
+		out.sample("codecache_memory_store_log_bytes_total", "", stats.appendedBytes());
+		out.family("codecache_memory_store_log_unsnapshotted_bytes", "gauge", "Log bytes a restart would replay");
+		out.sample("codecache_memory_store_log_unsnapshotted_bytes", "", stats.unsnapshottedBytes());
+		out.family("codecache_memory_store_log_syncs_total", "counter", "Forces of the snippet log to disk");
+		out.sample("codecache_memory_store_log_syncs_total", "", stats.syncs());
+		out.family("codecache_memory_store_snapshots_total", "counter", "Snapshots written");
+		out.sample("codecache_memory_store_snapshots_total", "", stats.snapshots());
+		out.family("codecache_memory_store_last_snapshot_seconds", "gauge", "Time taken by the last snapshot");
+		out.sample("codecache_memory_store_last_snapshot_seconds", "", stats.lastSnapshotMillis() / 1000);
+	}
+
+	/** One user's snippets in list order, keyed by their summaries (only created_at and id are compared). */
+	private static final class Library {
+		final ConcurrentSkipListMap<Snippet, Entry> entries = new ConcurrentSkipListMap<>(SnippetDAO.NEWEST_FIRST);
+		final AtomicLong version = new AtomicLong();
+	}
+
+	private static final class Entry {
+		final Snippet snippet;
+		final Snippet summary;
+		final Set<String> tags;
+
+		Entry(Snippet snippet) {
+			this.snippet = snippet;
+			this.summary = SnippetDAO.summaryOf(snippet);
+			Set<String> normalized = new HashSet<>();
+			for (String tag : snippet.getTags()) {
+				normalized.add(SnippetDAO.normalizeTag(tag));
+			}
+			this.tags = normalized;
+		}
+	}
+}
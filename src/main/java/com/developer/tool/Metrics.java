@@ -0,0 +1,332 @@
+package com.developer.tool;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide metrics in Prometheus text format: request latency per route, query
+ * latency and row counts per DAO method, JVM memory and GC, plus whatever registered
+ * {@link Collector}s report (pool, caches, hashing).
+ *
+ * Recording is lock-free: a latency lands in a fixed bucket of an
+ * {@link AtomicLongArray} and totals go to {@link LongAdder}s. Quantiles are only
+ * estimated from the buckets when {@link #scrape()} is called, so keeping this on in
+ * production costs a couple of atomic increments per request or query.
+ */
+public final class Metrics {
+
+	// Upper bounds of the latency buckets, 100µs to 30s; anything slower lands in +Inf
+	private static final double[] BUCKET_SECONDS = { 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01,
+			0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30 };
+	private static final long[] BUCKET_NANOS = new long[BUCKET_SECONDS.length];
+	private static final String[] BUCKET_LABELS = new String[BUCKET_SECONDS.length];
+
+	static {
+		for (int i = 0; i < BUCKET_SECONDS.length; i++) {
+			BUCKET_NANOS[i] = (long) (BUCKET_SECONDS[i] * 1e9);
+			BUCKET_LABELS[i] = BigDecimal.valueOf(BUCKET_SECONDS[i]).stripTrailingZeros().toPlainString();
+		}
+	}
+
+	private static final double[] QUANTILES = { 0.5, 0.95, 0.99 };
+
+	// route -> method -> metrics; routes are Javalin path patterns, so the key space is bounded
+	private static final Map<String, Map<String, Route>> routes = new ConcurrentHashMap<>();
+	private static final List<Query> queries = new CopyOnWriteArrayList<>();
+	private static final List<Collector> collectors = new CopyOnWriteArrayList<>();
+
+	private Metrics() {
+	}
+
+	public static void recordRequest(String method, String route, int status, long nanos) {
+		Map<String, Route> byMethod = routes.get(route);
+		if (byMethod == null) {
+			byMethod = routes.computeIfAbsent(route, r -> new ConcurrentHashMap<>());
+		}
+		Route metrics = byMethod.get(method);
+		if (metrics == null) {
+			metrics = byMethod.computeIfAbsent(method, m -> new Route());
+		}
+		metrics.latency.record(nanos);
+		metrics.statuses.incrementAndGet(Math.min(Math.max(status / 100, 0), 5));
+	}
+
+	/**
+	 * Registers the metrics for one DAO method. Meant for static fields, so the lookup
+	 * happens once per class rather than once per query.
+	 */
+	public static Query query(String dao, String method) {
+		Query query = new Query(dao, method);
+		queries.add(query);
+		return query;
+	}
+
+	public static void register(Collector collector) {
+		collectors.add(collector);
+	}
+
+	public static String scrape() {
+		Exposition out = new Exposition();
+		writeRoutes(out);
+		writeQueries(out);
+		writeJvm(out);
+		for (Collector collector : collectors) {
+			collector.collect(out);
+		}
+		return out.toString();
+	}
+
+	private static void writeRoutes(Exposition out) {
+		out.family("codecache_http_requests_total", "counter", "HTTP requests by route, method and status class");
+		forEachRoute((labels, route) -> {
+			for (int i = 1; i < route.statuses.length(); i++) {
+				long count = route.statuses.get(i);
+				if (count > 0) {
+					out.sample("codecache_http_requests_total", labels + ",status=\"" + i + "xx\"", count);
+				}
+			}
+		});
+
+		out.family("codecache_http_request_duration_seconds", "histogram", "HTTP request latency by route and method");
+		forEachRoute((labels, route) -> route.latency.snapshot().writeHistogram(out, "codecache_http_request_duration_seconds", labels));
+
+		out.family("codecache_http_request_duration_quantile_seconds", "gauge",
+				"HTTP request latency quantiles since start, estimated from the histogram buckets");
+		forEachRoute((labels, route) -> route.latency.snapshot().writeQuantiles(out, "codecache_http_request_duration_quantile_seconds", labels));
+	}
+
+	private static void forEachRoute(RouteVisitor visitor) {
+		routes.forEach((route, byMethod) -> byMethod.forEach((method, metrics) ->
+				visitor.visit("route=\"" + escapeLabel(route) + "\",method=\"" + method + "\"", metrics)));
+	}
+
+	private static void writeQueries(Exposition out) {
+		out.family("codecache_db_query_duration_seconds", "histogram",
+				"Time spent in each DAO method, excluding time spent by streaming consumers");
+		for (Query query : queries) {
+			query.latency.snapshot().writeHistogram(out, "codecache_db_query_duration_seconds", query.labels);
+		}
+
+		out.family("codecache_db_query_duration_quantile_seconds", "gauge",
+				"DAO method latency quantiles since start, estimated from the histogram buckets");
+		for (Query query : queries) {
+			query.latency.snapshot().writeQuantiles(out, "codecache_db_query_duration_quantile_seconds", query.labels);
+		}
+
+		out.family("codecache_db_query_rows_total", "counter", "Rows returned or affected by each DAO method");
+		for (Query query : queries) {
+			out.sample("codecache_db_query_rows_total", query.labels, query.rows.sum());
+		}
+	}
+
+	private static void writeJvm(Exposition out) {
+		MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+		MemoryUsage nonHeap = ManagementFactory.getMemoryMXBean().getNonHeapMemoryUsage();
+
+		out.family("jvm_memory_used_bytes", "gauge", "Used JVM memory by area");
+		out.sample("jvm_memory_used_bytes", "area=\"heap\"", heap.getUsed());
+		out.sample("jvm_memory_used_bytes", "area=\"nonheap\"", nonHeap.getUsed());
+		out.family("jvm_memory_committed_bytes", "gauge", "Committed JVM memory by area");
+		out.sample("jvm_memory_committed_bytes", "area=\"heap\"", heap.getCommitted());
+		out.sample("jvm_memory_committed_bytes", "area=\"nonheap\"", nonHeap.getCommitted());
+		out.family("jvm_memory_max_bytes", "gauge", "Maximum JVM memory by area, -1 if unbounded");
+		out.sample("jvm_memory_max_bytes", "area=\"heap\"", heap.getMax());
+		out.sample("jvm_memory_max_bytes", "area=\"nonheap\"", nonHeap.getMax());
+
+		out.family("jvm_memory_pool_used_bytes", "gauge", "Used bytes per memory pool");
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			out.sample("jvm_memory_pool_used_bytes", "pool=\"" + escapeLabel(pool.getName()) + "\"", pool.getUsage().getUsed());
+		}
+
+		out.family("jvm_gc_collection_seconds", "summary", "Time spent in each garbage collector");
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			String labels = "gc=\"" + escapeLabel(gc.getName()) + "\"";
+			out.sample("jvm_gc_collection_seconds_count", labels, gc.getCollectionCount());
+			out.sample("jvm_gc_collection_seconds_sum", labels, gc.getCollectionTime() / 1000.0);
+		}
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		out.family("jvm_threads_current", "gauge", "Live platform threads");
+		out.sample("jvm_threads_current", "", threads.getThreadCount());
+		out.family("process_uptime_seconds", "gauge", "Time since the JVM started");
+		out.sample("process_uptime_seconds", "", ManagementFactory.getRuntimeMXBean().getUptime() / 1000.0);
+	}
+
+	static String escapeLabel(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	@FunctionalInterface
+	private interface RouteVisitor {
+		void visit(String labels, Route route);
+	}
+
+	/**
+	 * Reports point-in-time values (pool sizes, cache hits, ...) on each scrape.
+	 */
+	@FunctionalInterface
+	public interface Collector {
+		void collect(Exposition out);
+	}
+
+	private static final class Route {
+		final Histogram latency = new Histogram();
+		// Indexed by status / 100
+		final AtomicLongArray statuses = new AtomicLongArray(6);
+	}
+
+	/**
+	 * Latency and row counts for one DAO method.
+	 */
+	public static final class Query {
+
+		private final String labels;
+		private final Histogram latency = new Histogram();
+		private final LongAdder rows = new LongAdder();
+
+		private Query(String dao, String method) {
+			this.labels = "dao=\"" + escapeLabel(dao) + "\",method=\"" + escapeLabel(method) + "\"";
+		}
+
+		/**
+		 * Records a call that began at {@code startedNanos} (from {@link System#nanoTime()}).
+		 */
+		public void record(long startedNanos, long rowCount) {
+			record(startedNanos, 0, rowCount);
+		}
+
+		/**
+		 * As {@link #record(long, long)}, minus {@code excludedNanos} spent outside the
+		 * database, e.g. writing streamed rows to the response.
+		 */
+		public void record(long startedNanos, long excludedNanos, long rowCount) {
+			latency.record(System.nanoTime() - startedNanos - excludedNanos);
+			rows.add(rowCount);
+		}
+	}
+
+	private static final class Histogram {
+
+		// One slot per bucket plus +Inf
+		private final AtomicLongArray counts = new AtomicLongArray(BUCKET_NANOS.length + 1);
+		private final LongAdder sumNanos = new LongAdder();
+
+		void record(long nanos) {
+			int low = 0;
+			int high = BUCKET_NANOS.length;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (BUCKET_NANOS[mid] < nanos) {
+					low = mid + 1;
+				} else {
+					high = mid;
+				}
+			}
+			counts.incrementAndGet(low);
+			sumNanos.add(nanos);
+		}
+
+		Snapshot snapshot() {
+			long[] copy = new long[counts.length()];
+			for (int i = 0; i < copy.length; i++) {
+				copy[i] = counts.get(i);
+			}
+			return new Snapshot(copy, sumNanos.sum());
+		}
+	}
+
+	private record Snapshot(long[] counts, long sumNanos) {
+
+		long total() {
+			long total = 0;
+			for (long count : counts) {
+				total += count;
+			}
+			return total;
+		}
+
+		void writeHistogram(Exposition out, String name, String labels) {
+			long cumulative = 0;
+			for (int i = 0; i < BUCKET_LABELS.length; i++) {
+				cumulative += counts[i];
+				out.sample(name + "_bucket", labels + ",le=\"" + BUCKET_LABELS[i] + "\"", cumulative);
+			}
+			cumulative += counts[BUCKET_LABELS.length];
+			out.sample(name + "_bucket", labels + ",le=\"+Inf\"", cumulative);
+			out.sample(name + "_sum", labels, sumNanos / 1e9);
+			out.sample(name + "_count", labels, cumulative);
+		}
+
+		void writeQuantiles(Exposition out, String name, String labels) {
+			long total = total();
+			if (total == 0) {
+				return;
+			}
+			for (double q : QUANTILES) {
+				out.sample(name, labels + ",quantile=\"" + q + "\"", quantile(q, total));
+			}
+		}
+
+		/**
+		 * Linear interpolation within the bucket holding the target rank, the same
+		 * estimate Prometheus' histogram_quantile() makes.
+		 */
+		double quantile(double q, long total) {
+			double rank = q * total;
+			long cumulative = 0;
+			for (int i = 0; i < BUCKET_SECONDS.length; i++) {
+				if (cumulative + counts[i] >= rank && counts[i] > 0) {
+					double lower = i == 0 ? 0 : BUCKET_SECONDS[i - 1];
+					return lower + (BUCKET_SECONDS[i] - lower) * (rank - cumulative) / counts[i];
+				}
+				cumulative += counts[i];
+			}
+			// In the +Inf bucket: the best we can say is "slower than the last bound"
+			return BUCKET_SECONDS[BUCKET_SECONDS.length - 1];
+		}
+	}
+
+	/**
+	 * Builds the text exposition. Write a {@link #family} header, then its samples.
+	 */
+	public static final class Exposition {
+
+		private final StringBuilder text = new StringBuilder(16 * 1024);
+
+		public Exposition family(String name, String type, String help) {
+			text.append("# HELP ").append(name).append(' ').append(help).append('\n')
+				.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+			return this;
+		}
+
+		public Exposition sample(String name, String labels, double value) {
+			text.append(name);
+			if (!labels.isEmpty()) {
+				text.append('{').append(labels).append('}');
+			}
+			text.append(' ');
+			if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+				text.append((long) value);
+			} else {
+				text.append(value);
+			}
+			text.append('\n');
+			return this;
+		}
+
+		@Override
+		public String toString() {
+			return text.toString();
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package com.developer.tool;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.mindrot.jbcrypt.BCrypt;
+
+/**
+ * Runs BCrypt on a small, bounded pool of platform threads. Request handlers run on
+ * virtual threads and just park while their hash is computed, so a burst of logins
+ * can only ever occupy {@code threads} cores. When the queue is full the call fails
+ * immediately with {@link SaturatedException} instead of piling up.
+ */
+public class PasswordHasher implements AutoCloseable {
+
+	private final ThreadPoolExecutor executor;
+	private final int cost;
+
+	private final LongAdder hashes = new LongAdder();
+	private final LongAdder verifications = new LongAdder();
+	private final LongAdder rejections = new LongAdder();
+	private final LongAdder queueWaitNanos = new LongAdder();
+	private final LongAdder workNanos = new LongAdder();
+	private final AtomicLong maxQueueWaitNanos = new AtomicLong();
+
+	public PasswordHasher(int threads, int queueSize, int cost) {
+		this.cost = cost;
+		AtomicInteger threadNumber = new AtomicInteger();
+		this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queueSize),
+				r -> {
+					Thread t = new Thread(r, "bcrypt-" + threadNumber.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				},
+				new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	public String hash(String password) {
+		hashes.increment();
+		return run(() -> BCrypt.hashpw(password, BCrypt.gensalt(cost)));
+	}
+
+	public boolean verify(String password, String passwordHash) {
+		verifications.increment();
+		return run(() -> BCrypt.checkpw(password, passwordHash));
+	}
+
+	private <T> T run(Callable<T> work) {
+		long submitted = System.nanoTime();
+		Future<T> future;
+		try {
+			future = executor.submit(() -> {
+				long started = System.nanoTime();
+				long waited = started - submitted;
+				queueWaitNanos.add(waited);
+				maxQueueWaitNanos.accumulateAndGet(waited, Math::max);
+				try {
+					return work.call();
+				} finally {
+					workNanos.add(System.nanoTime() - started);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			rejections.increment();
+			throw new SaturatedException();
+		}
+
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while hashing password", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Password hashing failed", e.getCause());
+		}
+	}
+
+	public Stats stats() {
+		long completed = executor.getCompletedTaskCount();
+		return new Stats(
+				cost,
+				executor.getPoolSize(),
+				executor.getActiveCount(),
+				executor.getQueue().size(),
+				hashes.sum(),
+				verifications.sum(),
+				rejections.sum(),
+				completed == 0 ? 0 : queueWaitNanos.sum() / 1_000_000.0 / completed,
+				maxQueueWaitNanos.get() / 1_000_000.0,
+				completed == 0 ? 0 : workNanos.sum() / 1_000_000.0 / completed);
+	}
+
+	@Override
+	public void close() {
+		executor.shutdownNow();
+	}
+
+	public record Stats(int cost, int threads, int active, int queued, long hashes, long verifications,
+			long rejections, double avgQueueWaitMillis, double maxQueueWaitMillis, double avgHashMillis) {
+	}
+
+	/**
+	 * Thrown when every hashing thread is busy and the queue is full.
+	 */
+	public static class SaturatedException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		public SaturatedException() {
+			super("Password hashing is saturated, try again shortly");
+		}
+	}
+}
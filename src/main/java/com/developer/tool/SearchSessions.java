@@ -0,0 +1,319 @@
+package com.developer.tool;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Per-user state for search-as-you-type. Typing "concurrent" sends a query for nearly
+ * every prefix, and two things follow from that:
+ *
+ * Only the newest query matters. Each search takes a {@link Ticket} that a newer search
+ * by the same user supersedes; the older one stops at its next {@link Ticket#checkCurrent()}
+ * (between rows) instead of reading and rendering results nobody will see.
+ *
+ * Later queries narrow earlier ones. Search terms are AND-ed prefixes, so every match for
+ * "concurrent" is also a match for "conc". When a query's full match set is small enough
+ * it is kept, with each snippet's text folded the way the FTS tokenizer folds it, and any
+ * later query that extends it is answered by filtering that set in memory, no SQL at all.
+ * Kept sets are dropped as soon as the library version moves.
+ */
+public final class SearchSessions {
+
+	/** First cursor part of a page of a kept match set. */
+	static final String CURSOR = "session";
+
+	private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+	private static final int FRAGMENT_TOKENS = 12;
+
+	private final ConcurrentHashMap<String, AtomicLong> generations = new ConcurrentHashMap<>();
+	private final WeightedLruCache<String, Session> sessions;
+	private final int maxCandidates;
+
+	private final LongAdder queried = new LongAdder();
+	private final LongAdder reused = new LongAdder();
+	private final LongAdder tooBroad = new LongAdder();
+	private final LongAdder superseded = new LongAdder();
+
+	/**
+	 * @param maxCandidates queries matching more snippets than this always go to SQLite
+	 */
+	public SearchSessions(long maxBytes, int maxCandidates) {
+		this.sessions = new WeightedLruCache<>("search-sessions", maxBytes, Session::weight);
+		this.maxCandidates = maxCandidates;
+	}
+
+	/**
+	 * Starts a search, superseding any still running for the same user.
+	 */
+	public Ticket begin(String userId, String query) {
+		AtomicLong generation = generations.computeIfAbsent(userId, id -> new AtomicLong());
+		return new Ticket(userId, terms(query), generation, generation.incrementAndGet());
+	}
+
+	/**
+	 * All snippets matching the ticket's query, in rank order: filtered from the kept set
+	 * of an earlier query it extends if there is one, else loaded and kept for the queries
+	 * that follow. Null if more than {@code maxCandidates} match, in which case the caller
+	 * pages through SQLite.
+	 */
+	public List<Snippet> matches(Ticket ticket, long libraryVersion, Loader loader) {
+		Session session = sessions.get(ticket.userId);
+		if (session != null && session.libraryVersion == libraryVersion && narrows(session.terms, ticket.terms)) {
+			List<Snippet> matches = new ArrayList<>();
+			for (int i = 0; i < session.snippets.size(); i++) {
+				if (matchesAll(session.folded[i], ticket.terms)) {
+					matches.add(session.snippets.get(i));
+				}
+			}
+			reused.increment();
+			return matches;
+		}
+
+		List<Snippet> loaded = loader.load(maxCandidates);
+		ticket.checkCurrent();
+		if (loaded == null) {
+			tooBroad.increment();
+			return null;
+		}
+		queried.increment();
+		String[] folded = new String[loaded.size()];
+		for (int i = 0; i < folded.length; i++) {
+			folded[i] = foldedText(loaded.get(i));
+		}
+		sessions.put(ticket.userId, new Session(ticket.terms, libraryVersion, loaded, folded));
+		return loaded;
+	}
+
+	@FunctionalInterface
+	public interface Loader {
+		/** All matching snippets in rank order, or null if there are more than {@code max}. */
+		List<Snippet> load(int max);
+	}
+
+	public Stats stats() {
+		return new Stats(queried.sum(), reused.sum(), tooBroad.sum(), superseded.sum());
+	}
+
+	public WeightedLruCache.Stats cacheStats() {
+		return sessions.stats();
+	}
+
+	/**
+	 * @param queried    searches whose match set was read from SQLite and kept
+	 * @param reused     searches answered from a kept set without touching SQLite
+	 * @param tooBroad   searches with too many matches to keep, paged from SQLite
+	 * @param superseded searches dropped part-way because a newer one arrived
+	 */
+	public record Stats(long queried, long reused, long tooBroad, long superseded) {
+	}
+
+	public final class Ticket {
+		private final String userId;
+		private final String[] terms;
+		private final AtomicLong generation;
+		private final long mine;
+
+		private Ticket(String userId, String[] terms, AtomicLong generation, long mine) {
+			this.userId = userId;
+			this.terms = terms;
+			this.generation = generation;
+			this.mine = mine;
+		}
+
+		public boolean isCurrent() {
+			return generation.get() == mine;
+		}
+
+		/**
+		 * Throws {@link CancellationException} once a newer search has started.
+		 */
+		public void checkCurrent() {
+			if (!isCurrent()) {
+				superseded.increment();
+				throw new CancellationException("Superseded by a newer search");
+			}
+		}
+
+		/**
+		 * Copy of {@code snippet} with the parts matching this query marked, as FTS5's
+		 * snippet() would mark them, for results that never went through it.
+		 */
+		public Snippet withMatchFragment(Snippet snippet) {
+			return SearchSessions.withMatchFragment(snippet, terms);
+		}
+	}
+
+	/**
+	 * Copy of {@code snippet} with the parts matching {@code terms} (see {@link #terms})
+	 * marked: in the description if they occur there, else in the code.
+	 */
+	static Snippet withMatchFragment(Snippet snippet, String[] terms) {
+		String fragment = fragment(snippet.getDescription(), terms);
+		if (fragment == null) {
+			fragment = fragment(snippet.getCode(), terms);
+		}
+		return new Snippet(snippet.getId(), snippet.getUserId(), snippet.getTitle(), snippet.getCode(),
+				snippet.getLanguage(), snippet.getDescription(), snippet.getTags(), snippet.getCreatedAt(), fragment,
+				snippet.getCodePreview(), snippet.getCodePreviewHtml(), snippet.getCodeLength());
+	}
+
+	private record Session(String[] terms, long libraryVersion, List<Snippet> snippets, String[] folded) {
+		long weight() {
+			long bytes = 64;
+			for (String text : folded) {
+				// The folded copy plus, roughly, the snippet it was made from
+				bytes += 96 + 3L * text.length();
+			}
+			return bytes;
+		}
+	}
+
+	/**
+	 * Query terms as {@link SnippetDAO#toMatchExpression} splits them, folded like the tokenizer folds text.
+	 */
+	static String[] terms(String query) {
+		if (query == null) {
+			return new String[0];
+		}
+		return Arrays.stream(fold(query).split("[^\\p{L}\\p{N}_]+"))
+				.filter(term -> !term.isEmpty())
+				.toArray(String[]::new);
+	}
+
+	/**
+	 * True if every match for {@code next} is a match for {@code base}: the same terms, the
+	 * last of which may have been typed further, and possibly more terms after it.
+	 */
+	static boolean narrows(String[] base, String[] next) {
+		if (base.length == 0 || next.length < base.length) {
+			return false;
+		}
+		int last = base.length - 1;
+		for (int i = 0; i < last; i++) {
+			if (!base[i].equals(next[i])) {
+				return false;
+			}
+		}
+		return next[last].startsWith(base[last]);
+	}
+
+	/**
+	 * Lower case, accents stripped, like unicode61 with remove_diacritics.
+	 */
+	static String fold(String text) {
+		String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+		return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+	}
+
+	private static String foldedText(Snippet snippet) {
+		StringBuilder text = new StringBuilder();
+		text.append(snippet.getCode()).append('\n').append(snippet.getDescription()).append('\n')
+				.append(snippet.getLanguage()).append('\n');
+		if (snippet.getTags() != null) {
+			text.append(String.join(",", snippet.getTags()));
+		}
+		return fold(text.toString());
+	}
+
+	/** Each term starts some token of {@code folded}; terms are FTS prefix queries. */
+	private static boolean matchesAll(String folded, String[] terms) {
+		for (String term : terms) {
+			if (!startsSomeToken(folded, term)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean startsSomeToken(String text, String term) {
+		int from = 0;
+		while (true) {
+			int at = text.indexOf(term, from);
+			if (at < 0) {
+				return false;
+			}
+			if (at == 0 || !isTokenChar(text.charAt(at - 1))) {
+				return true;
+			}
+			from = at + 1;
+		}
+	}
+
+	private static boolean isTokenChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || Character.getType(c) == Character.NON_SPACING_MARK;
+	}
+
+	/**
+	 * Up to {@link #FRAGMENT_TOKENS} tokens of {@code text} starting a little before the first
+	 * one a term matches, matched tokens wrapped in {@link SnippetDAO#MATCH_START} and
+	 * {@link SnippetDAO#MATCH_END}. Null if no term matches.
+	 */
+	private static String fragment(String text, String[] terms) {
+		if (text == null || terms.length == 0) {
+			return null;
+		}
+		List<int[]> tokens = new ArrayList<>();
+		int first = -1;
+		for (int i = 0; i < text.length();) {
+			if (!isTokenChar(text.charAt(i))) {
+				i++;
+				continue;
+			}
+			int start = i;
+			while (i < text.length() && isTokenChar(text.charAt(i))) {
+				i++;
+			}
+			boolean matched = matchesAny(fold(text.substring(start, i)), terms);
+			tokens.add(new int[] {start, i, matched ? 1 : 0});
+			if (matched && first < 0) {
+				first = tokens.size() - 1;
+			}
+			if (first >= 0 && tokens.size() - first >= FRAGMENT_TOKENS) {
+				break;
+			}
+		}
+		if (first < 0) {
+			return null;
+		}
+
+		int from = Math.max(0, first - 2);
+		int to = Math.min(tokens.size(), from + FRAGMENT_TOKENS);
+		StringBuilder fragment = new StringBuilder();
+		if (from > 0) {
+			fragment.append('…');
+		}
+		int position = tokens.get(from)[0];
+		for (int t = from; t < to; t++) {
+			int[] token = tokens.get(t);
+			fragment.append(text, position, token[0]);
+			if (token[2] == 1) {
+				fragment.append(SnippetDAO.MATCH_START).append(text, token[0], token[1]).append(SnippetDAO.MATCH_END);
+			} else {
+				fragment.append(text, token[0], token[1]);
+			}
+			position = token[1];
+		}
+		int end = tokens.get(to - 1)[1];
+		if (end < text.length() && (to < tokens.size() || text.substring(end).chars().anyMatch(Character::isLetterOrDigit))) {
+			fragment.append('…');
+		}
+		return fragment.toString();
+	}
+
+	private static boolean matchesAny(String token, String[] terms) {
+		for (String term : terms) {
+			if (token.startsWith(term)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,40 @@
+package com.developer.tool;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link VectorIndex.Scorer} on the JDK Vector API, at the widest lane count the CPU
+ * has. Only loaded when the {@code jdk.incubator.vector} module is present, see
+ * {@link VectorIndex}; nothing else may refer to this class directly.
+ */
+final class SimdScorer implements VectorIndex.Scorer {
+
+	private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+	private static final int DIMENSIONS = SnippetEmbedder.DIMENSIONS;
+
+	SimdScorer() {
+		if (DIMENSIONS % SPECIES.length() != 0) {
+			throw new IllegalStateException(DIMENSIONS + " dimensions don't split into " + SPECIES.length() + " lanes");
+		}
+	}
+
+	@Override
+	public void score(float[] matrix, int rows, float[] query, float[] out) {
+		for (int row = 0; row < rows; row++) {
+			int base = row * DIMENSIONS;
+			FloatVector sum = FloatVector.zero(SPECIES);
+			for (int i = 0; i < DIMENSIONS; i += SPECIES.length()) {
+				sum = FloatVector.fromArray(SPECIES, matrix, base + i)
+						.fma(FloatVector.fromArray(SPECIES, query, i), sum);
+			}
+			out[row] = sum.reduceLanes(VectorOperators.ADD);
+		}
+	}
+
+	@Override
+	public String name() {
+		return "vector-api-" + SPECIES.length() + "x32";
+	}
+}
@@ -0,0 +1,204 @@
+package com.developer.tool;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Content-addressed storage for snippet code. A body is stored once in snippet_blobs,
+ * keyed by its SHA-256, and snippets point at it through snippets.code_hash, so the
+ * same boilerplate pasted a hundred times is stored once. Bodies of at least
+ * SNIPPET_COMPRESS_MIN_BYTES (UTF-8) are deflated when that makes them smaller.
+ *
+ * snippets.code is left empty for rows whose body lives here; rows written before the
+ * blob store existed keep their text there until {@link DatabaseManager} migrates them,
+ * and {@link #code} reads either. A blob is deleted with the last snippet pointing at it.
+ */
+final class SnippetBodies {
+
+	static final int PLAIN = 0;
+	static final int DEFLATE = 1;
+
+	/** Select list that brings each snippet's body along; pair with {@link #JOIN} on snippets aliased s. */
+	static final String COLUMNS = "s.*, b.encoding AS code_encoding, b.size AS code_size, b.body AS code_body";
+	static final String JOIN = "LEFT JOIN snippet_blobs b ON b.hash = s.code_hash";
+
+	/** What list and search results show of the code: the first lines, up to a size cap. */
+	static final int PREVIEW_LINES = 12;
+	static final int PREVIEW_CHARS = 800;
+
+	static final String STORE_SQL = "INSERT OR IGNORE INTO snippet_blobs (hash, encoding, size, body) VALUES (?, ?, ?, ?)";
+
+	private static final int COMPRESS_MIN_BYTES = Integer.parseInt(
+			System.getenv().getOrDefault("SNIPPET_COMPRESS_MIN_BYTES", "512"));
+
+	private SnippetBodies() {
+	}
+
+	/**
+	 * A body ready to store: hashed, and compressed if worth it, with the preview, its
+	 * highlighted HTML and the length that go in the snippet row. Done before taking the
+	 * writer connection, like embeddings.
+	 */
+	record Body(byte[] hash, int encoding, int size, byte[] stored, String preview, String previewHtml, int length) {
+	}
+
+	static Body encode(String code, String language) {
+		String text = code == null ? "" : code;
+		byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+		byte[] hash = sha256(utf8);
+		String preview = preview(text);
+		String previewHtml = SyntaxHighlighter.highlight(preview, language);
+		if (utf8.length >= COMPRESS_MIN_BYTES) {
+			byte[] deflated = deflate(utf8);
+			if (deflated.length < utf8.length) {
+				return new Body(hash, DEFLATE, utf8.length, deflated, preview, previewHtml, text.length());
+			}
+		}
+		return new Body(hash, PLAIN, utf8.length, utf8, preview, previewHtml, text.length());
+	}
+
+	/**
+	 * The first {@link #PREVIEW_LINES} lines of {@code code}, cut back to the last line
+	 * break within {@link #PREVIEW_CHARS} (or at it, for one very long line). The code
+	 * itself if it is that short; compare lengths to tell.
+	 */
+	static String preview(String code) {
+		if (code == null) {
+			return "";
+		}
+		int end = 0;
+		for (int line = 0; line < PREVIEW_LINES && end < code.length(); line++) {
+			int newline = code.indexOf('\n', end);
+			end = newline < 0 ? code.length() : newline + 1;
+		}
+		if (end > PREVIEW_CHARS) {
+			int lastBreak = code.lastIndexOf('\n', PREVIEW_CHARS - 1);
+			end = lastBreak > 0 ? lastBreak + 1 : PREVIEW_CHARS;
+		}
+		return end == code.length() ? code : code.substring(0, end);
+	}
+
+	/**
+	 * The code of the current row of a query selecting {@link #COLUMNS}.
+	 */
+	static String code(ResultSet rs) throws SQLException {
+		byte[] stored = rs.getBytes("code_body");
+		if (stored == null) {
+			return rs.getString("code");
+		}
+		return decode(rs.getInt("code_encoding"), rs.getInt("code_size"), stored);
+	}
+
+	static String decode(int encoding, int size, byte[] stored) {
+		if (encoding == PLAIN) {
+			return new String(stored, StandardCharsets.UTF_8);
+		}
+		if (encoding != DEFLATE) {
+			throw new IllegalStateException("Unknown snippet body encoding " + encoding);
+		}
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(stored);
+			byte[] utf8 = new byte[size];
+			int length = 0;
+			while (length < size && !inflater.finished()) {
+				int read = inflater.inflate(utf8, length, size - length);
+				if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				length += read;
+			}
+			if (length != size) {
+				throw new IllegalStateException("Snippet body is truncated");
+			}
+			return new String(utf8, StandardCharsets.UTF_8);
+		} catch (DataFormatException e) {
+			throw new IllegalStateException("Snippet body is corrupt", e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/** Adds {@code body} to a batch of {@link #STORE_SQL}. */
+	static void addToBatch(PreparedStatement store, Body body) throws SQLException {
+		store.setBytes(1, body.hash());
+		store.setInt(2, body.encoding());
+		store.setInt(3, body.size());
+		store.setBytes(4, body.stored());
+		store.addBatch();
+	}
+
+	/** Stores {@code body} unless an identical one is already there. */
+	static void store(Connection conn, Body body) throws SQLException {
+		try (PreparedStatement pstmt = conn.prepareStatement(STORE_SQL)) {
+			pstmt.setBytes(1, body.hash());
+			pstmt.setInt(2, body.encoding());
+			pstmt.setInt(3, body.size());
+			pstmt.setBytes(4, body.stored());
+			pstmt.executeUpdate();
+		}
+	}
+
+	/** Hash of the body {@code id} points at, or null. */
+	static byte[] hashOf(Connection conn, String id, String userId) throws SQLException {
+		try (PreparedStatement pstmt = conn.prepareStatement("SELECT code_hash FROM snippets WHERE id = ? AND user_id = ?")) {
+			pstmt.setString(1, id);
+			pstmt.setString(2, userId);
+			try (ResultSet rs = pstmt.executeQuery()) {
+				return rs.next() ? rs.getBytes(1) : null;
+			}
+		}
+	}
+
+	/**
+	 * Deletes the blob {@code hash} if no snippet points at it any more. Call after the
+	 * snippet that pointed at it was changed or deleted, in the same transaction.
+	 */
+	static void release(Connection conn, byte[] hash, byte[] keptHash) throws SQLException {
+		if (hash == null || Arrays.equals(hash, keptHash)) {
+			return;
+		}
+		String sql = "DELETE FROM snippet_blobs WHERE hash = ?1 AND NOT EXISTS (SELECT 1 FROM snippets WHERE code_hash = ?1)";
+		try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+			pstmt.setBytes(1, hash);
+			pstmt.executeUpdate();
+		}
+	}
+
+	private static byte[] sha256(byte[] bytes) {
+		try {
+			return MessageDigest.getInstance("SHA-256").digest(bytes);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	private static byte[] deflate(byte[] bytes) {
+		Deflater deflater = new Deflater();
+		try {
+			deflater.setInput(bytes);
+			deflater.finish();
+			byte[] out = new byte[bytes.length + 64];
+			int length = 0;
+			while (!deflater.finished()) {
+				if (length == out.length) {
+					// Incompressible; the caller keeps the plain bytes anyway
+					return bytes;
+				}
+				length += deflater.deflate(out, length, out.length - length);
+			}
+			return Arrays.copyOf(out, length);
+		} finally {
+			deflater.end();
+		}
+	}
+}
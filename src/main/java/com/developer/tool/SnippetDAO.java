@@ -1,37 +1,169 @@
 package com.developer.tool;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class SnippetDAO {
+/**
+ * {@link SnippetStore} on SQLite: bodies in the blob store (see {@link SnippetBodies}),
+ * keyword search through FTS5, and fuzzy and semantic search over in-memory indexes
+ * built from the database on a user's first such search.
+ */
+public class SnippetDAO implements SnippetStore {
 
+	/** Markers around matched terms in {@link Snippet#getMatchFragment()}; callers swap them for markup after escaping. */
+	public static final char MATCH_START = '\u0002';
+	public static final char MATCH_END = '\u0003';
+
+	/** Same layout as SQLite's CURRENT_TIMESTAMP, so stored values compare correctly as text. */
+	public static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+	/** The list order: newest first, ties broken by id. Keyset cursors walk this order. */
+	public static final Comparator<Snippet> NEWEST_FIRST = Comparator
+			.comparing(Snippet::getCreatedAt, Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder()))
+			.thenComparing(Snippet::getId)
+			.reversed();
+
+	private static final Metrics.Query CREATE = Metrics.query("snippet", "create");
+	private static final Metrics.Query FIND_BY_USER = Metrics.query("snippet", "findByUserId");
+	private static final Metrics.Query FIND_SUMMARIES_BY_USER = Metrics.query("snippet", "findSummariesByUserId");
+	private static final Metrics.Query LIST_PAGE = Metrics.query("snippet", "forEachInPage");
+	private static final Metrics.Query COUNT_BY_USER = Metrics.query("snippet", "countByUserId");
+	private static final Metrics.Query FIND_ALL = Metrics.query("snippet", "findAll");
+	private static final Metrics.Query FIND_BY_ID = Metrics.query("snippet", "findById");
+	private static final Metrics.Query UPDATE = Metrics.query("snippet", "update");
+	private static final Metrics.Query DELETE = Metrics.query("snippet", "delete");
+	private static final Metrics.Query TAG_PAGE = Metrics.query("snippet", "forEachByTags");
+	private static final Metrics.Query SEARCH_PAGE = Metrics.query("snippet", "forEachSearchResult");
+	private static final Metrics.Query EXPORT = Metrics.query("snippet", "forEachByUserId");
+	private static final Metrics.Query IMPORT_BATCH = Metrics.query("snippet", "importBatch");
+	private static final Metrics.Query SEARCH_MATCHES = Metrics.query("snippet", "findSearchMatches");
+	private static final Metrics.Query FUZZY_PAGE = Metrics.query("snippet", "forEachFuzzyResult");
+	private static final Metrics.Query BUILD_TRIGRAMS = Metrics.query("snippet", "buildTrigramIndex");
+	private static final Metrics.Query SEMANTIC_PAGE = Metrics.query("snippet", "forEachSemanticResult");
+	private static final Metrics.Query LOAD_VECTORS = Metrics.query("snippet", "loadVectorIndex");
+
+	/** First cursor part of a page of fuzzy results; FTS cursors start with a bm25 score. */
+	private static final String FUZZY_CURSOR = "fuzzy";
+	private static final String SEMANTIC_CURSOR = "semantic";
+
+	/** Snippets (aliased s) with their bodies from the blob store, see {@link SnippetBodies}. */
+	private static final String SELECT_SNIPPETS = "SELECT " + SnippetBodies.COLUMNS + " FROM snippets s " + SnippetBodies.JOIN;
+	/** What lists and search results need: no code, just its preview, see {@link #mapSummary}. */
+	private static final String SUMMARY_COLUMNS =
+			"s.id, s.user_id, s.language, s.description, s.tags, s.created_at, s.code_preview, s.code_preview_html, s.code_length";
+	private static final String SELECT_SUMMARIES = "SELECT " + SUMMARY_COLUMNS + " FROM snippets s";
+
+	static final String EMBEDDING_SQL =
+			"INSERT OR REPLACE INTO snippet_embeddings (snippet_id, user_id, version, embedding) VALUES (?, ?, ?, ?)";
+
+	// Built on a user's first fuzzy or semantic search, then kept current by the writes below
+	private final WeightedLruCache<String, TrigramIndex> trigramIndexes;
+	private final WeightedLruCache<String, VectorIndex> vectorIndexes;
+
+	public SnippetDAO() {
+		this(64L * 1024 * 1024, 96L * 1024 * 1024);
+	}
+
+	/**
+	 * @param maxTrigramIndexBytes memory for the fuzzy-search indexes of recently searched libraries
+	 * @param maxVectorIndexBytes  memory for the semantic-search vectors of recently searched libraries
+	 */
+	public SnippetDAO(long maxTrigramIndexBytes, long maxVectorIndexBytes) {
+		this.trigramIndexes = new WeightedLruCache<>("trigram-indexes", maxTrigramIndexBytes, TrigramIndex::bytes);
+		this.vectorIndexes = new WeightedLruCache<>("vector-indexes", maxVectorIndexBytes, VectorIndex::bytes);
+	}
+
+	// Per-user count of writes since startup; users who haven't written yet are at 0
+	private final ConcurrentHashMap<String, AtomicLong> libraryVersions = new ConcurrentHashMap<>();
+
+	/**
+	 * Number of writes to {@code userId}'s library since startup. Anything rendered from
+	 * the library can be tagged with it: the value only moves once a write has committed,
+	 * so equal versions mean nothing has changed in between. Never touches SQLite.
+	 */
+	@Override
+	public long libraryVersion(String userId) {
+		AtomicLong version = libraryVersions.get(userId);
+		return version != null ? version.get() : 0;
+	}
+
+	/**
+	 * Called after every write, committed or not; a needless bump only costs a re-render.
+	 * Subclasses that keep their own copy of the library call it again once that's updated.
+	 */
+	protected void libraryChanged(String userId) {
+		libraryVersions.computeIfAbsent(userId, id -> new AtomicLong()).incrementAndGet();
+	}
+
+	@Override
 	public void create(Snippet snippet, String userId) {
-		String sql = "INSERT INTO snippets (id, user_id, code, language, description, tags) VALUES (?, ?, ?, ?, ?, ?)";
+		String sql = "INSERT INTO snippets (id, user_id, code, code_hash, code_preview, code_preview_html, code_length, language, description, tags, created_at) VALUES (?, ?, '', ?, ?, ?, ?, ?, ?, ?, ?)";
+		snippet.setUserId(userId);
+		if (snippet.getCreatedAt() == null) {
+			snippet.setCreatedAt(LocalDateTime.now(ZoneOffset.UTC).withNano(0));
+		}
 
-		try (Connection conn = DatabaseManager.getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+		// Embedded and hashed before taking the writer, which other requests are waiting on
+		float[] embedding = SnippetEmbedder.embed(snippet);
+		SnippetBodies.Body body = SnippetBodies.encode(snippet.getCode(), snippet.getLanguage());
+		withPreview(snippet, body);
 
-			pstmt.setString(1, snippet.getId());
-			pstmt.setString(2, userId);
-			pstmt.setString(3, snippet.getCode());
-			pstmt.setString(4, snippet.getLanguage());
-			pstmt.setString(5, snippet.getDescription());
-			pstmt.setString(6, String.join(",", snippet.getTags()));
+		long started = System.nanoTime();
+		try {
+			DatabaseManager.inGroupTransaction(conn -> {
+				SnippetBodies.store(conn, body);
+				try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+					pstmt.setString(1, snippet.getId());
+					pstmt.setString(2, userId);
+					pstmt.setBytes(3, body.hash());
+					pstmt.setString(4, body.preview());
+					pstmt.setString(5, body.previewHtml());
+					pstmt.setInt(6, body.length());
+					pstmt.setString(7, snippet.getLanguage());
+					pstmt.setString(8, snippet.getDescription());
+					pstmt.setString(9, String.join(",", snippet.getTags()));
+					pstmt.setString(10, TIMESTAMP_FORMAT.format(snippet.getCreatedAt()));
 
-			pstmt.executeUpdate();
+					pstmt.executeUpdate();
+				}
+				indexSnippet(conn, snippet, userId, embedding);
+				return null;
+			});
+			indexed(userId, snippet, embedding);
 		} catch (SQLException e) {
 			throw new RuntimeException("Failed to create snippet", e);
+		} finally {
+			CREATE.record(started, 1);
+			libraryChanged(userId);
 		}
 	}
 
 	public List<Snippet> findByUserId(String userId) {
 		List<Snippet> snippets = new ArrayList<>();
-		String sql = "SELECT * FROM snippets WHERE user_id = ? ORDER BY created_at DESC";
+		String sql = SELECT_SNIPPETS + " WHERE user_id = ? ORDER BY created_at DESC, id DESC";
 
+		long started = System.nanoTime();
 		try (Connection conn = DatabaseManager.getConnection(); 
 				PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
@@ -43,15 +175,280 @@ public class SnippetDAO {
 			}
 		} catch (SQLException e) {
 			throw new RuntimeException("Failed to fetch snippets", e);
+		} finally {
+			FIND_BY_USER.record(started, snippets.size());
 		}
 
 		return snippets;
 	}
 
+	/**
+	 * The whole library like {@link #findByUserId}, but as {@link #mapSummary summaries}.
+	 */
+	public List<Snippet> findSummariesByUserId(String userId) {
+		List<Snippet> snippets = new ArrayList<>();
+		String sql = SELECT_SUMMARIES + " WHERE user_id = ? ORDER BY created_at DESC, id DESC";
+
+		long started = System.nanoTime();
+		try (Connection conn = DatabaseManager.getConnection();
+				PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+			pstmt.setString(1, userId);
+			ResultSet rs = pstmt.executeQuery();
+
+			while (rs.next()) {
+				snippets.add(mapSummary(rs));
+			}
+		} catch (SQLException e) {
+			throw new RuntimeException("Failed to fetch snippets", e);
+		} finally {
+			FIND_SUMMARIES_BY_USER.record(started, snippets.size());
+		}
+
+		return snippets;
+	}
+
+	/**
+	 * Keyset page over (created_at, id); each row is handed to {@code consumer} as soon as it is read.
+	 */
+	@Override
+	public String forEachInPage(String userId, String cursor, int limit, SnippetConsumer consumer) throws IOException {
+		Snippet after = cursor == null ? null : decodeListCursor(cursor);
+		String sql = after == null
+				? SELECT_SUMMARIES + " WHERE user_id = ? ORDER BY created_at DESC, id DESC LIMIT ?"
+				: SELECT_SUMMARIES + " WHERE user_id = ? AND (created_at, id) < (?, ?) ORDER BY created_at DESC, id DESC LIMIT ?";
+
+		long started = System.nanoTime();
+		long consumerNanos = 0;
+		int count = 0;
+		try (Connection conn = DatabaseManager.getConnection();
+				PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+			int i = 1;
+			pstmt.setString(i++, userId);
+			if (after != null) {
+				pstmt.setString(i++, TIMESTAMP_FORMAT.format(after.getCreatedAt()));
+				pstmt.setString(i++, after.getId());
+			}
+			// One extra row tells us whether another page exists
+			pstmt.setInt(i, limit + 1);
+			ResultSet rs = pstmt.executeQuery();
+
+			Snippet last = null;
+			while (rs.next()) {
+				if (count == limit) {
+					return listCursor(last);
+				}
+				last = mapSummary(rs);
+				long accepting = System.nanoTime();
+				consumer.accept(last);
+				consumerNanos += System.nanoTime() - accepting;
+				count++;
+			}
+			return null;
+		} catch (SQLException e) {
+			throw new RuntimeException("Failed to fetch snippets", e);
+		} finally {
+			LIST_PAGE.record(started, consumerNanos, count);
+		}
+	}
+
+	/**
+	 * Streams a user's whole library in list order over a single forward-only cursor,
+	 * so memory stays flat however large the library is. Returns the number of rows.
+	 * The reader connection is held until the last row has been consumed.
+	 */
+	@Override
+	public int forEachByUserId(String userId, SnippetConsumer consumer) throws IOException {
+		String sql = SELECT_SNIPPETS + " WHERE user_id = ? ORDER BY created_at DESC, id DESC";
+
+		long started = System.nanoTime();
+		long consumerNanos = 0;
+		int count = 0;
+		try (Connection conn = DatabaseManager.getConnection();
+				PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+			pstmt.setString(1, userId);
+			ResultSet rs = pstmt.executeQuery();
+
+			while (rs.next()) {
+				Snippet snippet = mapResultSetToSnippet(rs);
+				long accepting = System.nanoTime();
+				consumer.accept(snippet);
+				consumerNanos += System.nanoTime() - accepting;
+				count++;
+			}
+			return count;
+		} catch (SQLException e) {
+			throw new RuntimeException("Failed to export snippets", e);
+		} finally {
+			EXPORT.record(started, consumerNanos, count);
+		}
+	}
+
+	/**
+	 * Inserts {@code snippets} for {@code userId} in one transaction, with the search index
+	 * and tag rows written as JDBC batches alongside. Ids are kept where possible, so
+	 * re-importing an export is idempotent: a snippet whose id this user already has is
+	 * skipped, and one whose id belongs to someone else, or isn't a UUID, gets a fresh id.
+	 * Returns the number of snippets inserted. Embeddings are computed before the
+	 * transaction starts.
+	 */
+	@Override
+	public int importBatch(String userId, List<Snippet> snippets) {
+		String insertSql = "INSERT INTO snippets (id, user_id, code, code_hash, code_preview, code_preview_html, code_length, language, description, tags, created_at) VALUES (?, ?, '', ?, ?, ?, ?, ?, ?, ?, ?)";
+		String indexSql = """
+				INSERT INTO snippets_fts (rowid, owner, code, description, language, tags)
+				SELECT rowid, ?, ?, description, language, tags FROM snippets WHERE id = ?
+				""";
+		String tagSql = "INSERT OR IGNORE INTO snippet_tags (snippet_id, user_id, tag) VALUES (?, ?, ?)";
+		LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC).withNano(0);
+		List<byte[]> embeddings = new ArrayList<>(snippets.size());
+		List<SnippetBodies.Body> bodies = new ArrayList<>(snippets.size());
+		for (Snippet snippet : snippets) {
+			embeddings.add(SnippetEmbedder.toBytes(SnippetEmbedder.embed(snippet)));
+			bodies.add(SnippetBodies.encode(snippet.getCode(), snippet.getLanguage()));
+		}
+
+		long started = System.nanoTime();
+		int inserted = 0;
+		try {
+			inserted = DatabaseManager.inTransaction(conn -> {
+				Set<String> batchIds = new HashSet<>();
+				int count = 0;
+				try (PreparedStatement owner = conn.prepareStatement("SELECT user_id FROM snippets WHERE id = ?");
+						PreparedStatement blobs = conn.prepareStatement(SnippetBodies.STORE_SQL);
+						PreparedStatement insert = conn.prepareStatement(insertSql);
+						PreparedStatement index = conn.prepareStatement(indexSql);
+						PreparedStatement tags = conn.prepareStatement(tagSql);
+						PreparedStatement vectors = conn.prepareStatement(EMBEDDING_SQL)) {
+
+					for (int i = 0; i < snippets.size(); i++) {
+						Snippet snippet = snippets.get(i);
+						String id = importedId(snippet.getId());
+						if (id != null) {
+							owner.setString(1, id);
+							try (ResultSet rs = owner.executeQuery()) {
+								if (rs.next()) {
+									if (userId.equals(rs.getString(1))) {
+										continue;
+									}
+									id = null;
+								}
+							}
+						}
+						if (id == null || !batchIds.add(id)) {
+							id = UUID.randomUUID().toString();
+							batchIds.add(id);
+						}
+						snippet.setId(id);
+						snippet.setUserId(userId);
+						if (snippet.getCreatedAt() == null) {
+							snippet.setCreatedAt(now);
+						}
+						if (snippet.getTags() == null) {
+							snippet.setTags(new ArrayList<>());
+						}
+
+						SnippetBodies.addToBatch(blobs, bodies.get(i));
+						insert.setString(1, id);
+						insert.setString(2, userId);
+						insert.setBytes(3, bodies.get(i).hash());
+						insert.setString(4, bodies.get(i).preview());
+						insert.setString(5, bodies.get(i).previewHtml());
+						insert.setInt(6, bodies.get(i).length());
+						insert.setString(7, snippet.getLanguage());
+						insert.setString(8, snippet.getDescription());
+						insert.setString(9, String.join(",", snippet.getTags()));
+						insert.setString(10, TIMESTAMP_FORMAT.format(snippet.getCreatedAt()));
+						insert.addBatch();
+
+						index.setString(1, searchOwner(userId));
+						index.setString(2, snippet.getCode());
+						index.setString(3, id);
+						index.addBatch();
+
+						for (String tag : snippet.getTags()) {
+							String normalized = normalizeTag(tag);
+							if (!normalized.isEmpty()) {
+								tags.setString(1, id);
+								tags.setString(2, userId);
+								tags.setString(3, normalized);
+								tags.addBatch();
+							}
+						}
+
+						vectors.setString(1, id);
+						vectors.setString(2, userId);
+						vectors.setInt(3, SnippetEmbedder.VERSION);
+						vectors.setBytes(4, embeddings.get(i));
+						vectors.addBatch();
+						count++;
+					}
+					// Rows first: the index batch copies from them
+					blobs.executeBatch();
+					insert.executeBatch();
+					index.executeBatch();
+					tags.executeBatch();
+					vectors.executeBatch();
+				}
+				return count;
+			});
+			// Rebuilt on the next fuzzy or semantic search rather than fed thousands of rows here
+			trigramIndexes.invalidate(userId);
+			vectorIndexes.invalidate(userId);
+			return inserted;
+		} catch (SQLException e) {
+			throw new RuntimeException("Failed to import snippets", e);
+		} finally {
+			IMPORT_BATCH.record(started, inserted);
+			libraryChanged(userId);
+		}
+	}
+
+	static String listCursor(Snippet last) {
+		return encodeCursor(TIMESTAMP_FORMAT.format(last.getCreatedAt()), last.getId());
+	}
+
+	/**
+	 * The (created_at, id) position a {@link #listCursor} points after, as a snippet to
+	 * compare with {@link #NEWEST_FIRST}. Anything else is an IllegalArgumentException.
+	 */
+	static Snippet decodeListCursor(String cursor) {
+		String[] after = decodeCursor(cursor, 2);
+		Snippet position = new Snippet();
+		try {
+			position.setCreatedAt(LocalDateTime.parse(after[0], TIMESTAMP_FORMAT));
+		} catch (DateTimeParseException e) {
+			throw new IllegalArgumentException("Invalid cursor", e);
+		}
+		position.setId(after[1]);
+		return position;
+	}
+
+	@Override
+	public int countByUserId(String userId) {
+		String sql = "SELECT count(*) FROM snippets WHERE user_id = ?";
+
+		long started = System.nanoTime();
+		try (Connection conn = DatabaseManager.getConnection();
+				PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+			pstmt.setString(1, userId);
+			ResultSet rs = pstmt.executeQuery();
+			return rs.next() ? rs.getInt(1) : 0;
+		} catch (SQLException e) {
+			throw new RuntimeException("Failed to count snippets", e);
+		} finally {
+			COUNT_BY_USER.record(started, 1);
+		}
+	}
+
 	public List<Snippet> findAll() {
 		List<Snippet> snippets = new ArrayList<>();
-		String sql = "SELECT * FROM snippets ORDER BY created_at DESC";
+		String sql = SELECT_SNIPPETS + " ORDER BY created_at DESC, id DESC";
 
+		long started = System.nanoTime();
 		try (Connection conn = DatabaseManager.getConnection();
 				PreparedStatement stmt = conn.prepareStatement(sql);
 				ResultSet rs = stmt.executeQuery()) {
@@ -61,93 +458,706 @@ public class SnippetDAO {
 			}
 		} catch (SQLException e) {
 			throw new RuntimeException("Failed to fetch snippets", e);
+		} finally {
+			FIND_ALL.record(started, snippets.size());
 		}
 
 		return snippets;
 	}
 
+	@Override
 	public Snippet findById(String id) {
-		String sql = "SELECT * FROM snippets WHERE id = ?";
+		String sql = SELECT_SNIPPETS + " WHERE id = ?";
 
+		long started = System.nanoTime();
+		int rows = 0;
 		try (Connection conn = DatabaseManager.getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
 			pstmt.setString(1, id);
 			ResultSet rs = pstmt.executeQuery();
 
 			if (rs.next()) {
+				rows = 1;
 				return mapResultSetToSnippet(rs);
 			}
 			return null;
 		} catch (SQLException e) {
 			throw new RuntimeException("Failed to find snippet", e);
+		} finally {
+			FIND_BY_ID.record(started, rows);
 		}
 	}
 
+	@Override
 	public void update(Snippet snippet, String userId) {
-		String sql = "UPDATE snippets SET code = ?, language = ?, description = ?, tags = ? WHERE id = ? and user_id = ? ";
+		String sql = "UPDATE snippets SET code = '', code_hash = ?, code_preview = ?, code_preview_html = ?, code_length = ?, language = ?, description = ?, tags = ? WHERE id = ? and user_id = ? ";
 
-		try (Connection conn = DatabaseManager.getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+		float[] embedding = SnippetEmbedder.embed(snippet);
+		SnippetBodies.Body body = SnippetBodies.encode(snippet.getCode(), snippet.getLanguage());
+		withPreview(snippet, body);
 
-			pstmt.setString(1, snippet.getCode());
-			pstmt.setString(2, snippet.getLanguage());
-			pstmt.setString(3, snippet.getDescription());
-			pstmt.setString(4, String.join(",", snippet.getTags()));
-			pstmt.setString(5, snippet.getId());
-			pstmt.setString(6, userId);
+		long started = System.nanoTime();
+		int rows = 0;
+		try {
+			rows = DatabaseManager.inGroupTransaction(conn -> {
+				byte[] previous = SnippetBodies.hashOf(conn, snippet.getId(), userId);
+				unindexSnippet(conn, snippet.getId(), userId);
+				SnippetBodies.store(conn, body);
+				try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+					pstmt.setBytes(1, body.hash());
+					pstmt.setString(2, body.preview());
+					pstmt.setString(3, body.previewHtml());
+					pstmt.setInt(4, body.length());
+					pstmt.setString(5, snippet.getLanguage());
+					pstmt.setString(6, snippet.getDescription());
+					pstmt.setString(7, String.join(",", snippet.getTags()));
+					pstmt.setString(8, snippet.getId());
+					pstmt.setString(9, userId);
 
-			pstmt.executeUpdate();
+					int updated = pstmt.executeUpdate();
+					if (updated > 0) {
+						indexSnippet(conn, snippet, userId, embedding);
+						SnippetBodies.release(conn, previous, body.hash());
+					} else {
+						SnippetBodies.release(conn, body.hash(), null);
+					}
+					return updated;
+				}
+			});
+			if (rows > 0) {
+				indexed(userId, snippet, embedding);
+			}
 		} catch (SQLException e) {
 			throw new RuntimeException("Failed to update snippet", e);
+		} finally {
+			UPDATE.record(started, rows);
+			libraryChanged(userId);
 		}
 	}
 
+	@Override
 	public void delete(String id, String userId) {
 		String sql = "DELETE FROM snippets WHERE id = ? and user_id = ?";
 
-		try (Connection conn = DatabaseManager.getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
-
-			pstmt.setString(1, id);
-			pstmt.setString(2, userId);
-			pstmt.executeUpdate();
+		long started = System.nanoTime();
+		int rows = 0;
+		try {
+			rows = DatabaseManager.inGroupTransaction(conn -> {
+				byte[] previous = SnippetBodies.hashOf(conn, id, userId);
+				unindexSnippet(conn, id, userId);
+				try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+					pstmt.setString(1, id);
+					pstmt.setString(2, userId);
+					int deleted = pstmt.executeUpdate();
+					SnippetBodies.release(conn, previous, null);
+					return deleted;
+				}
+			});
+			if (rows > 0) {
+				trigramIndexes.update(userId, index -> {
+					index.remove(id);
+					return index;
+				});
+				vectorIndexes.update(userId, index -> {
+					index.remove(id);
+					return index;
+				});
+			}
 		} catch (SQLException e) {
 			throw new RuntimeException("Failed to delete snippet", e);
+		} finally {
+			DELETE.record(started, rows);
+			libraryChanged(userId);
 		}
 	}
 
-	public List<Snippet> search(String query, String userId) {
-		List<Snippet> snippets = new ArrayList<>();
+	/**
+	 * Resolved through the (user_id, tag) index, in list order.
+	 */
+	@Override
+	public String forEachByTags(String userId, List<String> tags, boolean matchAll, String cursor, int limit,
+			SnippetConsumer consumer) throws IOException {
+		List<String> normalized = tags.stream().map(SnippetDAO::normalizeTag).filter(t -> !t.isEmpty()).distinct().toList();
+		if (normalized.isEmpty()) {
+			return null;
+		}
+		Snippet after = cursor == null ? null : decodeListCursor(cursor);
+
+		String placeholders = String.join(", ", Collections.nCopies(normalized.size(), "?"));
 		String sql = """
-				    SELECT * FROM snippets
-				    WHERE (code LIKE ? OR description LIKE ? OR language LIKE ? OR tags LIKE ?) and user_id = ?
-				    ORDER BY created_at DESC
-				""";
+				%s
+				WHERE s.id IN (
+				    SELECT snippet_id FROM snippet_tags
+				    WHERE user_id = ? AND tag IN (%s)
+				    GROUP BY snippet_id
+				    HAVING count(*) >= ?
+				)
+				AND s.user_id = ? %s
+				ORDER BY s.created_at DESC, s.id DESC
+				LIMIT ?
+				""".formatted(SELECT_SUMMARIES, placeholders, after == null ? "" : "AND (s.created_at, s.id) < (?, ?)");
 
+		long started = System.nanoTime();
+		long consumerNanos = 0;
+		int count = 0;
+		try (Connection conn = DatabaseManager.getConnection();
+				PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+			int i = 1;
+			pstmt.setString(i++, userId);
+			for (String tag : normalized) {
+				pstmt.setString(i++, tag);
+			}
+			pstmt.setInt(i++, matchAll ? normalized.size() : 1);
+			pstmt.setString(i++, userId);
+			if (after != null) {
+				pstmt.setString(i++, TIMESTAMP_FORMAT.format(after.getCreatedAt()));
+				pstmt.setString(i++, after.getId());
+			}
+			pstmt.setInt(i, limit + 1);
+			ResultSet rs = pstmt.executeQuery();
+
+			Snippet last = null;
+			while (rs.next()) {
+				if (count == limit) {
+					return listCursor(last);
+				}
+				last = mapSummary(rs);
+				long accepting = System.nanoTime();
+				consumer.accept(last);
+				consumerNanos += System.nanoTime() - accepting;
+				count++;
+			}
+			return null;
+		} catch (SQLException e) {
+			throw new RuntimeException("Failed to filter snippets by tag", e);
+		} finally {
+			TAG_PAGE.record(started, consumerNanos, count);
+		}
+	}
+
+	/**
+	 * Full-text search through FTS5, ranked by bm25. Each result carries a short fragment
+	 * of the best-matching column in {@link Snippet#getMatchFragment()}, with hits wrapped
+	 * in {@link #MATCH_START}/{@link #MATCH_END}. The cursor is keyed on (bm25 score, rowid),
+	 * and only the rows on the page are joined back for their fragments.
+	 */
+	@Override
+	public String forEachSearchResult(String query, String userId, String cursor, int limit, SnippetConsumer consumer)
+			throws IOException {
+		String matchExpression = toMatchExpression(query);
+		if (matchExpression == null) {
+			return null;
+		}
+		String[] after = cursor == null ? null : decodeCursor(cursor, 2);
+		if (after != null && FUZZY_CURSOR.equals(after[0])) {
+			int offset;
+			try {
+				offset = Integer.parseInt(after[1]);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid cursor", e);
+			}
+			if (offset < 0) {
+				throw new IllegalArgumentException("Invalid cursor");
+			}
+			return forEachFuzzyResult(query, userId, offset, limit, consumer);
+		}
+
+		// bm25 weights follow the FTS column order: owner, code, description, language, tags.
+		// The LIMIT inside the subquery keeps SQLite from flattening it, so snippet() only runs for this page.
+		// The page is matched within the user's rows (?1); fragments come from the query's terms alone (?6),
+		// so snippet() never picks the owner column. The join checks the owner on the snippet row as well.
+		String sql = """
+				    SELECT %s, page.score, page.doc_id,
+				           snippet(snippets_fts, -1, char(2), char(3), '…', 12) AS match_fragment
+				    FROM (
+				        SELECT doc_id, score FROM (
+				            SELECT rowid AS doc_id, bm25(snippets_fts, 0.0, 1.0, 4.0, 2.0, 3.0) AS score
+				            FROM snippets_fts
+				            WHERE snippets_fts MATCH ?1
+				        )
+				        WHERE score > ?3 OR (score = ?3 AND doc_id > ?4)
+				        ORDER BY score, doc_id
+				        LIMIT ?5
+				    ) page
+				    JOIN snippets_fts ON snippets_fts.rowid = page.doc_id AND snippets_fts MATCH ?6
+				    JOIN snippets s ON s.rowid = page.doc_id AND s.user_id = ?2
+				    ORDER BY page.score, page.doc_id
+				""".formatted(SUMMARY_COLUMNS);
+
+		double lastScore = -Double.MAX_VALUE;
+		long lastDocId = Long.MIN_VALUE;
+		long started = System.nanoTime();
+		long consumerNanos = 0;
+		int count = 0;
 		try (Connection conn = DatabaseManager.getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-			String searchPattern = "%" + query + "%";
-			pstmt.setString(1, searchPattern);
-			pstmt.setString(2, searchPattern);
-			pstmt.setString(3, searchPattern);
-			pstmt.setString(4, searchPattern);
-			pstmt.setString(5, userId);
+			pstmt.setString(1, ownedMatchExpression(userId, matchExpression));
+			pstmt.setString(2, userId);
+			pstmt.setDouble(3, after == null ? -Double.MAX_VALUE : Double.parseDouble(after[0]));
+			pstmt.setLong(4, after == null ? Long.MIN_VALUE : Long.parseLong(after[1]));
+			pstmt.setInt(5, limit + 1);
+			pstmt.setString(6, matchExpression);
 
 			ResultSet rs = pstmt.executeQuery();
 			while (rs.next()) {
-				snippets.add(mapResultSetToSnippet(rs));
+				if (count == limit) {
+					// The extra row only proves there is another page
+					return encodeCursor(Double.toString(lastScore), Long.toString(lastDocId));
+				}
+				Snippet snippet = mapSummary(rs);
+				snippet.setMatchFragment(rs.getString("match_fragment"));
+				long accepting = System.nanoTime();
+				consumer.accept(snippet);
+				consumerNanos += System.nanoTime() - accepting;
+				count++;
+				lastScore = rs.getDouble("score");
+				lastDocId = rs.getLong("doc_id");
 			}
 		} catch (SQLException e) {
 			throw new RuntimeException("Failed to search snippets", e);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid cursor", e);
+		} finally {
+			SEARCH_PAGE.record(started, consumerNanos, count);
+		}
+
+		// Nothing even starts with the query's words, so it may be misspelt
+		return cursor == null && count == 0 ? forEachFuzzyResult(query, userId, 0, limit, consumer) : null;
+	}
+
+	/**
+	 * Every full-text match for {@code query}, best first, without match fragments: the
+	 * whole match set of a narrow query, for {@link SearchSessions} to keep and filter as
+	 * the query is typed further. Null if more than {@code max} match, found by counting
+	 * unranked matches first so broad queries don't pay for a bm25 sort twice.
+	 * {@code checkpoint} runs before each row so the caller can abandon the read by throwing.
+	 */
+	@Override
+	public List<Snippet> findSearchMatches(String query, String userId, int max, Runnable checkpoint) {
+		String matchExpression = toMatchExpression(query);
+		List<Snippet> snippets = new ArrayList<>();
+		if (matchExpression == null) {
+			return snippets;
 		}
+		String countSql = """
+				    SELECT count(*) FROM (
+				        SELECT rowid FROM snippets_fts WHERE snippets_fts MATCH ? LIMIT ?
+				    )
+				""";
+		String sql = """
+				    SELECT %s
+				    FROM (
+				        SELECT rowid AS doc_id, bm25(snippets_fts, 0.0, 1.0, 4.0, 2.0, 3.0) AS score
+				        FROM snippets_fts
+				        WHERE snippets_fts MATCH ?1
+				    ) page
+				    JOIN snippets s ON s.rowid = page.doc_id AND s.user_id = ?2
+				    %s
+				    ORDER BY page.score, page.doc_id
+				""".formatted(SnippetBodies.COLUMNS, SnippetBodies.JOIN);
 
+		long started = System.nanoTime();
+		try (Connection conn = DatabaseManager.getConnection()) {
+			try (PreparedStatement pstmt = conn.prepareStatement(countSql)) {
+				pstmt.setString(1, ownedMatchExpression(userId, matchExpression));
+				pstmt.setInt(2, max + 1);
+				try (ResultSet rs = pstmt.executeQuery()) {
+					if (rs.next() && rs.getInt(1) > max) {
+						return null;
+					}
+				}
+			}
+			try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+				pstmt.setString(1, ownedMatchExpression(userId, matchExpression));
+				pstmt.setString(2, userId);
+				ResultSet rs = pstmt.executeQuery();
+				while (rs.next()) {
+					checkpoint.run();
+					snippets.add(mapResultSetToSnippet(rs));
+				}
+			}
+		} catch (SQLException e) {
+			throw new RuntimeException("Failed to search snippets", e);
+		} finally {
+			SEARCH_MATCHES.record(started, snippets.size());
+		}
 		return snippets;
 	}
 
+	/**
+	 * Page of snippets whose words are most like the query's, by trigram similarity, for
+	 * when full-text search finds nothing. Candidates are ranked in memory and then read
+	 * back from SQLite, which also drops any that were deleted or changed hands since
+	 * they were indexed. The cursor is an offset into the ranking, which a write between
+	 * pages can shift by a row or two.
+	 */
+	@Override
+	public String forEachFuzzyResult(String query, String userId, int offset, int limit, SnippetConsumer consumer)
+			throws IOException {
+		List<String> ranked = trigramIndex(userId).search(query, offset, limit + 1);
+		long started = System.nanoTime();
+		long[] consumerNanos = {0};
+		int count = 0;
+		try {
+			count = forEachById(userId, ranked.subList(0, Math.min(limit, ranked.size())), consumerNanos, consumer);
+		} finally {
+			FUZZY_PAGE.record(started, consumerNanos[0], count);
+		}
+		return ranked.size() > limit ? encodeCursor(FUZZY_CURSOR, Integer.toString(offset + limit)) : null;
+	}
+
+	/**
+	 * Page of the snippets nearest to {@code query} in embedding space (see
+	 * {@link SnippetEmbedder}), so a search can find snippets that share no exact word
+	 * with it. Ranked in memory over the user's {@link VectorIndex}, then read back from
+	 * SQLite like fuzzy results; the cursor is likewise an offset into the ranking.
+	 */
+	@Override
+	public String forEachSemanticResult(String query, String userId, String cursor, int limit, SnippetConsumer consumer)
+			throws IOException {
+		float[] embedding = SnippetEmbedder.embedQuery(query);
+		if (embedding == null) {
+			return null;
+		}
+		int offset = 0;
+		if (cursor != null) {
+			String[] after = decodeCursor(cursor, 2);
+			try {
+				offset = Integer.parseInt(after[1]);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid cursor", e);
+			}
+			if (!SEMANTIC_CURSOR.equals(after[0]) || offset < 0) {
+				throw new IllegalArgumentException("Invalid cursor");
+			}
+		}
+
+		List<String> ranked = vectorIndex(userId).nearest(embedding, offset, limit + 1);
+		long started = System.nanoTime();
+		long[] consumerNanos = {0};
+		int count = 0;
+		try {
+			count = forEachById(userId, ranked.subList(0, Math.min(limit, ranked.size())), consumerNanos, consumer);
+		} finally {
+			SEMANTIC_PAGE.record(started, consumerNanos[0], count);
+		}
+		return ranked.size() > limit ? encodeCursor(SEMANTIC_CURSOR, Integer.toString(offset + limit)) : null;
+	}
+
+	/**
+	 * Reads the snippets with {@code ids} back from SQLite and hands them to {@code consumer}
+	 * in that order. Ids that were deleted, or that aren't this user's, are skipped.
+	 * Time spent in the consumer is added to {@code consumerNanos[0]}.
+	 */
+	private int forEachById(String userId, List<String> ids, long[] consumerNanos, SnippetConsumer consumer)
+			throws IOException {
+		if (ids.isEmpty()) {
+			return 0;
+		}
+		String placeholders = String.join(",", Collections.nCopies(ids.size(), "?"));
+		String sql = SELECT_SUMMARIES + " WHERE user_id = ? AND id IN (" + placeholders + ")";
+
+		List<Snippet> verified = new ArrayList<>(ids.size());
+		try (Connection conn = DatabaseManager.getConnection(); PreparedStatement pstmt = conn.prepareStatement(sql)) {
+			pstmt.setString(1, userId);
+			for (int i = 0; i < ids.size(); i++) {
+				pstmt.setString(i + 2, ids.get(i));
+			}
+			try (ResultSet rs = pstmt.executeQuery()) {
+				while (rs.next()) {
+					verified.add(mapSummary(rs));
+				}
+			}
+		} catch (SQLException e) {
+			throw new RuntimeException("Failed to search snippets", e);
+		}
+
+		verified.sort(Comparator.comparingInt(snippet -> ids.indexOf(snippet.getId())));
+		for (Snippet snippet : verified) {
+			long accepting = System.nanoTime();
+			consumer.accept(snippet);
+			consumerNanos[0] += System.nanoTime() - accepting;
+		}
+		return verified.size();
+	}
+
+	private TrigramIndex trigramIndex(String userId) {
+		TrigramIndex index = trigramIndexes.get(userId);
+		if (index != null && !index.needsRebuild()) {
+			return index;
+		}
+
+		long stamp = trigramIndexes.stamp();
+		index = new TrigramIndex();
+		long started = System.nanoTime();
+		int rows = 0;
+		try (Connection conn = DatabaseManager.getConnection();
+				PreparedStatement pstmt = conn.prepareStatement(SELECT_SNIPPETS + " WHERE user_id = ? ORDER BY created_at DESC, id DESC")) {
+			pstmt.setString(1, userId);
+			try (ResultSet rs = pstmt.executeQuery()) {
+				while (rs.next()) {
+					index.add(mapResultSetToSnippet(rs));
+					rows++;
+				}
+			}
+		} catch (SQLException e) {
+			throw new RuntimeException("Failed to index snippets", e);
+		} finally {
+			BUILD_TRIGRAMS.record(started, rows);
+		}
+		// A write during the build means it may have missed a row; use it once, build again next time
+		trigramIndexes.putIfUnchanged(userId, index, stamp);
+		return index;
+	}
+
+	private VectorIndex vectorIndex(String userId) {
+		VectorIndex index = vectorIndexes.get(userId);
+		if (index != null) {
+			return index;
+		}
+
+		long stamp = vectorIndexes.stamp();
+		index = new VectorIndex();
+		long started = System.nanoTime();
+		try (Connection conn = DatabaseManager.getConnection();
+				PreparedStatement pstmt = conn.prepareStatement(
+						"SELECT snippet_id, embedding FROM snippet_embeddings WHERE user_id = ? AND version = ?")) {
+			pstmt.setString(1, userId);
+			pstmt.setInt(2, SnippetEmbedder.VERSION);
+			try (ResultSet rs = pstmt.executeQuery()) {
+				while (rs.next()) {
+					index.put(rs.getString(1), rs.getBytes(2));
+				}
+			}
+		} catch (SQLException e) {
+			throw new RuntimeException("Failed to load snippet embeddings", e);
+		} finally {
+			LOAD_VECTORS.record(started, index.size());
+		}
+		index.trimToSize();
+		vectorIndexes.putIfUnchanged(userId, index, stamp);
+		return index;
+	}
+
+	/**
+	 * Applies a committed create or update to whichever in-memory search indexes are loaded.
+	 */
+	private void indexed(String userId, Snippet snippet, float[] embedding) {
+		trigramIndexes.update(userId, index -> {
+			index.add(snippet);
+			return index;
+		});
+		vectorIndexes.update(userId, index -> {
+			index.put(snippet.getId(), embedding);
+			return index;
+		});
+	}
+
+	@Override
+	public List<WeightedLruCache.Stats> cacheStats() {
+		return List.of(trigramIndexes.stats(), vectorIndexes.stats());
+	}
+
+	static String encodeCursor(String... parts) {
+		return Base64.getUrlEncoder().withoutPadding()
+				.encodeToString(String.join("\n", parts).getBytes(StandardCharsets.UTF_8));
+	}
+
+	static String[] decodeCursor(String cursor, int expectedParts) {
+		try {
+			String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\n", -1);
+			if (parts.length == expectedParts) {
+				return parts;
+			}
+		} catch (IllegalArgumentException e) {
+			// Falls through to the error below
+		}
+		throw new IllegalArgumentException("Invalid cursor");
+	}
+
+	/**
+	 * Turns free text from the search box into an FTS5 expression: every word becomes a
+	 * quoted prefix term and all terms must match, so operators typed by the user are inert.
+	 */
+	static String toMatchExpression(String query) {
+		if (query == null) {
+			return null;
+		}
+		StringBuilder expression = new StringBuilder();
+		for (String term : query.toLowerCase().split("[^\\p{L}\\p{N}_]+")) {
+			if (term.isEmpty()) {
+				continue;
+			}
+			if (expression.length() > 0) {
+				expression.append(' ');
+			}
+			expression.append('"').append(term).append("\"*");
+		}
+		return expression.length() > 0 ? expression.toString() : null;
+	}
+
+	/**
+	 * {@code terms} (from {@link #toMatchExpression}) restricted to {@code userId}'s rows.
+	 * The owner is an indexed column, so FTS5 only ranks and reads this user's matches;
+	 * the terms are kept to the text columns so none of them can match an owner token.
+	 */
+	static String ownedMatchExpression(String userId, String terms) {
+		return "owner : \"" + searchOwner(userId) + "\" AND {code description language tags} : (" + terms + ")";
+	}
+
+	/**
+	 * The single token that stands for {@code userId} in the search index's owner column:
+	 * its UTF-8 bytes in hex, so any id makes exactly one token and no two ids share one.
+	 */
+	static String searchOwner(String userId) {
+		return "u" + HexFormat.of().formatHex(userId.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Adds a freshly written row to the full-text index, the tag table and the embeddings.
+	 * The code is bound from {@code snippet}; the row only holds its hash.
+	 */
+	private void indexSnippet(Connection conn, Snippet snippet, String userId, float[] embedding) throws SQLException {
+		String sql = """
+				INSERT INTO snippets_fts (rowid, owner, code, description, language, tags)
+				SELECT rowid, ?, ?, description, language, tags FROM snippets WHERE id = ?
+				""";
+		try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+			pstmt.setString(1, searchOwner(userId));
+			pstmt.setString(2, snippet.getCode());
+			pstmt.setString(3, snippet.getId());
+			pstmt.executeUpdate();
+		}
+		try (PreparedStatement pstmt = conn.prepareStatement(EMBEDDING_SQL)) {
+			pstmt.setString(1, snippet.getId());
+			pstmt.setString(2, userId);
+			pstmt.setInt(3, SnippetEmbedder.VERSION);
+			pstmt.setBytes(4, SnippetEmbedder.toBytes(embedding));
+			pstmt.executeUpdate();
+		}
+
+		if (snippet.getTags() == null || snippet.getTags().isEmpty()) {
+			return;
+		}
+		try (PreparedStatement pstmt = conn.prepareStatement("INSERT OR IGNORE INTO snippet_tags (snippet_id, user_id, tag) VALUES (?, ?, ?)")) {
+			for (String tag : snippet.getTags()) {
+				String normalized = normalizeTag(tag);
+				if (normalized.isEmpty()) {
+					continue;
+				}
+				pstmt.setString(1, snippet.getId());
+				pstmt.setString(2, userId);
+				pstmt.setString(3, normalized);
+				pstmt.addBatch();
+			}
+			pstmt.executeBatch();
+		}
+	}
+
+	private void unindexSnippet(Connection conn, String id, String userId) throws SQLException {
+		String sql = "DELETE FROM snippets_fts WHERE rowid = (SELECT rowid FROM snippets WHERE id = ? AND user_id = ?)";
+		try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+			pstmt.setString(1, id);
+			pstmt.setString(2, userId);
+			pstmt.executeUpdate();
+		}
+		try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM snippet_tags WHERE snippet_id = ? AND user_id = ?")) {
+			pstmt.setString(1, id);
+			pstmt.setString(2, userId);
+			pstmt.executeUpdate();
+		}
+		try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM snippet_embeddings WHERE snippet_id = ? AND user_id = ?")) {
+			pstmt.setString(1, id);
+			pstmt.setString(2, userId);
+			pstmt.executeUpdate();
+		}
+	}
+
+	/**
+	 * Tags are matched case-insensitively and without surrounding whitespace.
+	 */
+	public static String normalizeTag(String tag) {
+		return tag == null ? "" : tag.strip().toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * An imported id in canonical form, or null if it isn't a UUID. Ids end up in URLs and
+	 * attributes, so anything else an uploaded file claims as an id gets a fresh one.
+	 */
+	static String importedId(String id) {
+		if (id == null) {
+			return null;
+		}
+		try {
+			return UUID.fromString(id).toString();
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * A snippet without its code, for lists and search results: {@link Snippet#getCode()}
+	 * is null and the card shows {@link Snippet#getCodePreview()}, fetching the rest from
+	 * /snippets/{id}/code if the user expands it.
+	 */
+	private Snippet mapSummary(ResultSet rs) throws SQLException {
+		Snippet snippet = new Snippet();
+		snippet.setId(rs.getString("id"));
+		snippet.setUserId(rs.getString("user_id"));
+		snippet.setLanguage(rs.getString("language"));
+		snippet.setDescription(rs.getString("description"));
+		snippet.setCreatedAt(parseTimestamp(rs.getString("created_at")));
+		snippet.setCodePreview(rs.getString("code_preview"));
+		snippet.setCodePreviewHtml(rs.getString("code_preview_html"));
+		snippet.setCodeLength(rs.getInt("code_length"));
+
+		String tagsStr = rs.getString("tags");
+		if (tagsStr != null && !tagsStr.isEmpty()) {
+			snippet.setTags(new ArrayList<>(Arrays.asList(tagsStr.split(","))));
+		} else {
+			snippet.setTags(new ArrayList<>());
+		}
+
+		return snippet;
+	}
+
+	/**
+	 * Copy of {@code snippet} as {@link #mapSummary} would read it back.
+	 */
+	static Snippet summaryOf(Snippet snippet) {
+		Snippet summary = new Snippet(snippet.getId(), snippet.getUserId(), snippet.getTitle(), null,
+				snippet.getLanguage(), snippet.getDescription(), snippet.getTags(), snippet.getCreatedAt(),
+				snippet.getMatchFragment(), snippet.getCodePreview(), snippet.getCodePreviewHtml(), snippet.getCodeLength());
+		if (snippet.getCode() != null && snippet.getCodePreviewHtml() == null) {
+			summary.setCodePreview(SnippetBodies.preview(snippet.getCode()));
+			summary.setCodePreviewHtml(SyntaxHighlighter.highlight(summary.getCodePreview(), snippet.getLanguage()));
+			summary.setCodeLength(snippet.getCode().length());
+		}
+		return summary;
+	}
+
+	/**
+	 * Sets what was just computed for the row on the snippet itself, so the response
+	 * rendering it and the cache copying it don't compute it again.
+	 */
+	private static void withPreview(Snippet snippet, SnippetBodies.Body body) {
+		snippet.setCodePreview(body.preview());
+		snippet.setCodePreviewHtml(body.previewHtml());
+		snippet.setCodeLength(body.length());
+	}
+
 	private Snippet mapResultSetToSnippet(ResultSet rs) throws SQLException {
 		Snippet snippet = new Snippet();
 		snippet.setId(rs.getString("id"));
-		snippet.setCode(rs.getString("code"));
+		snippet.setUserId(rs.getString("user_id"));
+		snippet.setCode(SnippetBodies.code(rs));
 		snippet.setLanguage(rs.getString("language"));
 		snippet.setDescription(rs.getString("description"));
+		snippet.setCreatedAt(parseTimestamp(rs.getString("created_at")));
+		snippet.setCodePreview(rs.getString("code_preview"));
+		snippet.setCodePreviewHtml(rs.getString("code_preview_html"));
+		snippet.setCodeLength(rs.getInt("code_length"));
 
 		String tagsStr = rs.getString("tags");
 		if (tagsStr != null && !tagsStr.isEmpty()) {
@@ -158,4 +1168,8 @@ public class SnippetDAO {
 
 		return snippet;
 	}
+
+	static LocalDateTime parseTimestamp(String value) {
+		return value == null ? null : LocalDateTime.parse(value, TIMESTAMP_FORMAT);
+	}
 }
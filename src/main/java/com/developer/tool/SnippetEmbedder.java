@@ -0,0 +1,146 @@
+package com.developer.tool;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Deterministic, offline text embedding for semantic search: no model, no network.
+ * Words (with camelCase and snake_case split apart) and their character trigrams are
+ * hashed into a fixed number of signed buckets, weighted by field and by log term
+ * frequency, and the result is L2-normalized so cosine similarity is a dot product.
+ *
+ * Trigrams let "serialize" land near "serializer" and "serialise"; the field weights
+ * make a description or tag count for more than one of many identifiers in the code.
+ * Changing anything here changes every vector; bump {@link #VERSION} and add a schema
+ * migration to {@link DatabaseManager#initializeDatabase} that recomputes stored ones.
+ */
+public final class SnippetEmbedder {
+
+	public static final int DIMENSIONS = 128;
+	/** Stored with each vector; rows with another version are recomputed. */
+	public static final int VERSION = 1;
+
+	private static final float DESCRIPTION_WEIGHT = 2.0f;
+	private static final float TAG_WEIGHT = 2.0f;
+	private static final float LANGUAGE_WEIGHT = 1.0f;
+	private static final float CODE_WEIGHT = 1.0f;
+	private static final float TRIGRAM_WEIGHT = 0.35f;
+	private static final int MAX_WORD_LENGTH = 40;
+
+	private SnippetEmbedder() {
+	}
+
+	public static float[] embed(Snippet snippet) {
+		Map<String, Float> terms = new HashMap<>();
+		addTerms(snippet.getDescription(), DESCRIPTION_WEIGHT, terms);
+		addTerms(snippet.getLanguage(), LANGUAGE_WEIGHT, terms);
+		if (snippet.getTags() != null) {
+			for (String tag : snippet.getTags()) {
+				addTerms(tag, TAG_WEIGHT, terms);
+			}
+		}
+		addTerms(snippet.getCode(), CODE_WEIGHT, terms);
+		return vectorOf(terms);
+	}
+
+	/**
+	 * Embeds free text typed into the search box. Null if it has no words, since a zero
+	 * vector is equally (dis)similar to everything.
+	 */
+	public static float[] embedQuery(String query) {
+		Map<String, Float> terms = new HashMap<>();
+		addTerms(query, 1.0f, terms);
+		return terms.isEmpty() ? null : vectorOf(terms);
+	}
+
+	private static float[] vectorOf(Map<String, Float> terms) {
+		float[] vector = new float[DIMENSIONS];
+		for (Map.Entry<String, Float> term : terms.entrySet()) {
+			// Sublinear: the tenth "i" in a loop says much less than the first
+			float weight = (float) Math.log1p(term.getValue());
+			String word = term.getKey();
+			add(vector, word, weight);
+			if (word.length() > 3) {
+				String padded = " " + word + " ";
+				for (int i = 0; i + 3 <= padded.length(); i++) {
+					add(vector, padded.substring(i, i + 3), weight * TRIGRAM_WEIGHT);
+				}
+			}
+		}
+
+		double norm = 0;
+		for (float v : vector) {
+			norm += v * v;
+		}
+		if (norm > 0) {
+			float scale = (float) (1 / Math.sqrt(norm));
+			for (int i = 0; i < vector.length; i++) {
+				vector[i] *= scale;
+			}
+		}
+		return vector;
+	}
+
+	private static void add(float[] vector, String feature, float weight) {
+		int hash = mix(feature.hashCode());
+		// Low bits pick the bucket, the top bit the sign, so collisions tend to cancel out
+		vector[(hash & 0x7FFFFFFF) % DIMENSIONS] += hash < 0 ? -weight : weight;
+	}
+
+	/** Murmur3's finalizer, to spread String.hashCode's weak low bits. */
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	/**
+	 * Splits {@code text} into lower-cased words at anything that isn't a letter or digit,
+	 * and again at lower-to-upper case changes, so "parseHttpHeader" gives parse, http, header.
+	 */
+	private static void addTerms(String text, float weight, Map<String, Float> terms) {
+		if (text == null) {
+			return;
+		}
+		int length = text.length();
+		int start = -1;
+		for (int i = 0; i <= length; i++) {
+			char c = i < length ? text.charAt(i) : ' ';
+			boolean wordChar = Character.isLetterOrDigit(c);
+			boolean boundary = !wordChar
+					|| (start >= 0 && Character.isUpperCase(c) && Character.isLowerCase(text.charAt(i - 1)));
+			if (boundary && start >= 0) {
+				if (i - start >= 2 && i - start <= MAX_WORD_LENGTH) {
+					terms.merge(text.substring(start, i).toLowerCase(Locale.ROOT), weight, Float::sum);
+				}
+				start = -1;
+			}
+			if (wordChar && start < 0) {
+				start = i;
+			}
+		}
+	}
+
+	public static byte[] toBytes(float[] vector) {
+		ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.asFloatBuffer().put(vector);
+		return buffer.array();
+	}
+
+	/**
+	 * Copies a stored vector into {@code into} at {@code offset}. False if it isn't one of ours.
+	 */
+	public static boolean fromBytes(byte[] bytes, float[] into, int offset) {
+		if (bytes == null || bytes.length != DIMENSIONS * Float.BYTES) {
+			return false;
+		}
+		ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(into, offset, DIMENSIONS);
+		return true;
+	}
+}
@@ -0,0 +1,196 @@
+package com.developer.tool;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+
+/**
+ * Streaming JSON export and import of a user's library, using Jackson's token-level
+ * generator and parser rather than data binding. Neither direction ever holds more
+ * than one import batch of snippets in memory.
+ *
+ * Both a JSON array and NDJSON (one object per line) are accepted on import, plain
+ * or gzip-compressed; the format is detected from the content.
+ */
+public final class SnippetJson {
+
+	public enum Format {
+		JSON, NDJSON;
+
+		public static Format parse(String value) {
+			return "ndjson".equalsIgnoreCase(value) ? NDJSON : JSON;
+		}
+	}
+
+	private static final JsonFactory FACTORY = JsonFactory.builder()
+			.disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+			.disable(StreamReadFeature.AUTO_CLOSE_SOURCE)
+			.build();
+
+	private SnippetJson() {
+	}
+
+	/**
+	 * Writes every snippet of {@code userId} to {@code out} as rows are read. Returns the count.
+	 */
+	public static int export(SnippetStore store, String userId, Format format, OutputStream out) throws IOException {
+		try (JsonGenerator json = FACTORY.createGenerator(out)) {
+			// NDJSON lines are terminated explicitly below, not separated by Jackson's default space
+			json.setRootValueSeparator(null);
+			if (format == Format.JSON) {
+				json.writeStartArray();
+			}
+			int count = store.forEachByUserId(userId, snippet -> {
+				writeSnippet(json, snippet);
+				if (format == Format.NDJSON) {
+					json.writeRaw('\n');
+				}
+			});
+			if (format == Format.JSON) {
+				json.writeEndArray();
+			}
+			return count;
+		}
+	}
+
+	private static void writeSnippet(JsonGenerator json, Snippet snippet) throws IOException {
+		json.writeStartObject();
+		json.writeStringField("id", snippet.getId());
+		json.writeStringField("createdAt",
+				snippet.getCreatedAt() != null ? SnippetDAO.TIMESTAMP_FORMAT.format(snippet.getCreatedAt()) : null);
+		json.writeStringField("language", snippet.getLanguage());
+		json.writeStringField("description", snippet.getDescription());
+		json.writeArrayFieldStart("tags");
+		if (snippet.getTags() != null) {
+			for (String tag : snippet.getTags()) {
+				json.writeString(tag);
+			}
+		}
+		json.writeEndArray();
+		json.writeStringField("code", snippet.getCode());
+		json.writeEndObject();
+	}
+
+	/**
+	 * Parses snippets from {@code in} and inserts them {@code batchSize} at a time, one
+	 * transaction per batch. Batches committed before a malformed snippet stay imported.
+	 */
+	public static ImportResult importInto(SnippetStore store, String userId, InputStream in, int batchSize)
+			throws IOException {
+		int read = 0;
+		int imported = 0;
+		List<Snippet> batch = new ArrayList<>(batchSize);
+
+		try (JsonParser parser = FACTORY.createParser(decompressIfGzipped(in))) {
+			JsonToken token = parser.nextToken();
+			boolean array = token == JsonToken.START_ARRAY;
+			if (array) {
+				token = parser.nextToken();
+			}
+			while (token != null && !(array && token == JsonToken.END_ARRAY)) {
+				if (token != JsonToken.START_OBJECT) {
+					throw new IllegalArgumentException("Expected a snippet object at line "
+							+ parser.currentLocation().getLineNr());
+				}
+				batch.add(readSnippet(parser, read + 1));
+				read++;
+				if (batch.size() == batchSize) {
+					imported += store.importBatch(userId, batch);
+					batch.clear();
+				}
+				token = parser.nextToken();
+			}
+			if (!batch.isEmpty()) {
+				imported += store.importBatch(userId, batch);
+			}
+		} catch (JsonProcessingException | IllegalArgumentException e) {
+			throw new IllegalArgumentException("Import stopped at snippet " + (read + 1) + " after importing "
+					+ imported + ": " + e.getMessage(), e);
+		}
+		return new ImportResult(read, imported);
+	}
+
+	private static Snippet readSnippet(JsonParser parser, int position) throws IOException {
+		Snippet snippet = new Snippet();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.currentName();
+			JsonToken value = parser.nextToken();
+			switch (field) {
+				case "id" -> snippet.setId(parser.getValueAsString());
+				case "code" -> snippet.setCode(parser.getValueAsString());
+				case "language" -> snippet.setLanguage(parser.getValueAsString());
+				case "description" -> snippet.setDescription(parser.getValueAsString());
+				case "createdAt" -> snippet.setCreatedAt(parseCreatedAt(parser.getValueAsString()));
+				case "tags" -> snippet.setTags(readTags(parser, value));
+				default -> parser.skipChildren();
+			}
+		}
+		if (snippet.getCode() == null || snippet.getLanguage() == null) {
+			throw new IllegalArgumentException("snippet " + position + " needs both code and language");
+		}
+		return snippet;
+	}
+
+	/**
+	 * Tags as exported (an array), or as typed in the form (one comma-separated string).
+	 */
+	private static List<String> readTags(JsonParser parser, JsonToken value) throws IOException {
+		List<String> tags = new ArrayList<>();
+		if (value == JsonToken.START_ARRAY) {
+			while (parser.nextToken() != JsonToken.END_ARRAY) {
+				String tag = parser.getValueAsString();
+				if (tag != null && !tag.isBlank()) {
+					tags.add(tag.strip());
+				}
+			}
+		} else if (value == JsonToken.VALUE_STRING && !parser.getText().isBlank()) {
+			tags.addAll(Arrays.asList(parser.getText().strip().split("\\s*,\\s*")));
+		} else {
+			parser.skipChildren();
+		}
+		return tags;
+	}
+
+	private static LocalDateTime parseCreatedAt(String value) {
+		if (value == null || value.isBlank()) {
+			return null;
+		}
+		try {
+			return SnippetDAO.parseTimestamp(value);
+		} catch (DateTimeParseException e) {
+			throw new IllegalArgumentException("createdAt must look like 2024-01-31 13:45:00, got " + value);
+		}
+	}
+
+	private static InputStream decompressIfGzipped(InputStream in) throws IOException {
+		BufferedInputStream buffered = new BufferedInputStream(in, 64 * 1024);
+		buffered.mark(2);
+		int first = buffered.read();
+		int second = buffered.read();
+		buffered.reset();
+		boolean gzip = first == 0x1f && second == 0x8b;
+		return gzip ? new GZIPInputStream(buffered, 64 * 1024) : buffered;
+	}
+
+	/**
+	 * @param read     snippets parsed from the input
+	 * @param imported snippets inserted; the rest were already in the library
+	 */
+	public record ImportResult(int read, int imported) {
+	}
+}
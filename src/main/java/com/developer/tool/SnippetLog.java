@@ -0,0 +1,528 @@
+package com.developer.tool;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Keeps {@link MemorySnippetStore} durable: every write is appended to an operation log
+ * before it is applied, and the log is folded into a snapshot now and then, so a restart
+ * loads one snapshot and replays only what was written after it.
+ *
+ * The directory holds snapshot-N.snap, every snippet as of the end of log N, and the logs
+ * log-M.log written since (M > N). A log is a fixed-size memory-mapped file: appending is
+ * a copy into the mapping, and {@link #sync} forces what was appended to disk, once for
+ * all the writes that arrived while the previous force ran. Even before that, an appended
+ * record is in the page cache, so a process crash can't lose it; only a machine crash can.
+ *
+ * Records are [payload length][CRC-32C][payload], and a log's unwritten tail is zeros.
+ * Recovery reads each log up to a zero length or a record whose checksum fails, which is
+ * the one being written when the machine went down.
+ */
+final class SnippetLog implements AutoCloseable {
+
+	private static final byte PUT = 1;
+	private static final byte DELETE = 2;
+	private static final byte END = 3;
+	private static final int HEADER_BYTES = 8;
+
+	private static final Pattern FILE_NAME = Pattern.compile("(log|snapshot)-(\\d+)\\.(log|snap|tmp)");
+
+	/** Receives what recovery reads, in the order it was written. */
+	interface Replay {
+		void put(Snippet snippet);
+
+		void delete(String id, String userId);
+	}
+
+	private final Path dir;
+	private final int segmentBytes;
+	private final boolean force;
+	private final boolean fresh;
+
+	// Appends and rotations are serialized by the store's write lock; syncs by syncLock
+	private volatile Segment segment;
+	private final Object syncLock = new Object();
+	private long synced;
+	// Set when a force fails: what was appended may or may not be on disk, so nothing more is accepted
+	private volatile IOException failure;
+	private volatile long snapshotGeneration;
+	private volatile long snapshotTicket;
+
+	private final LongAdder syncs = new LongAdder();
+	private final LongAdder snapshots = new LongAdder();
+	private volatile long lastSnapshotNanos;
+
+	private SnippetLog(Path dir, int segmentBytes, boolean force, boolean fresh, long snapshotGeneration,
+			long generation) throws IOException {
+		this.dir = dir;
+		this.segmentBytes = segmentBytes;
+		this.force = force;
+		this.fresh = fresh;
+		this.snapshotGeneration = snapshotGeneration;
+		this.segment = createSegment(generation, segmentBytes, 0);
+	}
+
+	/**
+	 * Recovers the contents of {@code dir} into {@code replay} and opens a new log after
+	 * them. Logs that were replayed are kept until the next snapshot covers them.
+	 *
+	 * @param force whether {@link #sync} forces appended records to disk
+	 */
+	static SnippetLog open(Path dir, int segmentBytes, boolean force, Replay replay) throws IOException {
+		Files.createDirectories(dir);
+		TreeMap<Long, Path> logs = new TreeMap<>();
+		TreeMap<Long, Path> snapshotFiles = new TreeMap<>();
+		try (Stream<Path> files = Files.list(dir)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				Matcher name = FILE_NAME.matcher(file.getFileName().toString());
+				if (!name.matches()) {
+					continue;
+				}
+				long generation = Long.parseLong(name.group(2));
+				switch (name.group(3)) {
+					case "log" -> logs.put(generation, file);
+					case "snap" -> snapshotFiles.put(generation, file);
+					// A snapshot that was still being written; the logs it would have replaced are all still here
+					default -> Files.delete(file);
+				}
+			}
+		}
+
+		long snapshotGeneration = 0;
+		if (!snapshotFiles.isEmpty()) {
+			snapshotGeneration = snapshotFiles.lastKey();
+			readSnapshot(snapshotFiles.lastEntry().getValue(), replay);
+		}
+		long lastGeneration = snapshotGeneration;
+		int replayed = 0;
+		for (var log : logs.tailMap(snapshotGeneration, false).entrySet()) {
+			replayed += readLog(log.getValue(), replay);
+			lastGeneration = log.getKey();
+		}
+		if (replayed == 0) {
+			// Nothing was written after the snapshot (a clean shutdown), so there is nothing for another one to fold in
+			for (Path log : logs.values()) {
+				Files.delete(log);
+			}
+			lastGeneration = snapshotGeneration;
+		}
+		boolean fresh = snapshotFiles.isEmpty() && replayed == 0;
+		return new SnippetLog(dir, segmentBytes, force, fresh, snapshotGeneration, lastGeneration + 1);
+	}
+
+	/** True if the directory held neither a snapshot nor any logged write when it was opened. */
+	boolean fresh() {
+		return fresh;
+	}
+
+	/**
+	 * True if logs were written since the last snapshot, or replayed at startup.
+	 */
+	boolean hasWritesSinceSnapshot() {
+		Segment current = segment;
+		return current.generation > snapshotGeneration + 1 || current.position > 0;
+	}
+
+	/** True once at least one whole log has filled up since the last snapshot. */
+	boolean needsSnapshot() {
+		return segment.generation > snapshotGeneration + 1;
+	}
+
+	/**
+	 * Appends a record made by {@link #put} or {@link #delete}. Returns the ticket to
+	 * {@link #sync} on. The caller serializes appends.
+	 */
+	long append(byte[] payload) throws IOException {
+		if (failure != null) {
+			throw failure;
+		}
+		int length = HEADER_BYTES + payload.length;
+		Segment current = segment;
+		if (current.position + length > current.buffer.capacity()) {
+			current = startSegment(length);
+		}
+		CRC32C crc = new CRC32C();
+		crc.update(payload);
+		int at = current.position;
+		current.buffer.put(at + HEADER_BYTES, payload);
+		current.buffer.putInt(at + 4, (int) crc.getValue());
+		// Length last: a record cut short by a crash reads as the end of the log or fails its checksum
+		current.buffer.putInt(at, payload.length);
+		current.position = at + length;
+		return current.startTicket + current.position;
+	}
+
+	/**
+	 * Returns once the record {@code ticket} came from is on disk. Records appended while
+	 * an earlier sync was running are forced together by the next one. Once a force has
+	 * failed, this and {@link #append} throw until the log is reopened.
+	 */
+	void sync(long ticket) throws IOException {
+		if (!force) {
+			return;
+		}
+		synchronized (syncLock) {
+			if (failure != null) {
+				throw failure;
+			}
+			if (synced >= ticket) {
+				return;
+			}
+			// Everything in earlier logs was forced when they were rotated out
+			Segment current = segment;
+			int position = current.position;
+			force(current, position);
+			synced = current.startTicket + position;
+			syncs.increment();
+		}
+	}
+
+	/**
+	 * The ticket up to which appended records are durable: forced to disk, or with force
+	 * off, appended.
+	 */
+	long durable() {
+		if (!force) {
+			Segment current = segment;
+			return current.startTicket + current.position;
+		}
+		synchronized (syncLock) {
+			return synced;
+		}
+	}
+
+	private void force(Segment segment, int position) throws IOException {
+		try {
+			segment.buffer.force(segment.forced, position - segment.forced);
+		} catch (UncheckedIOException e) {
+			failure = new IOException("Failed to force snippet log " + segment.generation
+					+ " to disk; no further writes are accepted until restart", e.getCause());
+			throw failure;
+		}
+		segment.forced = position;
+	}
+
+	/**
+	 * Starts a new log and returns the generation of the one it replaces, which is what a
+	 * snapshot of the store as it is now should be written as. The caller holds the store's
+	 * write lock until it has copied that state.
+	 */
+	long rotate() throws IOException {
+		long generation = segment.generation;
+		startSegment(0);
+		snapshotTicket = segment.startTicket;
+		return generation;
+	}
+
+	/**
+	 * Writes {@code snippets} as snapshot {@code generation} (from {@link #rotate}) and
+	 * deletes the logs and the older snapshot it replaces. Runs without the write lock.
+	 */
+	void writeSnapshot(long generation, Collection<Snippet> snippets) throws IOException {
+		long started = System.nanoTime();
+		Path tmp = dir.resolve("snapshot-" + generation + ".tmp");
+		try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 20))) {
+			for (Snippet snippet : snippets) {
+				writeRecord(out, put(snippet));
+			}
+			writeRecord(out, end(snippets.size()));
+			out.flush();
+			channel.force(true);
+		}
+		Files.move(tmp, dir.resolve("snapshot-" + generation + ".snap"), StandardCopyOption.ATOMIC_MOVE);
+		forceDirectory();
+		snapshotGeneration = generation;
+
+		try (Stream<Path> files = Files.list(dir)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				Matcher name = FILE_NAME.matcher(file.getFileName().toString());
+				if (name.matches() && (name.group(3).equals("log") ? Long.parseLong(name.group(2)) <= generation
+						: name.group(3).equals("snap") && Long.parseLong(name.group(2)) < generation)) {
+					Files.delete(file);
+				}
+			}
+		}
+		snapshots.increment();
+		lastSnapshotNanos = System.nanoTime() - started;
+	}
+
+	public Stats stats() {
+		Segment current = segment;
+		long appended = current.startTicket + current.position;
+		return new Stats(appended, appended - snapshotTicket, syncs.sum(), snapshots.sum(), lastSnapshotNanos / 1_000_000.0);
+	}
+
+	/**
+	 * @param appendedBytes      bytes appended to logs since startup
+	 * @param unsnapshottedBytes of those, bytes a restart would replay
+	 * @param syncs              forces of the log to disk
+	 * @param snapshots          snapshots written since startup
+	 */
+	public record Stats(long appendedBytes, long unsnapshottedBytes, long syncs, long snapshots,
+			double lastSnapshotMillis) {
+	}
+
+	@Override
+	public void close() {
+		synchronized (syncLock) {
+			if (force) {
+				segment.buffer.force();
+			}
+		}
+	}
+
+	/** A PUT record holding {@code snippet} as it is: id, owner, fields, code and preview. */
+	static byte[] put(Snippet snippet) {
+		List<String> tags = snippet.getTags() != null ? snippet.getTags() : List.of();
+		String code = snippet.getCode();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + (code == null ? 0 : code.length())
+				+ length(snippet.getCodePreviewHtml()));
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(PUT);
+			writeString(out, snippet.getId());
+			writeString(out, snippet.getUserId());
+			out.writeLong(snippet.getCreatedAt().toEpochSecond(ZoneOffset.UTC));
+			writeString(out, snippet.getLanguage());
+			writeString(out, snippet.getDescription());
+			out.writeInt(tags.size());
+			for (String tag : tags) {
+				writeString(out, tag);
+			}
+			writeString(out, code);
+			writeString(out, snippet.getCodePreview());
+			writeString(out, snippet.getCodePreviewHtml());
+			out.writeInt(snippet.getCodeLength());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	static byte[] delete(String id, String userId) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(96);
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeByte(DELETE);
+			writeString(out, id);
+			writeString(out, userId);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static byte[] end(long count) {
+		return ByteBuffer.allocate(9).put(END).putLong(count).array();
+	}
+
+	private Segment startSegment(int minBytes) throws IOException {
+		Segment old = segment;
+		synchronized (syncLock) {
+			if (force) {
+				force(old, old.position);
+			}
+			synced = old.startTicket + old.position;
+		}
+		Segment next = createSegment(old.generation + 1, Math.max(segmentBytes, minBytes), old.startTicket + old.position);
+		segment = next;
+		return next;
+	}
+
+	private Segment createSegment(long generation, int capacity, long startTicket) throws IOException {
+		Path file = dir.resolve("log-" + generation + ".log");
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			// The mapping outlives the channel; the file is extended, sparsely, to its size
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+			forceDirectory();
+			return new Segment(generation, buffer, startTicket);
+		}
+	}
+
+	private void forceDirectory() {
+		try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+			channel.force(true);
+		} catch (IOException e) {
+			// Not every platform lets a directory be opened; the entries are then flushed by the OS
+		}
+	}
+
+	private static void readSnapshot(Path file, Replay replay) throws IOException {
+		long size = Files.size(file);
+		long count = 0;
+		try (DataInputStream in = open(file)) {
+			while (true) {
+				ByteBuffer payload = readRecord(in, size);
+				if (payload == null || payload.remaining() == 0) {
+					throw new IllegalStateException("Snapshot " + file + " is damaged after " + count + " snippets");
+				}
+				if (payload.get(0) == END) {
+					if (payload.getLong(1) != count) {
+						throw new IllegalStateException("Snapshot " + file + " holds " + count + " snippets, expected "
+								+ payload.getLong(1));
+					}
+					return;
+				}
+				apply(payload, replay);
+				count++;
+			}
+		}
+	}
+
+	/** Replays {@code file} and returns the number of records in it. */
+	private static int readLog(Path file, Replay replay) throws IOException {
+		long size = Files.size(file);
+		try (DataInputStream in = open(file)) {
+			int records = 0;
+			ByteBuffer payload;
+			while ((payload = readRecord(in, size)) != null) {
+				if (payload.remaining() == 0) {
+					return records;
+				}
+				apply(payload, replay);
+				records++;
+			}
+			System.err.println("Snippet log " + file + " ends in a torn record after " + records
+					+ " records; it was being written when the machine stopped and is ignored");
+			return records;
+		}
+	}
+
+	private static DataInputStream open(Path file) throws IOException {
+		return new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 20));
+	}
+
+	/**
+	 * The next record's payload, an empty buffer at the end of the log, or null for a
+	 * record that is cut short or fails its checksum.
+	 */
+	private static ByteBuffer readRecord(DataInputStream in, long fileSize) throws IOException {
+		int length;
+		try {
+			length = in.readInt();
+		} catch (EOFException e) {
+			return ByteBuffer.allocate(0);
+		}
+		if (length == 0) {
+			return ByteBuffer.allocate(0);
+		}
+		if (length < 0 || length > fileSize) {
+			return null;
+		}
+		byte[] payload = new byte[length];
+		try {
+			int crc = in.readInt();
+			in.readFully(payload);
+			CRC32C actual = new CRC32C();
+			actual.update(payload);
+			if ((int) actual.getValue() != crc) {
+				return null;
+			}
+		} catch (EOFException e) {
+			return null;
+		}
+		return ByteBuffer.wrap(payload);
+	}
+
+	private static void writeRecord(DataOutputStream out, byte[] payload) throws IOException {
+		CRC32C crc = new CRC32C();
+		crc.update(payload);
+		out.writeInt(payload.length);
+		out.writeInt((int) crc.getValue());
+		out.write(payload);
+	}
+
+	private static void apply(ByteBuffer payload, Replay replay) {
+		byte op = payload.get();
+		if (op == PUT) {
+			Snippet snippet = new Snippet();
+			snippet.setId(readString(payload));
+			snippet.setUserId(readString(payload));
+			snippet.setCreatedAt(LocalDateTime.ofEpochSecond(payload.getLong(), 0, ZoneOffset.UTC));
+			snippet.setLanguage(readString(payload));
+			snippet.setDescription(readString(payload));
+			int tagCount = payload.getInt();
+			List<String> tags = new ArrayList<>(tagCount);
+			for (int i = 0; i < tagCount; i++) {
+				tags.add(readString(payload));
+			}
+			snippet.setTags(tags);
+			snippet.setCode(readString(payload));
+			snippet.setCodePreview(readString(payload));
+			snippet.setCodePreviewHtml(readString(payload));
+			snippet.setCodeLength(payload.getInt());
+			replay.put(snippet);
+		} else if (op == DELETE) {
+			replay.delete(readString(payload), readString(payload));
+		} else {
+			throw new IllegalStateException("Unknown snippet log record " + op);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(utf8.length);
+		out.write(utf8);
+	}
+
+	private static String readString(ByteBuffer payload) {
+		int length = payload.getInt();
+		if (length < 0) {
+			return null;
+		}
+		String value = new String(payload.array(), payload.arrayOffset() + payload.position(), length, StandardCharsets.UTF_8);
+		payload.position(payload.position() + length);
+		return value;
+	}
+
+	private static int length(String value) {
+		return value == null ? 0 : value.length();
+	}
+
+	/** One log file, mapped whole. Offsets into it are the record positions. */
+	private static final class Segment {
+		final long generation;
+		final MappedByteBuffer buffer;
+		// Bytes appended to earlier logs since startup, so tickets keep increasing across files
+		final long startTicket;
+		volatile int position;
+		int forced;
+
+		Segment(long generation, MappedByteBuffer buffer, long startTicket) {
+			this.generation = generation;
+			this.buffer = buffer;
+			this.startTicket = startTicket;
+		}
+	}
+}
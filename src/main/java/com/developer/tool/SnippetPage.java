@@ -0,0 +1,14 @@
+package com.developer.tool;
+
+import java.util.List;
+
+/**
+ * One page of snippets. {@code nextCursor} is an opaque token for the following page,
+ * or null when this is the last one.
+ */
+public record SnippetPage(List<Snippet> snippets, String nextCursor) {
+
+	public boolean hasMore() {
+		return nextCursor != null;
+	}
+}
@@ -0,0 +1,140 @@
+package com.developer.tool;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Where snippets are kept. SNIPPET_STORE picks the implementation: "sqlite" (the default)
+ * is {@link CachedSnippetDAO}, "memory" is {@link MemorySnippetStore}.
+ *
+ * Lists come in {@link SnippetDAO#NEWEST_FIRST} order as summaries: {@link Snippet#getCode()}
+ * is null and the preview fields are set. Pages continue from opaque cursors, which are
+ * only meaningful to the store that issued them. Snippets handed to a consumer may be
+ * shared with the store and must not be modified; {@link #findById} returns a copy.
+ */
+public interface SnippetStore extends AutoCloseable {
+
+	/**
+	 * Number of writes to {@code userId}'s library since startup. The value only moves
+	 * once a write is durable, so equal versions mean nothing has changed in between.
+	 */
+	long libraryVersion(String userId);
+
+	void create(Snippet snippet, String userId);
+
+	/** Updates the snippet with {@code snippet}'s id if {@code userId} owns it. */
+	void update(Snippet snippet, String userId);
+
+	/** Deletes snippet {@code id} if {@code userId} owns it. */
+	void delete(String id, String userId);
+
+	/**
+	 * Adds {@code snippets} to {@code userId}'s library at once. Ids are kept where
+	 * possible: a snippet whose id this user already has is skipped, and one whose id
+	 * belongs to someone else, or isn't a UUID, gets a fresh id. Returns the number added.
+	 */
+	int importBatch(String userId, List<Snippet> snippets);
+
+	/** The snippet with its code, or null. */
+	Snippet findById(String id);
+
+	int countByUserId(String userId);
+
+	/**
+	 * Hands one page of {@code userId}'s library to {@code consumer}, from the start or
+	 * after {@code cursor}. Returns the cursor for the next page, or null.
+	 */
+	String forEachInPage(String userId, String cursor, int limit, SnippetConsumer consumer) throws IOException;
+
+	/**
+	 * Hands {@code userId}'s whole library, with code, to {@code consumer} in list order.
+	 * Returns the number of snippets.
+	 */
+	int forEachByUserId(String userId, SnippetConsumer consumer) throws IOException;
+
+	/**
+	 * Page of {@code userId}'s snippets carrying {@code tags}: all of them when
+	 * {@code matchAll}, otherwise any of them. Tags compare as {@link SnippetDAO#normalizeTag} leaves them.
+	 */
+	String forEachByTags(String userId, List<String> tags, boolean matchAll, String cursor, int limit,
+			SnippetConsumer consumer) throws IOException;
+
+	/**
+	 * Page of keyword matches, best first: every word of {@code query} must start a word
+	 * of the code, description, language or tags. Each result carries a match fragment,
+	 * see {@link SnippetDAO#MATCH_START}. A first page that finds nothing falls back to
+	 * {@link #forEachFuzzyResult}.
+	 */
+	String forEachSearchResult(String query, String userId, String cursor, int limit, SnippetConsumer consumer)
+			throws IOException;
+
+	/**
+	 * Every keyword match for {@code query} with its code, best first and without
+	 * fragments, or null if more than {@code max} match. {@code checkpoint} runs before
+	 * each one so the caller can abandon the search by throwing.
+	 */
+	List<Snippet> findSearchMatches(String query, String userId, int max, Runnable checkpoint);
+
+	/** Page of snippets whose words are most like the query's, skipping {@code offset}. */
+	String forEachFuzzyResult(String query, String userId, int offset, int limit, SnippetConsumer consumer)
+			throws IOException;
+
+	/** Page of the snippets nearest to {@code query} in embedding space, see {@link SnippetEmbedder}. */
+	String forEachSemanticResult(String query, String userId, String cursor, int limit, SnippetConsumer consumer)
+			throws IOException;
+
+	/** The store's in-process caches, for /metrics. */
+	List<WeightedLruCache.Stats> cacheStats();
+
+	@Override
+	default void close() {
+	}
+
+	/**
+	 * Keyset page of a user's library. Pass the previous page's
+	 * {@link SnippetPage#nextCursor()} to continue, or null for the first page.
+	 */
+	default SnippetPage findPageByUserId(String userId, String cursor, int limit) {
+		List<Snippet> snippets = new ArrayList<>();
+		try {
+			String nextCursor = forEachInPage(userId, cursor, limit, snippets::add);
+			return new SnippetPage(snippets, nextCursor);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/** Collected form of {@link #forEachByTags}. */
+	default SnippetPage findPageByTags(String userId, List<String> tags, boolean matchAll, String cursor, int limit) {
+		List<Snippet> snippets = new ArrayList<>();
+		try {
+			String nextCursor = forEachByTags(userId, tags, matchAll, cursor, limit, snippets::add);
+			return new SnippetPage(snippets, nextCursor);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/** All of {@link #forEachSearchResult}'s results at once. */
+	default List<Snippet> search(String query, String userId) {
+		return searchPage(query, userId, null, Integer.MAX_VALUE - 1).snippets();
+	}
+
+	/** Collected form of {@link #forEachSearchResult}. */
+	default SnippetPage searchPage(String query, String userId, String cursor, int limit) {
+		List<Snippet> snippets = new ArrayList<>();
+		try {
+			String nextCursor = forEachSearchResult(query, userId, cursor, limit, snippets::add);
+			return new SnippetPage(snippets, nextCursor);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@FunctionalInterface
+	interface SnippetConsumer {
+		void accept(Snippet snippet) throws IOException;
+	}
+}
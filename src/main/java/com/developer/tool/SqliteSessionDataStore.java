@@ -0,0 +1,183 @@
+package com.developer.tool;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectOutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.jetty.server.session.AbstractSessionDataStore;
+import org.eclipse.jetty.server.session.SessionData;
+import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
+
+/**
+ * Jetty session store backed by the {@code sessions} table, so logins survive restarts
+ * and can be shared by instances pointing at the same database.
+ *
+ * Writes are coalesced by Jetty itself: {@link #store} only reaches {@link #doStore}
+ * when an attribute changed or the save period has elapsed, so a request that only
+ * bumps the last-access time usually doesn't write at all.
+ */
+public class SqliteSessionDataStore extends AbstractSessionDataStore {
+
+	@Override
+	public boolean isPassivating() {
+		return true;
+	}
+
+	@Override
+	public boolean doExists(String id) throws Exception {
+		String sql = "SELECT expiry FROM sessions WHERE id = ? AND context_path = ? AND vhost = ?";
+
+		try (Connection conn = DatabaseManager.getConnection();
+				PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+			pstmt.setString(1, id);
+			pstmt.setString(2, _context.getCanonicalContextPath());
+			pstmt.setString(3, _context.getVhost());
+			ResultSet rs = pstmt.executeQuery();
+
+			if (!rs.next()) {
+				return false;
+			}
+			long expiry = rs.getLong("expiry");
+			return expiry <= 0 || expiry > System.currentTimeMillis();
+		}
+	}
+
+	@Override
+	public SessionData doLoad(String id) throws Exception {
+		String sql = "SELECT * FROM sessions WHERE id = ? AND context_path = ? AND vhost = ?";
+
+		try (Connection conn = DatabaseManager.getConnection();
+				PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+			pstmt.setString(1, id);
+			pstmt.setString(2, _context.getCanonicalContextPath());
+			pstmt.setString(3, _context.getVhost());
+			ResultSet rs = pstmt.executeQuery();
+
+			if (!rs.next()) {
+				return null;
+			}
+			SessionData data = newSessionData(id, rs.getLong("created"), rs.getLong("accessed"),
+					rs.getLong("last_accessed"), rs.getLong("max_inactive_ms"));
+			data.setCookieSet(rs.getLong("cookie_set"));
+			data.setLastNode(rs.getString("last_node"));
+			data.setLastSaved(rs.getLong("last_saved"));
+			data.setExpiry(rs.getLong("expiry"));
+			data.setContextPath(_context.getCanonicalContextPath());
+			data.setVhost(_context.getVhost());
+
+			byte[] attributes = rs.getBytes("attributes");
+			if (attributes != null) {
+				try (ClassLoadingObjectInputStream in = new ClassLoadingObjectInputStream(new ByteArrayInputStream(attributes))) {
+					SessionData.deserializeAttributes(data, in);
+				}
+			}
+			return data;
+		}
+	}
+
+	@Override
+	public void doStore(String id, SessionData data, long lastSaveTime) throws Exception {
+		String sql = """
+				INSERT OR REPLACE INTO sessions (id, context_path, vhost, last_node, created, accessed, last_accessed,
+				    cookie_set, expiry, max_inactive_ms, last_saved, attributes)
+				VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+				""";
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			SessionData.serializeAttributes(data, out);
+		}
+
+		try (Connection conn = DatabaseManager.getWriteConnection();
+				PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+			pstmt.setString(1, id);
+			pstmt.setString(2, _context.getCanonicalContextPath());
+			pstmt.setString(3, _context.getVhost());
+			pstmt.setString(4, data.getLastNode());
+			pstmt.setLong(5, data.getCreated());
+			pstmt.setLong(6, data.getAccessed());
+			pstmt.setLong(7, data.getLastAccessed());
+			pstmt.setLong(8, data.getCookieSet());
+			pstmt.setLong(9, data.getExpiry());
+			pstmt.setLong(10, data.getMaxInactiveMs());
+			pstmt.setLong(11, data.getLastSaved());
+			pstmt.setBytes(12, bytes.toByteArray());
+			pstmt.executeUpdate();
+		}
+	}
+
+	@Override
+	public boolean delete(String id) throws Exception {
+		String sql = "DELETE FROM sessions WHERE id = ? AND context_path = ? AND vhost = ?";
+
+		try (Connection conn = DatabaseManager.getWriteConnection();
+				PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+			pstmt.setString(1, id);
+			pstmt.setString(2, _context.getCanonicalContextPath());
+			pstmt.setString(3, _context.getVhost());
+			return pstmt.executeUpdate() > 0;
+		}
+	}
+
+	@Override
+	public Set<String> doCheckExpired(Set<String> candidates, long time) {
+		Set<String> expired = new HashSet<>();
+		for (String id : candidates) {
+			try {
+				if (!doExists(id)) {
+					expired.add(id);
+				}
+			} catch (Exception e) {
+				System.err.println("Failed to check session expiry: " + e.getMessage());
+			}
+		}
+		return expired;
+	}
+
+	@Override
+	public Set<String> doGetExpired(long time) {
+		Set<String> expired = new HashSet<>();
+		String sql = "SELECT id FROM sessions WHERE context_path = ? AND vhost = ? AND expiry > 0 AND expiry <= ?";
+
+		try (Connection conn = DatabaseManager.getConnection();
+				PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+			pstmt.setString(1, _context.getCanonicalContextPath());
+			pstmt.setString(2, _context.getVhost());
+			pstmt.setLong(3, time);
+			ResultSet rs = pstmt.executeQuery();
+
+			while (rs.next()) {
+				expired.add(rs.getString("id"));
+			}
+		} catch (SQLException e) {
+			System.err.println("Failed to scan expired sessions: " + e.getMessage());
+		}
+		return expired;
+	}
+
+	@Override
+	public void doCleanOrphans(long time) {
+		// Sessions that expired long ago on any node or context
+		String sql = "DELETE FROM sessions WHERE expiry > 0 AND expiry <= ?";
+
+		try (Connection conn = DatabaseManager.getWriteConnection();
+				PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+			pstmt.setLong(1, time);
+			pstmt.executeUpdate();
+		} catch (SQLException e) {
+			System.err.println("Failed to clean orphaned sessions: " + e.getMessage());
+		}
+	}
+}
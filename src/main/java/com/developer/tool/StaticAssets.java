@@ -0,0 +1,180 @@
+package com.developer.tool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.jetty.server.HttpOutput;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+
+import io.javalin.http.Context;
+
+/**
+ * Stylesheets and scripts bundled under /assets on the classpath, served under
+ * content-hashed names (app.3f9c2a71d0.css) that may be cached for a year without ever
+ * being revalidated: changing a file changes its name, and the page links the new one.
+ *
+ * Everything is prepared when the class loads. Each file is read, hashed, and
+ * compressed once with gzip and, if brotli4j's native library loads, brotli, and each
+ * variant is kept in a read-only direct buffer. A request picks the variant the client
+ * accepts and hands that buffer to Jetty, which writes it to the socket as it is. Nothing
+ * is compressed or copied per request.
+ *
+ * Third-party files are committed under /assets/vendor, so pages never load anything
+ * from a CDN: htmx 2.0.8 (0BSD, see htmx.LICENSE there).
+ */
+public final class StaticAssets {
+
+	/** Path the assets are served under; the route is {@code PATH + "{name}"}. */
+	public static final String PATH = "/assets/";
+
+	private static final String CACHE_CONTROL = "public, max-age=31536000, immutable";
+	private static final int HASH_CHARS = 10;
+
+	private final Map<String, String> urls = new HashMap<>();
+	private final Map<String, Asset> byHashedName = new HashMap<>();
+
+	/**
+	 * Loads each of {@code names}, relative to /assets on the classpath. Missing ones are
+	 * skipped; {@link #url(String)} fails for them at startup.
+	 */
+	public StaticAssets(String... names) {
+		boolean brotli = brotliAvailable();
+		for (String name : names) {
+			byte[] bytes = read(name);
+			if (bytes == null) {
+				continue;
+			}
+			// Served flat: vendor/htmx.min.js becomes /assets/htmx.min.<hash>.js
+			String fileName = name.substring(name.lastIndexOf('/') + 1);
+			int dot = fileName.lastIndexOf('.');
+			String hashedName = fileName.substring(0, dot) + "." + hash(bytes) + fileName.substring(dot);
+			Asset asset = new Asset(contentType(name), direct(bytes), direct(gzip(bytes)),
+					brotli ? direct(brotli(bytes)) : null);
+			byHashedName.put(hashedName, asset);
+			urls.put(name, PATH + hashedName);
+		}
+	}
+
+	/**
+	 * URL of a bundled asset. Throws if it isn't bundled, so a broken build fails at startup.
+	 */
+	public String url(String name) {
+		String url = urls.get(name);
+		if (url == null) {
+			throw new IllegalStateException("Asset not bundled: " + name);
+		}
+		return url;
+	}
+
+	/**
+	 * Handler for {@code GET PATH + "{name}"}.
+	 */
+	public void serve(Context ctx) throws IOException {
+		Asset asset = byHashedName.get(ctx.pathParam("name"));
+		if (asset == null) {
+			ctx.status(404).result("Not found");
+			return;
+		}
+		String accepted = String.valueOf(ctx.header("Accept-Encoding")).toLowerCase(Locale.ROOT);
+		ByteBuffer body = asset.plain;
+		if (asset.brotli != null && accepted.contains("br")) {
+			body = asset.brotli;
+			ctx.header("Content-Encoding", "br");
+		} else if (accepted.contains("gzip")) {
+			body = asset.gzip;
+			ctx.header("Content-Encoding", "gzip");
+		}
+		ctx.contentType(asset.contentType);
+		ctx.header("Cache-Control", CACHE_CONTROL);
+		ctx.header("Vary", "Accept-Encoding");
+		ctx.res().setContentLengthLong(body.remaining());
+
+		// Straight to the servlet stream: the body is already compressed, and Javalin's
+		// own compression only wraps ctx.result() and ctx.outputStream()
+		OutputStream out = ctx.res().getOutputStream();
+		if (out instanceof HttpOutput httpOutput) {
+			httpOutput.sendContent(body.duplicate());
+		} else {
+			Channels.newChannel(out).write(body.duplicate());
+		}
+	}
+
+	private record Asset(String contentType, ByteBuffer plain, ByteBuffer gzip, ByteBuffer brotli) {
+	}
+
+	private static byte[] read(String name) {
+		try (InputStream in = StaticAssets.class.getResourceAsStream(PATH + name)) {
+			return in == null ? null : in.readAllBytes();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to read asset " + name, e);
+		}
+	}
+
+	private static String contentType(String name) {
+		if (name.endsWith(".css")) {
+			return "text/css; charset=utf-8";
+		}
+		if (name.endsWith(".js")) {
+			return "text/javascript; charset=utf-8";
+		}
+		throw new IllegalArgumentException("No content type for asset " + name);
+	}
+
+	private static String hash(byte[] bytes) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+			return HexFormat.of().formatHex(digest).substring(0, HASH_CHARS);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+
+	private static ByteBuffer direct(byte[] bytes) {
+		return ByteBuffer.allocateDirect(bytes.length).put(bytes).flip().asReadOnlyBuffer();
+	}
+
+	private static byte[] gzip(byte[] bytes) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 3 + 64);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+			{
+				def.setLevel(Deflater.BEST_COMPRESSION);
+			}
+		}) {
+			gzip.write(bytes);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return out.toByteArray();
+	}
+
+	private static boolean brotliAvailable() {
+		if (!Brotli4jLoader.isAvailable()) {
+			System.err.println("Brotli unavailable, assets are served with gzip only: " + Brotli4jLoader.getUnavailabilityCause());
+			return false;
+		}
+		return true;
+	}
+
+	private static byte[] brotli(byte[] bytes) {
+		try {
+			return Encoder.compress(bytes, new Encoder.Parameters().setQuality(11).setMode(Encoder.Mode.TEXT));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
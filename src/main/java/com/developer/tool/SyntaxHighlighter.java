@@ -0,0 +1,310 @@
+package com.developer.tool;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Server-side syntax highlighting for the languages snippets are mostly written in. A
+ * single left-to-right pass splits the code into comments, strings, numbers, keywords,
+ * annotations, type names and shell variables, and wraps each in a span whose class
+ * (tc, ts, tn, tk, ta, tt, tv) app.css colours. Everything else is copied, HTML-escaped.
+ *
+ * It is a lexer, not a parser. It gets the things that make code readable at a glance
+ * right and can be fooled by the rest (regex literals, heredocs, nested template strings).
+ * Languages it doesn't know come back escaped but otherwise plain.
+ *
+ * Snippets store the highlighted HTML of their preview, written with the code, so lists
+ * never highlight anything. Changing the output here needs a schema migration that
+ * recomputes snippets.code_preview_html, see {@link DatabaseManager#initializeDatabase}.
+ */
+public final class SyntaxHighlighter {
+
+	private static final Map<String, Lexicon> LEXICONS = lexicons();
+
+	private SyntaxHighlighter() {
+	}
+
+	/**
+	 * {@code code} as HTML, highlighted if {@code language} is one it knows.
+	 */
+	public static String highlight(String code, String language) {
+		if (code == null || code.isEmpty()) {
+			return "";
+		}
+		Lexicon lexicon = language == null ? null : LEXICONS.get(language.strip().toLowerCase(Locale.ROOT));
+		StringBuilder html = new StringBuilder(code.length() + code.length() / 2);
+		if (lexicon == null) {
+			escape(html, code, 0, code.length());
+		} else {
+			lex(html, code, lexicon);
+		}
+		return html.toString();
+	}
+
+	/**
+	 * What one family of languages looks like to the lexer.
+	 *
+	 * @param lineComments   markers that comment out the rest of the line
+	 * @param blockComment   opening and closing marker, or null
+	 * @param quotes         characters that open a string closed by the same character
+	 * @param multiLineQuote quote whose strings may span lines (JS template literals), or 0
+	 * @param tripleQuotes   Python's ''' and """ strings
+	 * @param annotations    '@' starts an annotation or decorator
+	 * @param variables      '$' starts a variable, and '...' strings are literal (shell)
+	 * @param capitalTypes   capitalized identifiers are type names
+	 * @param ignoreCase     keywords match in any case (SQL)
+	 */
+	private record Lexicon(String[] lineComments, String[] blockComment, String quotes, char multiLineQuote,
+			boolean tripleQuotes, boolean annotations, boolean variables, boolean capitalTypes, boolean ignoreCase,
+			Set<String> keywords) {
+	}
+
+	private static void lex(StringBuilder html, String code, Lexicon lexicon) {
+		int length = code.length();
+		int i = 0;
+		while (i < length) {
+			char c = code.charAt(i);
+			int end;
+
+			if ((end = comment(code, i, lexicon)) > i) {
+				span(html, "tc", code, i, end);
+			} else if (lexicon.quotes.indexOf(c) >= 0) {
+				end = string(code, i, lexicon);
+				span(html, "ts", code, i, end);
+			} else if (isDigit(c) || (c == '.' && i + 1 < length && isDigit(code.charAt(i + 1)))) {
+				end = i + 1;
+				while (end < length && (isWordChar(code.charAt(end)) || code.charAt(end) == '.')) {
+					end++;
+				}
+				span(html, "tn", code, i, end);
+			} else if (c == '@' && lexicon.annotations && i + 1 < length && isWordStart(code.charAt(i + 1))) {
+				end = word(code, i + 1);
+				while (end + 1 < length && code.charAt(end) == '.' && isWordStart(code.charAt(end + 1))) {
+					end = word(code, end + 1);
+				}
+				span(html, "ta", code, i, end);
+			} else if (c == '$' && lexicon.variables && i + 1 < length && isVariableStart(code.charAt(i + 1))) {
+				end = variable(code, i);
+				span(html, "tv", code, i, end);
+			} else if (isWordStart(c)) {
+				end = word(code, i);
+				String word = code.substring(i, end);
+				if (lexicon.keywords.contains(lexicon.ignoreCase ? word.toLowerCase(Locale.ROOT) : word)) {
+					span(html, "tk", code, i, end);
+				} else if (lexicon.capitalTypes && Character.isUpperCase(c) && hasLowerCase(word)) {
+					span(html, "tt", code, i, end);
+				} else {
+					escape(html, code, i, end);
+				}
+			} else {
+				end = i + 1;
+				escape(html, code, i, end);
+			}
+			i = end;
+		}
+	}
+
+	/** End of the comment starting at {@code i}, or {@code i} if none does. */
+	private static int comment(String code, int i, Lexicon lexicon) {
+		for (String marker : lexicon.lineComments) {
+			if (code.startsWith(marker, i)) {
+				// Shell "#" comments only where a word could start: not in foo#bar or ${#list}
+				if (lexicon.variables && i > 0 && !Character.isWhitespace(code.charAt(i - 1))
+						&& ";(|&".indexOf(code.charAt(i - 1)) < 0) {
+					return i;
+				}
+				int newline = code.indexOf('\n', i);
+				return newline < 0 ? code.length() : newline;
+			}
+		}
+		String[] block = lexicon.blockComment;
+		if (block != null && code.startsWith(block[0], i)) {
+			int close = code.indexOf(block[1], i + block[0].length());
+			return close < 0 ? code.length() : close + block[1].length();
+		}
+		return i;
+	}
+
+	/** End of the string opening at {@code i}; an unclosed one ends with its line. */
+	private static int string(String code, int i, Lexicon lexicon) {
+		char quote = code.charAt(i);
+		if (lexicon.tripleQuotes && code.startsWith(String.valueOf(quote).repeat(3), i)) {
+			int close = code.indexOf(String.valueOf(quote).repeat(3), i + 3);
+			return close < 0 ? code.length() : close + 3;
+		}
+		boolean multiLine = quote == lexicon.multiLineQuote;
+		// Shell single quotes take no escapes
+		boolean escapes = !(quote == '\'' && lexicon.variables);
+		int j = i + 1;
+		while (j < code.length()) {
+			char c = code.charAt(j);
+			if (c == '\\' && escapes) {
+				j += 2;
+				continue;
+			}
+			if (c == quote) {
+				return j + 1;
+			}
+			if (c == '\n' && !multiLine) {
+				return j;
+			}
+			j++;
+		}
+		return code.length();
+	}
+
+	private static int word(String code, int i) {
+		int end = i + 1;
+		while (end < code.length() && isWordChar(code.charAt(end))) {
+			end++;
+		}
+		return end;
+	}
+
+	/** $name, ${...}, $1, $?, $@ and the like. */
+	private static int variable(String code, int i) {
+		char next = code.charAt(i + 1);
+		if (next == '{') {
+			int close = code.indexOf('}', i + 2);
+			int newline = code.indexOf('\n', i + 2);
+			if (close < 0 || (newline >= 0 && newline < close)) {
+				return i + 2;
+			}
+			return close + 1;
+		}
+		if (isWordStart(next)) {
+			return word(code, i + 1);
+		}
+		return i + 2;
+	}
+
+	private static boolean isVariableStart(char c) {
+		return c == '{' || isWordStart(c) || isDigit(c) || "?@#*!$-".indexOf(c) >= 0;
+	}
+
+	private static boolean isWordStart(char c) {
+		return Character.isLetter(c) || c == '_';
+	}
+
+	private static boolean isWordChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '_';
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean hasLowerCase(String word) {
+		for (int i = 1; i < word.length(); i++) {
+			if (Character.isLowerCase(word.charAt(i))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void span(StringBuilder html, String type, String code, int start, int end) {
+		// Unquoted, as a bare word may be: there is one of these per token, and it is stored
+		html.append("<span class=").append(type).append('>');
+		escape(html, code, start, end);
+		html.append("</span>");
+	}
+
+	/** Text content only ever sits between tags, so &, < and > are all that need escaping. */
+	private static void escape(StringBuilder html, String code, int start, int end) {
+		for (int i = start; i < end; i++) {
+			char c = code.charAt(i);
+			switch (c) {
+				case '&' -> html.append("&amp;");
+				case '<' -> html.append("&lt;");
+				case '>' -> html.append("&gt;");
+				default -> html.append(c);
+			}
+		}
+	}
+
+	private static Map<String, Lexicon> lexicons() {
+		String[] slashes = {"//"};
+		String[] cBlock = {"/*", "*/"};
+
+		Lexicon java = new Lexicon(slashes, cBlock, "\"'", (char) 0, false, true, false, true, false, Set.of(
+				"abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const",
+				"continue", "default", "do", "double", "else", "enum", "extends", "final", "finally", "float",
+				"for", "goto", "if", "implements", "import", "instanceof", "int", "interface", "long", "native",
+				"new", "package", "private", "protected", "public", "return", "short", "static", "strictfp",
+				"super", "switch", "synchronized", "this", "throw", "throws", "transient", "try", "void",
+				"volatile", "while", "var", "record", "sealed", "permits", "yield", "true", "false", "null"));
+		Lexicon kotlin = new Lexicon(slashes, cBlock, "\"'", (char) 0, true, true, false, true, false, Set.of(
+				"as", "break", "class", "continue", "do", "else", "false", "for", "fun", "if", "in", "interface",
+				"is", "null", "object", "package", "return", "super", "this", "throw", "true", "try", "typealias",
+				"val", "var", "when", "while", "by", "catch", "constructor", "companion", "data", "enum", "final",
+				"finally", "import", "init", "internal", "lateinit", "open", "override", "private", "protected",
+				"public", "sealed", "suspend", "inline", "abstract"));
+		Set<String> jsKeywords = Set.of(
+				"async", "await", "break", "case", "catch", "class", "const", "continue", "debugger", "default",
+				"delete", "do", "else", "export", "extends", "false", "finally", "for", "from", "function", "if",
+				"import", "in", "instanceof", "let", "new", "null", "of", "return", "static", "super", "switch",
+				"this", "throw", "true", "try", "typeof", "undefined", "var", "void", "while", "with", "yield",
+				"interface", "type", "enum", "implements", "private", "protected", "public", "readonly",
+				"abstract", "as", "declare", "namespace", "keyof", "any", "string", "number", "boolean", "never");
+		Lexicon javascript = new Lexicon(slashes, cBlock, "\"'`", '`', false, true, false, true, false, jsKeywords);
+		Lexicon python = new Lexicon(new String[] {"#"}, null, "\"'", (char) 0, true, true, false, true, false, Set.of(
+				"False", "None", "True", "and", "as", "assert", "async", "await", "break", "class", "continue",
+				"def", "del", "elif", "else", "except", "finally", "for", "from", "global", "if", "import", "in",
+				"is", "lambda", "nonlocal", "not", "or", "pass", "raise", "return", "try", "while", "with",
+				"yield", "match", "case", "self"));
+		Lexicon sql = new Lexicon(new String[] {"--"}, cBlock, "'\"", (char) 0, false, false, false, false, true, Set.of(
+				"select", "from", "where", "and", "or", "not", "in", "is", "null", "like", "between", "exists",
+				"insert", "into", "values", "update", "set", "delete", "create", "table", "index", "view",
+				"drop", "alter", "add", "column", "primary", "key", "foreign", "references", "unique", "default",
+				"check", "constraint", "join", "inner", "left", "right", "full", "outer", "cross", "on", "using",
+				"group", "by", "order", "having", "limit", "offset", "union", "all", "distinct", "as", "case",
+				"when", "then", "else", "end", "asc", "desc", "with", "recursive", "returning", "begin", "commit",
+				"rollback", "transaction", "if", "true", "false", "integer", "int", "text", "varchar", "char",
+				"boolean", "timestamp", "date", "numeric", "decimal", "real", "blob", "count", "sum", "avg",
+				"min", "max", "coalesce", "cast", "over", "partition", "explain", "analyze", "vacuum", "pragma"));
+		Lexicon shell = new Lexicon(new String[] {"#"}, null, "\"'", (char) 0, false, false, true, false, false, Set.of(
+				"if", "then", "else", "elif", "fi", "for", "while", "until", "do", "done", "case", "esac", "in",
+				"function", "return", "exit", "break", "continue", "local", "export", "readonly", "declare",
+				"echo", "cd", "source", "set", "unset", "shift", "trap", "eval", "exec", "test", "read"));
+		Lexicon c = new Lexicon(slashes, cBlock, "\"'", (char) 0, false, false, false, false, false, Set.of(
+				"auto", "break", "case", "char", "const", "continue", "default", "do", "double", "else", "enum",
+				"extern", "float", "for", "goto", "if", "inline", "int", "long", "register", "return", "short",
+				"signed", "sizeof", "static", "struct", "switch", "typedef", "union", "unsigned", "void",
+				"volatile", "while", "bool", "true", "false", "nullptr", "NULL", "class", "namespace", "template",
+				"typename", "public", "private", "protected", "virtual", "override", "new", "delete", "this",
+				"using", "try", "catch", "throw", "constexpr", "include", "define", "ifdef", "ifndef",
+				"endif", "pragma"));
+		Lexicon csharp = new Lexicon(slashes, cBlock, "\"'", (char) 0, false, false, false, true, false, Set.of(
+				"abstract", "as", "async", "await", "base", "bool", "break", "byte", "case", "catch", "char",
+				"class", "const", "continue", "decimal", "default", "do", "double", "else", "enum", "event",
+				"false", "finally", "float", "for", "foreach", "get", "if", "in", "int", "interface", "internal",
+				"is", "long", "namespace", "new", "null", "object", "out", "override", "private", "protected",
+				"public", "readonly", "record", "ref", "return", "sealed", "set", "static", "string", "struct",
+				"switch", "this", "throw", "true", "try", "typeof", "using", "var", "virtual", "void", "while"));
+		Lexicon go = new Lexicon(slashes, cBlock, "\"'`", '`', false, false, false, false, false, Set.of(
+				"break", "case", "chan", "const", "continue", "default", "defer", "else", "fallthrough", "for",
+				"func", "go", "goto", "if", "import", "interface", "map", "package", "range", "return", "select",
+				"struct", "switch", "type", "var", "nil", "true", "false", "error", "string", "int", "int64",
+				"bool", "byte", "rune", "float64", "make", "len", "append"));
+		Lexicon rust = new Lexicon(slashes, cBlock, "\"", (char) 0, false, false, false, true, false, Set.of(
+				"as", "async", "await", "break", "const", "continue", "crate", "dyn", "else", "enum", "extern",
+				"false", "fn", "for", "if", "impl", "in", "let", "loop", "match", "mod", "move", "mut", "pub",
+				"ref", "return", "self", "Self", "static", "struct", "super", "trait", "true", "type", "unsafe",
+				"use", "where", "while", "i32", "i64", "u8", "u32", "u64", "usize", "f64", "bool", "str"));
+
+		return Map.ofEntries(
+				Map.entry("java", java),
+				Map.entry("kotlin", kotlin), Map.entry("kt", kotlin),
+				Map.entry("javascript", javascript), Map.entry("js", javascript), Map.entry("jsx", javascript),
+				Map.entry("typescript", javascript), Map.entry("ts", javascript), Map.entry("tsx", javascript),
+				Map.entry("python", python), Map.entry("py", python),
+				Map.entry("sql", sql), Map.entry("sqlite", sql), Map.entry("postgresql", sql), Map.entry("mysql", sql),
+				Map.entry("shell", shell), Map.entry("bash", shell), Map.entry("sh", shell), Map.entry("zsh", shell),
+				Map.entry("c", c), Map.entry("cpp", c), Map.entry("c++", c), Map.entry("h", c),
+				Map.entry("csharp", csharp), Map.entry("c#", csharp), Map.entry("cs", csharp),
+				Map.entry("go", go), Map.entry("golang", go),
+				Map.entry("rust", rust), Map.entry("rs", rust));
+	}
+}
@@ -0,0 +1,259 @@
+package com.developer.tool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory trigram index over one user's library, for typo-tolerant search. Words are
+ * taken from the description, tags and language, plus identifiers from the code. Each
+ * distinct word is indexed by its trigrams, and each word lists the snippets it occurs in.
+ *
+ * A query word is matched against the vocabulary by trigram (Jaccard) similarity, so
+ * "hashmpa" still finds "hashmap"; a snippet scores the best similarity it has for each
+ * query word, summed. Posting lists are plain int arrays of word and snippet ordinals.
+ *
+ * Removing a snippet only clears its bit in {@link #live}; its ordinal stays in the
+ * posting lists until the index is rebuilt, which {@link #needsRebuild()} asks for once
+ * most of it is dead. Thread-safe.
+ */
+public final class TrigramIndex {
+
+	/** Words less similar than this to a query word don't match it. */
+	static final double MIN_SIMILARITY = 0.3;
+
+	private static final int MAX_WORD_LENGTH = 64;
+
+	private final Map<String, Integer> wordIds = new HashMap<>();
+	private final List<String> words = new ArrayList<>();
+	private final List<IntList> wordDocs = new ArrayList<>();
+	private final IntList wordTrigramCounts = new IntList();
+	private final Map<Integer, IntList> trigramWords = new HashMap<>();
+
+	private final Map<String, Integer> docIds = new HashMap<>();
+	private final List<String> docSnippetIds = new ArrayList<>();
+	private final BitSet live = new BitSet();
+	private int liveCount;
+
+	private long bytes;
+
+	/**
+	 * Indexes {@code snippet}, replacing whatever was indexed under its id before.
+	 */
+	public synchronized void add(Snippet snippet) {
+		remove(snippet.getId());
+
+		int doc = docSnippetIds.size();
+		docSnippetIds.add(snippet.getId());
+		docIds.put(snippet.getId(), doc);
+		live.set(doc);
+		liveCount++;
+		bytes += 160 + snippet.getId().length();
+
+		for (String word : wordsOf(snippet)) {
+			IntList docs = wordDocs.get(wordId(word));
+			bytes -= docs.bytes();
+			docs.add(doc);
+			bytes += docs.bytes();
+		}
+	}
+
+	public synchronized void remove(String snippetId) {
+		Integer doc = docIds.remove(snippetId);
+		if (doc != null) {
+			live.clear(doc);
+			liveCount--;
+		}
+	}
+
+	/**
+	 * True once more of the index is removed snippets than live ones.
+	 */
+	public synchronized boolean needsRebuild() {
+		int dead = docSnippetIds.size() - liveCount;
+		return dead > 1024 && dead > liveCount;
+	}
+
+	/** Rough heap footprint, for sizing the cache that holds indexes. */
+	public synchronized long bytes() {
+		return bytes;
+	}
+
+	/**
+	 * Snippet ids matching {@code query}, best first (ties go to the earlier-indexed
+	 * snippet), skipping {@code offset} and returning at most {@code limit}.
+	 */
+	public synchronized List<String> search(String query, int offset, int limit) {
+		Set<String> terms = new LinkedHashSet<>();
+		collectWords(query, terms);
+		float[] scores = new float[docSnippetIds.size()];
+		float[] termBest = new float[docSnippetIds.size()];
+		int[] shared = new int[words.size()];
+		IntList touched = new IntList();
+
+		for (String term : terms) {
+			int[] trigrams = trigrams(term);
+			touched.clear();
+			for (int trigram : trigrams) {
+				IntList matching = trigramWords.get(trigram);
+				if (matching == null) {
+					continue;
+				}
+				for (int i = 0; i < matching.size; i++) {
+					int word = matching.values[i];
+					if (shared[word]++ == 0) {
+						touched.add(word);
+					}
+				}
+			}
+
+			Arrays.fill(termBest, 0f);
+			for (int i = 0; i < touched.size; i++) {
+				int word = touched.values[i];
+				int common = shared[word];
+				shared[word] = 0;
+				float similarity = (float) common / (trigrams.length + wordTrigramCounts.values[word] - common);
+				if (similarity < MIN_SIMILARITY) {
+					continue;
+				}
+				IntList docs = wordDocs.get(word);
+				for (int j = 0; j < docs.size; j++) {
+					int doc = docs.values[j];
+					if (termBest[doc] < similarity) {
+						termBest[doc] = similarity;
+					}
+				}
+			}
+			for (int doc = 0; doc < scores.length; doc++) {
+				scores[doc] += termBest[doc];
+			}
+		}
+
+		// Score descending, then ordinal ascending, packed so a primitive sort does the ranking
+		long[] ranked = new long[liveCount];
+		int matches = 0;
+		for (int doc = live.nextSetBit(0); doc >= 0; doc = live.nextSetBit(doc + 1)) {
+			if (scores[doc] > 0) {
+				ranked[matches++] = ((long) (Integer.MAX_VALUE - Float.floatToIntBits(scores[doc])) << 32) | doc;
+			}
+		}
+		Arrays.sort(ranked, 0, matches);
+
+		List<String> page = new ArrayList<>(Math.max(0, Math.min(limit, matches - offset)));
+		for (int i = offset; i < matches && page.size() < limit; i++) {
+			page.add(docSnippetIds.get((int) ranked[i]));
+		}
+		return page;
+	}
+
+	private int wordId(String word) {
+		Integer id = wordIds.get(word);
+		if (id != null) {
+			return id;
+		}
+		id = words.size();
+		wordIds.put(word, id);
+		words.add(word);
+		wordDocs.add(new IntList());
+		int[] trigrams = trigrams(word);
+		wordTrigramCounts.add(trigrams.length);
+		for (int trigram : trigrams) {
+			IntList matching = trigramWords.computeIfAbsent(trigram, t -> new IntList());
+			bytes -= matching.bytes();
+			matching.add(id);
+			bytes += matching.bytes();
+		}
+		bytes += 96 + 2L * word.length();
+		return id;
+	}
+
+	static Set<String> wordsOf(Snippet snippet) {
+		Set<String> words = new LinkedHashSet<>();
+		collectWords(snippet.getDescription(), words);
+		collectWords(snippet.getLanguage(), words);
+		if (snippet.getTags() != null) {
+			for (String tag : snippet.getTags()) {
+				collectWords(tag, words);
+			}
+		}
+		collectWords(snippet.getCode(), words);
+		return words;
+	}
+
+	/**
+	 * Adds the lower-cased words of {@code text}: runs of letters, digits and underscores
+	 * that start with a letter or underscore and are at least two chars long. Numbers are
+	 * left out; they'd fill the vocabulary without ever being usefully misspelt.
+	 */
+	private static void collectWords(String text, Set<String> into) {
+		if (text == null) {
+			return;
+		}
+		int length = text.length();
+		int i = 0;
+		while (i < length) {
+			char c = text.charAt(i);
+			if (!Character.isLetter(c) && c != '_') {
+				i++;
+				// Skip the rest of a number so "123abc" doesn't yield "abc"
+				while (i < length && Character.isLetterOrDigit(c) && isWordChar(text.charAt(i))) {
+					i++;
+				}
+				continue;
+			}
+			int start = i;
+			while (i < length && isWordChar(text.charAt(i))) {
+				i++;
+			}
+			if (i - start >= 2 && i - start <= MAX_WORD_LENGTH) {
+				into.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+			}
+		}
+	}
+
+	private static boolean isWordChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '_';
+	}
+
+	/**
+	 * Distinct trigrams of {@code word} padded with two spaces in front and one behind,
+	 * as pg_trgm does, so short words and word starts carry weight. Each is packed into an
+	 * int, 10 bits per char; characters above U+03FF can collide, which only blurs scores.
+	 */
+	static int[] trigrams(String word) {
+		String padded = "  " + word + " ";
+		int[] trigrams = new int[padded.length() - 2];
+		for (int i = 0; i < trigrams.length; i++) {
+			trigrams[i] = (padded.charAt(i) & 0x3FF) << 20 | (padded.charAt(i + 1) & 0x3FF) << 10
+					| (padded.charAt(i + 2) & 0x3FF);
+		}
+		return Arrays.stream(trigrams).distinct().toArray();
+	}
+
+	/** Growable int array; posting lists are appended in ordinal order, so they stay sorted. */
+	private static final class IntList {
+		int[] values = new int[4];
+		int size;
+
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size + (size >> 1));
+			}
+			values[size++] = value;
+		}
+
+		void clear() {
+			size = 0;
+		}
+
+		long bytes() {
+			return 32 + 4L * values.length;
+		}
+	}
+}
@@ -6,17 +6,27 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.UUID;
 
-import org.mindrot.jbcrypt.BCrypt;
-
 public class UserDAO {
 
+	private static final Metrics.Query CREATE = Metrics.query("user", "create");
+	private static final Metrics.Query FIND_BY_USERNAME = Metrics.query("user", "findByUsername");
+	private static final Metrics.Query FIND_BY_ID = Metrics.query("user", "findByUserId");
+
+	private final PasswordHasher passwordHasher;
+
+	public UserDAO(PasswordHasher passwordHasher) {
+		this.passwordHasher = passwordHasher;
+	}
+
 	public User create(String username, String password) {
 		String sql = "INSERT INTO users (id, username, password) VALUES (?, ?, ?)";
-		try (Connection conn = DatabaseManager.getConnection(); 
-				PreparedStatement pstmt = conn.prepareStatement(sql)) {
+		String id = UUID.randomUUID().toString();
+		// Hash before taking the writer so the connection isn't held during BCrypt
+		String passwordHash = passwordHasher.hash(password);
 
-			String id = UUID.randomUUID().toString();
-			String passwordHash = BCrypt.hashpw(password, BCrypt.gensalt());
+		long started = System.nanoTime();
+		try (Connection conn = DatabaseManager.getWriteConnection(); 
+				PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
 			pstmt.setString(1, id);
 			pstmt.setString(2, username);
@@ -28,6 +38,8 @@ public class UserDAO {
 			return user;
 		} catch (SQLException e) {
 			throw new RuntimeException("Failed to create user", e);
+		} finally {
+			CREATE.record(started, 1);
 		}
 	}
 	
@@ -35,6 +47,8 @@ public class UserDAO {
 	public User findByUsername(String username) {
         String sql = "SELECT * FROM users WHERE username = ?";
         
+        long started = System.nanoTime();
+        int rows = 0;
         try (Connection conn = DatabaseManager.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
@@ -42,6 +56,7 @@ public class UserDAO {
             ResultSet rs = pstmt.executeQuery();
             
             if (rs.next()) {
+            	rows = 1;
             	return new User(
             		    rs.getString("id"),
             		    rs.getString("username"),
@@ -53,6 +68,8 @@ public class UserDAO {
             
         } catch (SQLException e) {
             throw new RuntimeException("Failed to find user", e);
+        } finally {
+            FIND_BY_USERNAME.record(started, rows);
         }
     }
 	
@@ -60,6 +77,8 @@ public class UserDAO {
 	public User findByUserId(String userId) {
         String sql = "SELECT * FROM users WHERE id = ?";
         
+        long started = System.nanoTime();
+        int rows = 0;
         try (Connection conn = DatabaseManager.getConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
@@ -67,6 +86,7 @@ public class UserDAO {
             ResultSet rs = pstmt.executeQuery();
             
             if (rs.next()) {
+            	rows = 1;
             	return new User(
             		    rs.getString("id"),
             		    rs.getString("username"),
@@ -78,6 +98,8 @@ public class UserDAO {
             
         } catch (SQLException e) {
             throw new RuntimeException("Failed to find user", e);
+        } finally {
+            FIND_BY_ID.record(started, rows);
         }
     }
 }
@@ -0,0 +1,206 @@
+package com.developer.tool;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One user's snippet embeddings in a single contiguous float array, row after row, so a
+ * query is one linear pass of dot products over memory the CPU can prefetch. Vectors
+ * are unit length, so the dot product is the cosine similarity.
+ *
+ * The pass uses the JDK Vector API when the JVM was started with
+ * {@code --add-modules jdk.incubator.vector}, and a plain loop otherwise.
+ * Removing a row moves the last row into its place. Thread-safe.
+ */
+public final class VectorIndex {
+
+	private static final int DIMENSIONS = SnippetEmbedder.DIMENSIONS;
+	private static final Scorer SCORER = pickScorer();
+
+	private float[] vectors = new float[16 * DIMENSIONS];
+	private String[] ids = new String[16];
+	private final Map<String, Integer> rows = new HashMap<>();
+	private int count;
+
+	/**
+	 * Adds or replaces the vector for {@code snippetId}.
+	 */
+	public synchronized void put(String snippetId, float[] vector) {
+		Integer row = rows.get(snippetId);
+		if (row == null) {
+			row = count++;
+			if (count > ids.length) {
+				ids = Arrays.copyOf(ids, ids.length * 2);
+				vectors = Arrays.copyOf(vectors, ids.length * DIMENSIONS);
+			}
+			ids[row] = snippetId;
+			rows.put(snippetId, row);
+		}
+		System.arraycopy(vector, 0, vectors, row * DIMENSIONS, DIMENSIONS);
+	}
+
+	/**
+	 * Adds a vector stored by {@link SnippetEmbedder#toBytes}, skipping ones of another size.
+	 */
+	public synchronized void put(String snippetId, byte[] stored) {
+		float[] vector = new float[DIMENSIONS];
+		if (SnippetEmbedder.fromBytes(stored, vector, 0)) {
+			put(snippetId, vector);
+		}
+	}
+
+	public synchronized void remove(String snippetId) {
+		Integer row = rows.remove(snippetId);
+		if (row == null) {
+			return;
+		}
+		int last = --count;
+		if (row != last) {
+			System.arraycopy(vectors, last * DIMENSIONS, vectors, row * DIMENSIONS, DIMENSIONS);
+			ids[row] = ids[last];
+			rows.put(ids[row], row);
+		}
+		ids[last] = null;
+	}
+
+	/**
+	 * Drops spare capacity, e.g. once loading is done and few rows are expected to follow.
+	 */
+	public synchronized void trimToSize() {
+		ids = Arrays.copyOf(ids, Math.max(count, 1));
+		vectors = Arrays.copyOf(vectors, ids.length * DIMENSIONS);
+	}
+
+	public synchronized int size() {
+		return count;
+	}
+
+	/** Heap footprint, for sizing the cache that holds indexes. */
+	public synchronized long bytes() {
+		return 4L * vectors.length + 8L * ids.length + 120L * count;
+	}
+
+	/**
+	 * Ids of the snippets most similar to {@code query}, best first, skipping {@code offset}
+	 * and returning at most {@code limit}. Snippets with nothing in common (similarity
+	 * of zero or less) are left out.
+	 */
+	public synchronized List<String> nearest(float[] query, int offset, int limit) {
+		if (count == 0 || offset + limit <= 0) {
+			return List.of();
+		}
+		float[] scores = new float[count];
+		SCORER.score(vectors, count, query, scores);
+
+		// Bounded min-heap over parallel primitive arrays: the root is the weakest kept
+		int k = Math.min(count, offset + limit);
+		float[] heapScores = new float[k];
+		int[] heapRows = new int[k];
+		int size = 0;
+		for (int row = 0; row < count; row++) {
+			float score = scores[row];
+			if (score <= 0) {
+				continue;
+			}
+			if (size < k) {
+				int i = size++;
+				while (i > 0 && heapScores[(i - 1) / 2] > score) {
+					heapScores[i] = heapScores[(i - 1) / 2];
+					heapRows[i] = heapRows[(i - 1) / 2];
+					i = (i - 1) / 2;
+				}
+				heapScores[i] = score;
+				heapRows[i] = row;
+			} else if (score > heapScores[0]) {
+				siftDown(heapScores, heapRows, size, score, row);
+			}
+		}
+
+		// Drain weakest first into the tail, leaving the array best-first
+		String[] ranked = new String[size];
+		for (int n = size; n > 0; n--) {
+			ranked[n - 1] = ids[heapRows[0]];
+			siftDown(heapScores, heapRows, n - 1, heapScores[n - 1], heapRows[n - 1]);
+		}
+		List<String> page = new ArrayList<>(Math.max(0, size - offset));
+		for (int i = offset; i < size; i++) {
+			page.add(ranked[i]);
+		}
+		return page;
+	}
+
+	/** Puts ({@code score}, {@code row}) at the root of a heap of {@code size} and sifts it down. */
+	private static void siftDown(float[] scores, int[] rows, int size, float score, int row) {
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size) {
+				break;
+			}
+			if (child + 1 < size && scores[child + 1] < scores[child]) {
+				child++;
+			}
+			if (scores[child] >= score) {
+				break;
+			}
+			scores[i] = scores[child];
+			rows[i] = rows[child];
+			i = child;
+		}
+		if (size > 0) {
+			scores[i] = score;
+			rows[i] = row;
+		}
+	}
+
+	public static String scorerName() {
+		return SCORER.name();
+	}
+
+	/**
+	 * Writes the dot product of {@code query} with each of the first {@code rows} rows of
+	 * {@code matrix} into {@code out}.
+	 */
+	interface Scorer {
+		void score(float[] matrix, int rows, float[] query, float[] out);
+
+		String name();
+	}
+
+	private static Scorer pickScorer() {
+		if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+			try {
+				return (Scorer) Class.forName("com.developer.tool.SimdScorer").getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError e) {
+				System.err.println("Vector API unavailable, semantic search uses scalar scoring: " + e);
+			}
+		}
+		return new ScalarScorer();
+	}
+
+	private static final class ScalarScorer implements Scorer {
+		@Override
+		public void score(float[] matrix, int rows, float[] query, float[] out) {
+			for (int row = 0; row < rows; row++) {
+				int base = row * DIMENSIONS;
+				// Four accumulators so the adds don't all wait on one another
+				float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+				for (int i = 0; i < DIMENSIONS; i += 4) {
+					s0 += matrix[base + i] * query[i];
+					s1 += matrix[base + i + 1] * query[i + 1];
+					s2 += matrix[base + i + 2] * query[i + 2];
+					s3 += matrix[base + i + 3] * query[i + 3];
+				}
+				out[row] = (s0 + s1) + (s2 + s3);
+			}
+		}
+
+		@Override
+		public String name() {
+			return "scalar";
+		}
+	}
+}
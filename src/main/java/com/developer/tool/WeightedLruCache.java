@@ -0,0 +1,237 @@
+package com.developer.tool;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Small LRU cache bounded by total weight rather than entry count, so one huge
+ * library can't crowd out hundreds of small ones without being accounted for.
+ *
+ * Every write bumps a stamp. Loaders read {@link #stamp()} before going to the
+ * database and store with {@link #putIfUnchanged}, which drops the value if any
+ * write happened in between instead of caching a stale read.
+ *
+ * The lock only covers the map and its bookkeeping. Values are weighed, and updates
+ * computed, outside it, so a write patching one user's large value never holds up
+ * another user's lookup. Callers that patch one key concurrently order those patches
+ * themselves; an update that finds its value was replaced while it ran drops the key.
+ */
+public class WeightedLruCache<K, V> {
+
+	private final String name;
+	private final long maxWeight;
+	private final ToLongFunction<V> weigher;
+	// ReentrantLock rather than synchronized, so virtual threads waiting on it don't pin their carriers
+	private final ReentrantLock lock = new ReentrantLock();
+	private final LinkedHashMap<K, Weighted<V>> entries = new LinkedHashMap<>(64, 0.75f, true);
+
+	private long totalWeight;
+	private long stamp;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public WeightedLruCache(String name, long maxWeight, ToLongFunction<V> weigher) {
+		this.name = name;
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+	}
+
+	public V get(K key) {
+		lock.lock();
+		try {
+			Weighted<V> entry = entries.get(key);
+			if (entry == null) {
+				misses++;
+				return null;
+			}
+			hits++;
+			return entry.value;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long stamp() {
+		lock.lock();
+		try {
+			return stamp;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Stores a freshly loaded value unless a write happened since {@code loadStamp}
+	 * was taken. Returns false if the value was not cached.
+	 */
+	public boolean putIfUnchanged(K key, V value, long loadStamp) {
+		long weight = weigher.applyAsLong(value);
+		lock.lock();
+		try {
+			if (loadStamp != stamp) {
+				return false;
+			}
+			return store(key, value, weight);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Stores a value that can't go stale, e.g. one tagged with the version it was read at.
+	 * Returns false if it alone outweighs the cache.
+	 */
+	public boolean put(K key, V value) {
+		long weight = weigher.applyAsLong(value);
+		lock.lock();
+		try {
+			return store(key, value, weight);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Applies {@code update} to a cached value, which it may change in place, and weighs
+	 * the result. Absent keys are left absent.
+	 */
+	public void update(K key, UnaryOperator<V> update) {
+		V current = begin(key);
+		if (current != null) {
+			V updated = update.apply(current);
+			commit(key, current, updated, entry -> weigher.applyAsLong(updated));
+		}
+	}
+
+	/**
+	 * Like {@link #update}, for a value whose change in weight {@code patch} works out as
+	 * it goes, so the whole value isn't weighed again. Absent keys are left absent.
+	 */
+	public void patch(K key, Function<V, Patch<V>> patch) {
+		V current = begin(key);
+		if (current != null) {
+			Patch<V> patched = patch.apply(current);
+			commit(key, current, patched.value(), entry -> entry.weight + patched.weightDelta());
+		}
+	}
+
+	/**
+	 * A patched value and how much heavier it is than the one it replaces.
+	 */
+	public record Patch<V>(V value, long weightDelta) {
+	}
+
+	public void invalidate(K key) {
+		lock.lock();
+		try {
+			stamp++;
+			remove(key);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void clear() {
+		lock.lock();
+		try {
+			stamp++;
+			entries.clear();
+			totalWeight = 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/** Bumps the stamp for a write and returns the value it is to be applied to, or null. */
+	private V begin(K key) {
+		lock.lock();
+		try {
+			stamp++;
+			Weighted<V> entry = entries.get(key);
+			return entry != null ? entry.value : null;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Swaps in {@code updated} if the key still holds {@code original}; if something else
+	 * was stored meanwhile, the update may have been built on the wrong value, so the key
+	 * is dropped to be loaded again.
+	 */
+	private void commit(K key, V original, V updated, ToLongFunction<Weighted<V>> weight) {
+		lock.lock();
+		try {
+			Weighted<V> entry = entries.get(key);
+			if (entry == null) {
+				return;
+			}
+			if (entry.value != original) {
+				remove(key);
+				return;
+			}
+			long newWeight = weight.applyAsLong(entry);
+			if (newWeight > maxWeight) {
+				remove(key);
+				return;
+			}
+			store(key, updated, newWeight);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void remove(K key) {
+		Weighted<V> entry = entries.remove(key);
+		if (entry != null) {
+			totalWeight -= entry.weight;
+		}
+	}
+
+	private boolean store(K key, V value, long weight) {
+		if (weight > maxWeight) {
+			return false;
+		}
+		Weighted<V> previous = entries.put(key, new Weighted<>(value, weight));
+		if (previous != null) {
+			totalWeight -= previous.weight;
+		}
+		totalWeight += weight;
+
+		Iterator<Map.Entry<K, Weighted<V>>> it = entries.entrySet().iterator();
+		while (totalWeight > maxWeight && it.hasNext()) {
+			Map.Entry<K, Weighted<V>> eldest = it.next();
+			if (eldest.getKey().equals(key)) {
+				continue;
+			}
+			totalWeight -= eldest.getValue().weight;
+			it.remove();
+			evictions++;
+		}
+		return true;
+	}
+
+	public Stats stats() {
+		lock.lock();
+		try {
+			long lookups = hits + misses;
+			return new Stats(name, entries.size(), totalWeight, maxWeight, hits, misses, evictions,
+					lookups == 0 ? 0 : (double) hits / lookups);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public record Stats(String name, int entries, long weight, long maxWeight, long hits, long misses,
+			long evictions, double hitRate) {
+	}
+
+	private record Weighted<V>(V value, long weight) {
+	}
+}
@@ -0,0 +1,8 @@
+function copyCode(button){
+    // Cards of long snippets only hold a preview; fetch the rest to copy it
+    const url = button.dataset.codeUrl;
+    const code = url ? fetch(url).then(r => r.text()) : Promise.resolve(button.nextElementSibling.innerText);
+    code.then(text => navigator.clipboard.writeText(text));
+    button.textContent = "Copied!";
+    setTimeout(()=>button.textContent="Copy",1500);
+}
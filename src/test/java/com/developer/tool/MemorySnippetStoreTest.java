@@ -0,0 +1,93 @@
+package com.developer.tool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MemorySnippetStoreTest {
+
+	private static final String USER = "user";
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void searchAgreesWithStoreAfterConcurrentUpdatesAndDeleteOfOneId() throws Exception {
+		ExecutorService threads = Executors.newFixedThreadPool(3);
+		try (MemorySnippetStore store = new MemorySnippetStore(dir, 1 << 20, true, 3600, 1 << 20, 1 << 20, 1 << 20)) {
+			for (int round = 0; round < 200; round++) {
+				String id = "snippet-" + round;
+				store.create(snippet(id, "cherry"), USER);
+				// Built now, so the writes below have to keep it current rather than it being rebuilt
+				assertEquals(List.of(id), ids(store.findSearchMatches("cherry", USER, 10, () -> {
+				})));
+
+				CountDownLatch start = new CountDownLatch(1);
+				List<Future<?>> writes = new ArrayList<>();
+				writes.add(threads.submit(() -> {
+					start.await();
+					store.update(snippet(id, "apple"), USER);
+					return null;
+				}));
+				writes.add(threads.submit(() -> {
+					start.await();
+					store.update(snippet(id, "banana"), USER);
+					return null;
+				}));
+				if (round % 2 == 0) {
+					writes.add(threads.submit(() -> {
+						start.await();
+						store.delete(id, USER);
+						return null;
+					}));
+				}
+				start.countDown();
+				for (Future<?> write : writes) {
+					write.get();
+				}
+
+				Snippet stored = store.findById(id);
+				for (String word : List.of("cherry", "apple", "banana")) {
+					if (stored != null && stored.getDescription().equals(word)) {
+						assertEquals(List.of(id), ids(store.findSearchMatches(word, USER, 10, () -> {
+						})), "round " + round + ": " + word + " is the snippet's text");
+					} else {
+						// With max 0, an id the index still holds for this word turns the result into null
+						assertEquals(List.of(), store.findSearchMatches(word, USER, 0, () -> {
+						}), "round " + round + ": " + word + " is still indexed");
+					}
+				}
+				store.delete(id, USER);
+				assertNull(store.findById(id));
+			}
+		} finally {
+			threads.shutdownNow();
+		}
+	}
+
+	private static List<String> ids(List<Snippet> snippets) {
+		return snippets.stream().map(Snippet::getId).toList();
+	}
+
+	private static Snippet snippet(String id, String word) {
+		Snippet snippet = new Snippet();
+		snippet.setId(id);
+		snippet.setCode("return 0;");
+		snippet.setLanguage("java");
+		snippet.setDescription(word);
+		snippet.setTags(List.of());
+		snippet.setCreatedAt(LocalDateTime.of(2024, 1, 1, 12, 0));
+		return snippet;
+	}
+}
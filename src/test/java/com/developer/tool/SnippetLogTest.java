@@ -0,0 +1,199 @@
+package com.developer.tool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SnippetLogTest {
+
+	private static final int SEGMENT_BYTES = 1 << 16;
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void tornLastRecordIsDroppedAndLaterLogsStillReplay() throws IOException {
+		Recorder first = new Recorder();
+		try (SnippetLog log = SnippetLog.open(dir, SEGMENT_BYTES, true, first)) {
+			for (String id : List.of("a", "b", "c")) {
+				log.sync(log.append(SnippetLog.put(snippet(id))));
+			}
+		}
+		// The machine stopped while c's payload was being written: its length is there, its second half isn't
+		long end = recordBytes("a") + recordBytes("b") + recordBytes("c");
+		int torn = (int) (recordBytes("c") - 8) / 2;
+		overwrite(dir.resolve("log-1.log"), end - torn, new byte[torn]);
+
+		Recorder second = new Recorder();
+		try (SnippetLog log = SnippetLog.open(dir, SEGMENT_BYTES, true, second)) {
+			assertEquals(List.of("put a", "put b"), second.ops);
+			log.sync(log.append(SnippetLog.put(snippet("d"))));
+		}
+
+		Recorder third = new Recorder();
+		try (SnippetLog log = SnippetLog.open(dir, SEGMENT_BYTES, true, third)) {
+			assertEquals(List.of("put a", "put b", "put d"), third.ops);
+		}
+	}
+
+	@Test
+	void recoveryStopsAtRecordFailingItsChecksum() throws IOException {
+		try (SnippetLog log = SnippetLog.open(dir, SEGMENT_BYTES, true, new Recorder())) {
+			for (String id : List.of("a", "b", "c")) {
+				log.append(SnippetLog.put(snippet(id)));
+			}
+			log.sync(Long.MAX_VALUE);
+		}
+		// Flip one byte inside b's payload, past its header
+		long offset = recordBytes("a") + 8 + 3;
+		byte[] original = read(dir.resolve("log-1.log"), offset, 1);
+		overwrite(dir.resolve("log-1.log"), offset, new byte[] { (byte) (original[0] ^ 0x40) });
+
+		Recorder recovered = new Recorder();
+		try (SnippetLog log = SnippetLog.open(dir, SEGMENT_BYTES, true, recovered)) {
+			assertEquals(List.of("put a"), recovered.ops);
+		}
+	}
+
+	@Test
+	void replaysOnlyLogsWrittenAfterSnapshot() throws IOException {
+		try (SnippetLog log = SnippetLog.open(dir, SEGMENT_BYTES, true, new Recorder())) {
+			log.append(SnippetLog.put(snippet("a")));
+			log.append(SnippetLog.put(snippet("b")));
+			long generation = log.rotate();
+			assertEquals(1, generation);
+			log.writeSnapshot(generation, List.of(snippet("a"), snippet("b")));
+			assertFalse(Files.exists(dir.resolve("log-1.log")), "the snapshot replaces the log it covers");
+
+			log.append(SnippetLog.delete("a", "user"));
+			log.sync(log.append(SnippetLog.put(snippet("c"))));
+		}
+
+		Recorder recovered = new Recorder();
+		try (SnippetLog log = SnippetLog.open(dir, SEGMENT_BYTES, true, recovered)) {
+			assertEquals(List.of("put a", "put b", "delete a", "put c"), recovered.ops);
+			assertEquals(Set.of("b", "c"), recovered.state.keySet());
+			assertFalse(log.fresh());
+			assertTrue(log.hasWritesSinceSnapshot());
+		}
+		assertEquals(Set.of("log-2.log", "log-3.log", "snapshot-1.snap"), files());
+	}
+
+	@Test
+	void leftoverTemporarySnapshotIsDeleted() throws IOException {
+		try (SnippetLog log = SnippetLog.open(dir, SEGMENT_BYTES, true, new Recorder())) {
+			log.sync(log.append(SnippetLog.put(snippet("a"))));
+		}
+		// A snapshot the process died writing; the log it would have replaced is still there
+		Files.write(dir.resolve("snapshot-1.tmp"), new byte[] { 0, 0, 0, 42, 1, 2, 3 });
+
+		Recorder recovered = new Recorder();
+		try (SnippetLog log = SnippetLog.open(dir, SEGMENT_BYTES, true, recovered)) {
+			assertEquals(List.of("put a"), recovered.ops);
+			assertFalse(log.fresh());
+		}
+		assertFalse(Files.exists(dir.resolve("snapshot-1.tmp")));
+	}
+
+	@Test
+	void seededSnippetsSurviveRestartThroughTheirSnapshot() throws IOException {
+		try (MemorySnippetStore store = store()) {
+			store.seedIfEmpty(() -> List.of(snippet("a"), snippet("b")));
+		}
+		assertTrue(files().stream().anyMatch(name -> name.endsWith(".snap")), "seeding writes a snapshot");
+
+		try (MemorySnippetStore store = store()) {
+			store.seedIfEmpty(() -> fail("a directory holding a snapshot is not seeded again"));
+			Snippet a = store.findById("a");
+			assertNotNull(a);
+			assertEquals("code of a", a.getCode());
+			assertNotNull(store.findById("b"));
+		}
+
+		Recorder recovered = new Recorder();
+		try (SnippetLog log = SnippetLog.open(dir, SEGMENT_BYTES, true, recovered)) {
+			assertFalse(log.fresh());
+			assertEquals(Set.of("a", "b"), recovered.state.keySet());
+		}
+	}
+
+	private MemorySnippetStore store() {
+		return new MemorySnippetStore(dir, SEGMENT_BYTES, true, 3600, 1 << 20, 1 << 20, 1 << 20);
+	}
+
+	private Set<String> files() throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.map(file -> file.getFileName().toString()).collect(Collectors.toCollection(TreeSet::new));
+		}
+	}
+
+	private static Snippet snippet(String id) {
+		Snippet snippet = new Snippet();
+		snippet.setId(id);
+		snippet.setUserId("user");
+		snippet.setCode("code of " + id);
+		snippet.setLanguage("java");
+		snippet.setDescription("snippet " + id);
+		snippet.setTags(List.of("t"));
+		snippet.setCreatedAt(LocalDateTime.of(2024, 1, 1, 12, 0));
+		return snippet;
+	}
+
+	private static long recordBytes(String id) {
+		return 8 + SnippetLog.put(snippet(id)).length;
+	}
+
+	private static byte[] read(Path file, long offset, int length) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer buffer = ByteBuffer.allocate(length);
+			channel.read(buffer, offset);
+			return buffer.array();
+		}
+	}
+
+	private static void overwrite(Path file, long offset, byte[] bytes) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(bytes), offset);
+			channel.force(false);
+		}
+	}
+
+	/** Keeps what recovery replays, in order, and the snippets it leaves. */
+	private static final class Recorder implements SnippetLog.Replay {
+		final List<String> ops = new ArrayList<>();
+		final Map<String, Snippet> state = new LinkedHashMap<>();
+
+		@Override
+		public void put(Snippet snippet) {
+			ops.add("put " + snippet.getId());
+			state.put(snippet.getId(), snippet);
+		}
+
+		@Override
+		public void delete(String id, String userId) {
+			ops.add("delete " + id);
+			state.remove(id);
+		}
+	}
+}
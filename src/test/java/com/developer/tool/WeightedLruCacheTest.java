@@ -0,0 +1,68 @@
+package com.developer.tool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class WeightedLruCacheTest {
+
+	@Test
+	void patchAdjustsWeightByItsDelta() {
+		WeightedLruCache<String, List<String>> cache = new WeightedLruCache<>("test", 100, List::size);
+		cache.put("a", List.of("x", "y"));
+		cache.patch("a", list -> {
+			List<String> patched = new ArrayList<>(list);
+			patched.add("z");
+			return new WeightedLruCache.Patch<>(patched, 1);
+		});
+		assertEquals(List.of("x", "y", "z"), cache.get("a"));
+		assertEquals(3, cache.stats().weight());
+	}
+
+	@Test
+	void patchOfAbsentKeyLeavesItAbsent() {
+		WeightedLruCache<String, List<String>> cache = new WeightedLruCache<>("test", 100, List::size);
+		cache.patch("a", list -> fail());
+		assertNull(cache.get("a"));
+	}
+
+	@Test
+	void updateDropsKeyWhoseValueWasReplacedMeanwhile() {
+		WeightedLruCache<String, List<String>> cache = new WeightedLruCache<>("test", 100, List::size);
+		cache.put("a", List.of("x"));
+		cache.update("a", list -> {
+			// Another writer stores a value while this update is being computed
+			cache.put("a", List.of("other"));
+			return List.of("x", "y");
+		});
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.stats().weight());
+	}
+
+	@Test
+	void updateInvalidatesLoadsStartedBeforeIt() {
+		WeightedLruCache<String, List<String>> cache = new WeightedLruCache<>("test", 100, List::size);
+		long stamp = cache.stamp();
+		cache.update("a", list -> list);
+		assertFalse(cache.putIfUnchanged("a", List.of("stale"), stamp));
+		assertNull(cache.get("a"));
+	}
+
+	@Test
+	void patchThatOutgrowsCacheDropsKey() {
+		WeightedLruCache<String, List<String>> cache = new WeightedLruCache<>("test", 3, List::size);
+		cache.put("a", List.of("x", "y", "z"));
+		cache.patch("a", list -> new WeightedLruCache.Patch<>(List.of("x", "y", "z", "w"), 1));
+		assertNull(cache.get("a"));
+		assertEquals(0, cache.stats().weight());
+	}
+
+	private static <T> T fail() {
+		throw new AssertionError("patch ran for an absent key");
+	}
+}